@@ -0,0 +1,106 @@
+package cachesim.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import cachesim.AccessBatch;
+import cachesim.CacheConfig;
+import cachesim.CacheSimulator;
+import cachesim.ReplacementPolicy;
+import cachesim.Workload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of one cache lookup for each GUI test pattern and several cache sizes. The pattern is
+// pre-generated into a fixed array so the score is the simulator alone, in ns per access.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class LookupBenchmark {
+    static final int ACCESSES = 1 << 20;
+
+    @Param({"sequential", "random", "midRepeat"})
+    public String pattern;
+
+    @Param({"4", "1024", "65536", "1048576"})
+    public int lines;
+
+    @Param({"1", "8"})
+    public int ways;
+
+    private CacheSimulator simulator;
+    private long[] addresses;
+    private AccessBatch batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        CacheConfig config = ways == 1
+                ? CacheConfig.directMapped(lines)
+                : CacheConfig.setAssociative(lines, Math.min(ways, lines), ReplacementPolicy.LRU);
+        simulator = new CacheSimulator(config);
+        addresses = generate(pattern, lines, ACCESSES);
+        batch = new AccessBatch(ACCESSES);
+        for (long address : addresses) {
+            batch.add(address);
+        }
+    }
+
+    // The same sequences prepareTest() builds in the GUI, repeated until ACCESSES are filled
+    static long[] generate(String pattern, int lines, int count) throws IOException {
+        Workload workload;
+        switch (pattern) {
+            case "sequential":
+                workload = Workload.sequential(2 * lines, 4);
+                break;
+            case "random":
+                workload = Workload.random(Math.max(1024, 16 * lines), count, 42);
+                break;
+            case "midRepeat":
+                workload = Workload.midRepeat(lines, 4);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pattern: " + pattern);
+        }
+        long[] out = new long[count];
+        for (int i = 0; i < count; i++) {
+            if (!workload.hasNext()) {
+                workload.seek(0);
+            }
+            out[i] = workload.next();
+        }
+        return out;
+    }
+
+    // One call per access, as the GUI and listeners drive it
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public long access() {
+        long hits = 0;
+        for (long address : addresses) {
+            if (simulator.access(address)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    // The batch entry point used by replay, sweeps and the partitioned runner
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public int accessBatch() {
+        return simulator.accessAll(batch);
+    }
+}
@@ -0,0 +1,92 @@
+package cachesim.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import cachesim.AccessBatch;
+import cachesim.BinaryTraceWriter;
+import cachesim.CacheSimulator;
+import cachesim.CompactTraceWriter;
+import cachesim.TraceReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// End-to-end replay of a trace file: open, decode into batches and simulate, in ns per access.
+// The trace is written once per trial to a temporary file in the binary, compact or text format.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class TraceReplayBenchmark {
+    static final int ACCESSES = 1 << 22;
+
+    @Param({"binary", "compact", "text"})
+    public String format;
+
+    @Param({"1024", "1048576"})
+    public int lines;
+
+    private Path trace;
+    private CacheSimulator simulator;
+    private final AccessBatch batch = new AccessBatch();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        long[] addresses = LookupBenchmark.generate("random", lines, ACCESSES);
+        trace = Files.createTempFile("replay", "text".equals(format) ? ".txt" : ".trc");
+        if ("compact".equals(format)) {
+            try (CompactTraceWriter writer = new CompactTraceWriter(trace)) {
+                for (long address : addresses) {
+                    writer.write(address);
+                }
+            }
+        } else if ("binary".equals(format)) {
+            try (BinaryTraceWriter writer = new BinaryTraceWriter(trace)) {
+                for (long address : addresses) {
+                    writer.write(address);
+                }
+            }
+        } else {
+            try (BufferedWriter writer = Files.newBufferedWriter(trace)) {
+                for (long address : addresses) {
+                    writer.write("0 " + Long.toHexString(address));
+                    writer.newLine();
+                }
+            }
+        }
+        simulator = new CacheSimulator(lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(trace);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public long replay() throws IOException {
+        simulator.reset();
+        try (TraceReader reader = TraceReader.open(trace)) {
+            while (reader.read(batch) > 0) {
+                simulator.accessAll(batch);
+            }
+        }
+        return simulator.getHitCount();
+    }
+}
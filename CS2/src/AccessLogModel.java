@@ -0,0 +1,122 @@
+import java.util.concurrent.locks.Lock;
+import javax.swing.AbstractListModel;
+import cachesim.AccessLog;
+
+// Virtualized list model over the bounded AccessLog: rows are formatted only when the JList
+// paints them, and a filter narrows the view to hits, misses or one cache set. The log is
+// written by the simulation thread, so rows are pinned by access number at refresh() and every
+// read of the log happens under the simulation lock. Filtered rows are kept up to date
+// incrementally: a refresh tests only the accesses recorded since the previous one and drops
+// rows that have left the log, so its cost follows the access rate rather than the log capacity.
+class AccessLogModel extends AbstractListModel<String> {
+    enum Filter { ALL, HITS, MISSES, SET }
+
+    private final AccessLog log;
+    private final Lock lock;
+    private Filter filter = Filter.ALL;
+    private int filterSet = 0;
+    private long firstSequence = 1; // Access number of row 0 (ALL only)
+    private long[] rows = new long[0]; // Ring of access numbers matching the filter (unused for ALL)
+    private int rowStart = 0; // Ring slot of row 0
+    private int size = 0;
+    private long scanned = 0; // Last access number tested against the filter
+    private long clears = -1; // log.clears() at that point; -1 forces a full rescan
+
+    AccessLogModel(AccessLog log, Lock lock) {
+        this.log = log;
+        this.lock = lock;
+    }
+
+    void setFilter(Filter filter, int set) {
+        this.filter = filter;
+        this.filterSet = set;
+        clears = -1;
+        refresh();
+    }
+
+    // Re-reads the log; called once per frame rather than once per access
+    void refresh() {
+        int oldSize = size;
+        lock.lock();
+        try {
+            int held = log.size();
+            long oldest = log.totalRecorded() - held + 1;
+            if (filter == Filter.ALL) {
+                firstSequence = oldest;
+                size = held;
+            } else {
+                if (rows.length != log.capacity()) {
+                    rows = new long[log.capacity()];
+                    clears = -1;
+                }
+                if (clears != log.clears()) {
+                    // New filter or a cleared log: start over from the oldest held record
+                    clears = log.clears();
+                    rowStart = 0;
+                    size = 0;
+                    scanned = oldest - 1;
+                }
+                while (size > 0 && rows[rowStart] < oldest) {
+                    rowStart = rowStart + 1 == rows.length ? 0 : rowStart + 1;
+                    size--;
+                }
+                for (long sequence = Math.max(scanned + 1, oldest); sequence <= log.totalRecorded(); sequence++) {
+                    if (matches((int) (sequence - oldest))) {
+                        int slot = rowStart + size;
+                        rows[slot >= rows.length ? slot - rows.length : slot] = sequence;
+                        size++;
+                    }
+                }
+                scanned = log.totalRecorded();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (size > oldSize) {
+            fireIntervalAdded(this, oldSize, size - 1);
+        } else if (size < oldSize) {
+            fireIntervalRemoved(this, size, oldSize - 1);
+        }
+        int common = Math.min(size, oldSize);
+        if (common > 0) {
+            fireContentsChanged(this, 0, common - 1);
+        }
+    }
+
+    private boolean matches(int i) {
+        switch (filter) {
+            case HITS:
+                return log.hitAt(i);
+            case MISSES:
+                return !log.hitAt(i);
+            case SET:
+                return log.setAt(i) == filterSet;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        long sequence;
+        if (filter == Filter.ALL) {
+            sequence = firstSequence + index;
+        } else {
+            int slot = rowStart + index;
+            sequence = rows[slot >= rows.length ? slot - rows.length : slot];
+        }
+        lock.lock();
+        try {
+            // The simulation may have moved on since refresh(); map the access number back to the ring
+            long i = sequence - (log.totalRecorded() - log.size() + 1);
+            return i >= 0 && i < log.size() ? log.formatAt((int) i) : "#" + sequence + " (no longer in the log)";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.awt.*;
+import java.util.Arrays;
+import javax.swing.*;
+import cachesim.AddressMapping;
+import cachesim.CacheSimulator;
+
+// Custom-painted view of the first cache blocks. The render loop copies the block state into a
+// snapshot once per frame; an access only bumps a per-line counter, and the frame that notices
+// the change starts that line's flash, so no component or timer is created per access.
+// flash() and sync() run under the simulation lock, painting uses only the snapshot.
+class CacheViewPanel extends JPanel implements Scrollable {
+    static final long FLASH_PHASE_NS = 100_000_000L; // Highlight / normal alternate every 100 ms
+    private static final int FLASH_PHASES = 4;
+    private static final int BLOCK_HEIGHT = 78;
+    private static final int GAP = 10;
+    private static final int HEADER_HEIGHT = 26;
+
+    private final Color hitColor;
+    private final Color missColor;
+    private final Color emptyColor;
+    private final Color validColor = new Color(240, 249, 255);
+    private final Color headerColor = new Color(33, 150, 243);
+    private final Font headerFont = new Font("SansSerif", Font.BOLD, 14);
+    private final Font bodyFont = new Font("SansSerif", Font.PLAIN, 14);
+
+    private final long[] blocks; // Snapshot: memory block per visible line, -1 when empty
+    private final long[] flashStart; // System.nanoTime() the current flash started, 0 when none
+    private final boolean[] flashHit;
+    private final int[] touched; // Accesses per line, written by the simulation thread
+    private final boolean[] touchedHit; // Outcome of the latest access per line
+    private final int[] seen; // touched[] as of the last frame
+    private AddressMapping mapping; // Adds each block's tag when set
+
+    CacheViewPanel(int visibleBlocks, Color hitColor, Color missColor, Color emptyColor) {
+        this.hitColor = hitColor;
+        this.missColor = missColor;
+        this.emptyColor = emptyColor;
+        this.blocks = new long[visibleBlocks];
+        this.flashStart = new long[visibleBlocks];
+        this.flashHit = new boolean[visibleBlocks];
+        this.touched = new int[visibleBlocks];
+        this.touchedHit = new boolean[visibleBlocks];
+        this.seen = new int[visibleBlocks];
+        Arrays.fill(blocks, -1);
+        setPreferredSize(new Dimension(250, visibleBlocks * (BLOCK_HEIGHT + GAP)));
+    }
+
+    int visibleBlocks() {
+        return blocks.length;
+    }
+
+    // Records an access to a line; nothing is painted until the next frame
+    void flash(int line, boolean hit) {
+        if (line >= 0 && line < blocks.length) {
+            touched[line]++;
+            touchedHit[line] = hit;
+        }
+    }
+
+    void setAddressMapping(AddressMapping mapping) {
+        this.mapping = mapping;
+    }
+
+    void clear() {
+        Arrays.fill(blocks, -1);
+        Arrays.fill(flashStart, 0);
+        Arrays.fill(touched, 0);
+        Arrays.fill(seen, 0);
+    }
+
+    // Copies the visible lines from the model; returns true if anything on screen changed
+    boolean sync(CacheSimulator simulator, long now) {
+        boolean changed = false;
+        for (int i = 0; i < blocks.length; i++) {
+            long block = simulator.blockAt(i);
+            if (block != blocks[i]) {
+                blocks[i] = block;
+                changed = true;
+            }
+            if (touched[i] != seen[i]) {
+                seen[i] = touched[i];
+                flashStart[i] = now;
+                flashHit[i] = touchedHit[i];
+            }
+            if (flashStart[i] != 0 && now - flashStart[i] < (FLASH_PHASES + 1) * FLASH_PHASE_NS) {
+                changed = true; // Still flashing, or just finished and needs its normal colour
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        long now = System.nanoTime();
+        Rectangle clip = g.getClipBounds();
+        int first = Math.max(0, clip.y / (BLOCK_HEIGHT + GAP));
+        int last = Math.min(blocks.length - 1, (clip.y + clip.height) / (BLOCK_HEIGHT + GAP));
+        int width = getWidth() - 1;
+
+        for (int i = first; i <= last; i++) {
+            int y = i * (BLOCK_HEIGHT + GAP);
+            boolean valid = blocks[i] >= 0;
+
+            g2d.setColor(bodyColor(i, valid, now));
+            g2d.fillRect(0, y, width, BLOCK_HEIGHT);
+            g2d.setColor(headerColor);
+            g2d.fillRect(0, y, width, HEADER_HEIGHT);
+            g2d.setColor(Color.GRAY);
+            g2d.drawRect(0, y, width, BLOCK_HEIGHT);
+
+            g2d.setFont(headerFont);
+            g2d.setColor(Color.WHITE);
+            drawCentered(g2d, "Cache Block " + i, width, y + 18);
+            g2d.setFont(bodyFont);
+            g2d.setColor(Color.BLACK);
+            drawCentered(g2d, "Status: " + (valid ? "Valid" : "Empty"), width, y + HEADER_HEIGHT + 20);
+            String block = valid ? String.valueOf(blocks[i]) : "None";
+            if (valid && mapping != null) {
+                block += " (tag 0x" + Long.toHexString(mapping.tag(mapping.address(blocks[i]))) + ")";
+            }
+            drawCentered(g2d, "Memory Block: " + block, width, y + HEADER_HEIGHT + 42);
+        }
+    }
+
+    // Even phases of a flash show the highlight, odd phases the normal colour
+    private Color bodyColor(int i, boolean valid, long now) {
+        Color normal = valid ? validColor : emptyColor;
+        if (flashStart[i] == 0) {
+            return normal;
+        }
+        long phase = (now - flashStart[i]) / FLASH_PHASE_NS;
+        if (phase >= FLASH_PHASES || (phase & 1) != 0) {
+            return normal;
+        }
+        return flashHit[i] ? hitColor : missColor;
+    }
+
+    private static void drawCentered(Graphics2D g2d, String text, int width, int baseline) {
+        int x = (width - g2d.getFontMetrics().stringWidth(text)) / 2;
+        g2d.drawString(text, x, baseline);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(250, 4 * (BLOCK_HEIGHT + GAP));
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return BLOCK_HEIGHT + GAP;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return visibleRect.height;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        // Stretch small caches to fill the panel, like the old grid of block panels
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+}
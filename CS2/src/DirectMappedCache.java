@@ -2,96 +2,229 @@ import java.awt.*;
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.Timer;
-import java.util.*;
-import java.util.Queue;
 import java.text.DecimalFormat;
-
-// Class representing a single cache block
-class CacheBlock {
-    boolean valid; // Valid bit indicating if block contains valid data
-    int memoryBlockNumber; // Stores the memory block number currently mapped to this cache block
-
-    public CacheBlock() {
-        this.valid = false;
-        this.memoryBlockNumber = -1; // -1 indicates an empty block
-    }
-}
-
-public class DirectMappedCache extends JFrame {
-    private static final int CACHE_BLOCKS = 4; // Number of cache blocks
+import cachesim.AccessListener;
+import cachesim.AccessLog;
+import cachesim.CacheConfig;
+import cachesim.CacheSimulator;
+import cachesim.TraceRecorder;
+import cachesim.MissClassifier;
+import cachesim.PrefetchUnit;
+import cachesim.Prefetcher;
+import cachesim.VictimCache;
+import cachesim.WindowedMetrics;
+import cachesim.Workload;
+
+// Swing front end; it drives a CacheSimulator and observes it like any other listener
+public class DirectMappedCache extends JFrame implements AccessListener {
+    private static final int DEFAULT_CACHE_BLOCKS = 4; // Default number of cache blocks
+    private static final int DEFAULT_LINE_BYTES = 64; // 16 words of 4 bytes per cache line
+    private static final int ADDRESS_BITS = 32; // Width of the byte addresses shown for each block
+    private static final int MAX_VISIBLE_BLOCKS = 4096; // Larger caches only show their first blocks
+    private static final int FRAME_MS = 33; // Render loop period (about 30 frames per second)
+    private static final String[] SPEED_NAMES = {"Single step", "1 / s", "5 / s", "20 / s", "100 / s",
+            "1,000 / s", "100,000 / s", "Unthrottled"};
+    private static final long[] SPEED_RATES = {0, 1, 5, 20, 100, 1_000, 100_000, SimulationWorker.UNTHROTTLED};
+    private static final int DEFAULT_SPEED = 2; // 5 accesses per second, the original 200 ms pace
+    private static final String[] PREFETCHER_NAMES = {"None", "Next-line", "Stride", "Stream"};
+    private static final String[] PREFETCHER_KINDS = {null, "next-line", "stride", "stream"};
+    private static final int LOG_CAPACITY = 100_000; // Most recent accesses kept in the access log
+    private static final int METRICS_WINDOW = 16; // Accesses per point of the time-series chart
+    private static final int METRICS_KEEP = 512; // Windows kept for the chart and the export
     private static final double CACHE_HIT_TIME_NS = 1.0; // Time taken for a cache hit (nanoseconds)
     private static final double MEMORY_ACCESS_TIME_NS = 100.0; // Time taken for a memory access (nanoseconds)
-
-    private final CacheBlock[] cache; // Array representing the cache
-    private int memoryAccessCount = 0;
-    private int cacheHitCount = 0;
-    private int cacheMissCount = 0;
-    private JTextArea logArea;
-    private JPanel[] cacheBlockPanels;
-    private JLabel[] cacheStatusLabels;
-    private JLabel[] cacheMemoryLabels;
+    private static final double VICTIM_HIT_TIME_NS = 2.0; // Array miss served by the victim cache, swap included
+
+    private final CacheSimulator simulator; // Headless cache model
+    private int cacheBlocks = DEFAULT_CACHE_BLOCKS; // Number of cache blocks
+    private boolean offHeapTags = false; // Keep tag storage outside the Java heap
+    private String prefetcherKind; // Prefetcher.create name, null for none
+    private int victimEntries = 0; // Victim cache size, 0 = none
+    private int lineBytes = DEFAULT_LINE_BYTES; // Bytes per block, for the tag / index / offset split
+    private int prefetchDepth = 1;
+    private long randomSeed = System.nanoTime(); // Seed of the Random Access Test, shown and editable in the configuration
+    private long memoryAccessCount = 0; // Accesses queued for the current test
+    private AccessLog accessLog; // Bounded ring of recent accesses
+    private MissClassifier missClassifier; // Compulsory / capacity / conflict split of the misses
+    private WindowedMetrics windowedMetrics; // Hit rate, per-set misses and reuse distances per window
+    private AccessLogModel logModel;
+    private JList<String> logList;
+    private JTextArea logHeader; // Description of the running test
+    private CacheViewPanel cacheView; // Painted from a per-frame snapshot of the cache lines
     private JLabel statusLabel;
-    private Timer animationTimer;
+    private Timer animationTimer; // Render loop: samples the worker and paints one frame per tick
+    private SimulationWorker worker; // Runs the simulator off the Swing thread
+    private JComboBox<String> speedBox;
+    private JToggleButton pauseButton;
+    private JToggleButton spillButton;
+    private boolean running = false; // A test is loaded and not yet reported as completed
+    private java.util.function.Supplier<Workload> currentTest; // Rebuilds the loaded test from its start, for Save Trace
     private JProgressBar simulationProgress;
     private int memoryBlocks = 1024; // Default number of memory blocks
-    private final Queue<Integer> memoryQueue = new LinkedList<>(); // Queue for memory access sequence
-    private JPanel chartPanel;
+    private StatsChartPanel chartPanel;
+    private TimeSeriesChartPanel timeSeriesPanel;
     private final Color CACHE_HIT_COLOR = new Color(76, 175, 80);
     private final Color CACHE_MISS_COLOR = new Color(244, 67, 54);
     private final Color EMPTY_CACHE_COLOR = new Color(224, 224, 224);
 
     public DirectMappedCache() {
-        // Initialize the cache array with a fixed number of cache blocks
-        cache = new CacheBlock[CACHE_BLOCKS];
+        // Prompt the user for the memory and cache geometry before anything is sized
+        String configuration = promptForConfiguration();
+
+        // Initialize the cache model with the configured number of cache blocks
+        CacheSimulator built;
+        try {
+            built = createSimulator();
+        } catch (IllegalArgumentException | OutOfMemoryError e) {
+            JOptionPane.showMessageDialog(this,
+                    "Cannot build this cache (" + e.getMessage() + "). Using default (" + DEFAULT_CACHE_BLOCKS + " blocks).",
+                    "Invalid Input", JOptionPane.WARNING_MESSAGE);
+            cacheBlocks = DEFAULT_CACHE_BLOCKS;
+            offHeapTags = false;
+            victimEntries = 0;
+            lineBytes = DEFAULT_LINE_BYTES;
+            built = createSimulator();
+            configuration = "Memory configured with " + memoryBlocks + " blocks, cache with default "
+                    + DEFAULT_CACHE_BLOCKS + " blocks";
+        }
+        simulator = built;
+        simulator.addListener(this);
+        accessLog = new AccessLog(LOG_CAPACITY, 1);
+        accessLog.setAddressMapping(simulator.getAddressMapping());
+        simulator.addListener(accessLog);
+        missClassifier = new MissClassifier(simulator);
+        simulator.addListener(missClassifier);
+        windowedMetrics = new WindowedMetrics(simulator, METRICS_WINDOW, METRICS_KEEP, true);
+        simulator.addListener(windowedMetrics);
+        if (prefetcherKind != null) {
+            simulator.setPrefetcher(Prefetcher.create(prefetcherKind, prefetchDepth), 0);
+        }
+        worker = new SimulationWorker(simulator);
+        worker.setRate(SPEED_RATES[DEFAULT_SPEED]);
 
         // Set up the graphical user interface (GUI) components
         setupGUI();
 
         // Reset the cache to clear any previous data and set initial values
         resetCache();
-
-        // Prompt the user to enter the number of memory blocks
-        promptForMemoryBlocks();
+        statusLabel.setText(configuration);
 
         // Set up the animation timer for GUI updates
         setupAnimationTimer();
     }
 
-    private void promptForMemoryBlocks() {
+    private CacheSimulator createSimulator() {
+        return new CacheSimulator(CacheConfig.directMapped(cacheBlocks)
+                .withOffHeap(offHeapTags)
+                .withVictimEntries(victimEntries)
+                .withBlockBytes(lineBytes)
+                .withAddressBits(ADDRESS_BITS));
+    }
+
+    // Returns the status line describing the accepted configuration
+    private String promptForConfiguration() {
         JPanel inputPanel = new JPanel();
         inputPanel.setLayout(new BorderLayout(10, 10));
         
         JLabel instructionLabel = new JLabel("Enter number of memory blocks (minimum 1024):");
         JTextField inputField = new JTextField("1024", 10);
-        
-        JPanel fieldPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        fieldPanel.add(instructionLabel);
-        fieldPanel.add(inputField);
+        JLabel cacheLabel = new JLabel("Enter number of cache blocks (minimum 1):");
+        JTextField cacheField = new JTextField(String.valueOf(DEFAULT_CACHE_BLOCKS), 10);
+        JCheckBox offHeapBox = new JCheckBox("Store cache tags off-heap (large caches)");
+        JComboBox<String> prefetcherBox = new JComboBox<>(PREFETCHER_NAMES);
+        JSpinner depthSpinner = new JSpinner(new SpinnerNumberModel(1, 1, Prefetcher.MAX_DEPTH, 1));
+        JSpinner victimSpinner = new JSpinner(new SpinnerNumberModel(0, 0, VictimCache.MAX_ENTRIES, 1));
+        
+        JSpinner lineSpinner = new JSpinner(new SpinnerNumberModel(DEFAULT_LINE_BYTES, 1, 1 << 16, 1));
+        JTextField seedField = new JTextField(String.valueOf(randomSeed), 20);
+        
+        JPanel fieldPanel = new JPanel(new GridLayout(7, 1));
+        JPanel memoryRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        memoryRow.add(instructionLabel);
+        memoryRow.add(inputField);
+        JPanel cacheRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        cacheRow.add(cacheLabel);
+        cacheRow.add(cacheField);
+        fieldPanel.add(memoryRow);
+        fieldPanel.add(cacheRow);
+        JPanel lineRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        lineRow.add(new JLabel("Line size in bytes:"));
+        lineRow.add(lineSpinner);
+        fieldPanel.add(lineRow);
+        fieldPanel.add(offHeapBox);
+        JPanel prefetchRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        prefetchRow.add(new JLabel("Prefetcher:"));
+        prefetchRow.add(prefetcherBox);
+        prefetchRow.add(new JLabel("Depth:"));
+        prefetchRow.add(depthSpinner);
+        fieldPanel.add(prefetchRow);
+        JPanel victimRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        victimRow.add(new JLabel("Victim cache entries (0 = none):"));
+        victimRow.add(victimSpinner);
+        fieldPanel.add(victimRow);
+        JPanel seedRow = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        seedRow.add(new JLabel("Random test seed:"));
+        seedRow.add(seedField);
+        fieldPanel.add(seedRow);
         
         inputPanel.add(fieldPanel, BorderLayout.CENTER);
         
         int result = JOptionPane.showConfirmDialog(this, inputPanel, 
                 "Cache Configuration", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
         
-        if (result == JOptionPane.OK_OPTION) {
-            try {
-                int blocks = Integer.parseInt(inputField.getText().trim());
-                if (blocks >= 1024) {
-                    memoryBlocks = blocks;
-                    statusLabel.setText("Memory configured with " + memoryBlocks + " blocks");
-                } else {
-                    JOptionPane.showMessageDialog(this, 
-                            "Value must be at least 1024. Using default (1024 blocks).", 
-                            "Invalid Input", JOptionPane.WARNING_MESSAGE);
-                    statusLabel.setText("Memory configured with default 1024 blocks");
-                }
-            } catch (NumberFormatException e) {
+        if (result != JOptionPane.OK_OPTION) {
+            return "Ready. Please select a test pattern.";
+        }
+
+        offHeapTags = offHeapBox.isSelected();
+        prefetcherKind = PREFETCHER_KINDS[prefetcherBox.getSelectedIndex()];
+        prefetchDepth = (Integer) depthSpinner.getValue();
+        victimEntries = (Integer) victimSpinner.getValue();
+        lineBytes = (Integer) lineSpinner.getValue();
+        try {
+            randomSeed = Long.parseLong(seedField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Please enter a whole number as the seed. Keeping " + randomSeed + ".",
+                    "Invalid Input", JOptionPane.WARNING_MESSAGE);
+        }
+        try {
+            int blocks = Integer.parseInt(cacheField.getText().trim());
+            int maxBlocks = CacheConfig.maxLines(offHeapTags);
+            if (blocks >= 1 && blocks <= maxBlocks) {
+                cacheBlocks = blocks;
+            } else if (blocks > maxBlocks) {
+                JOptionPane.showMessageDialog(this,
+                        "Cache can have at most " + maxBlocks + " blocks" + (offHeapTags ? " off-heap" : "")
+                                + ". Using default (" + DEFAULT_CACHE_BLOCKS + " blocks).",
+                        "Invalid Input", JOptionPane.WARNING_MESSAGE);
+            } else {
                 JOptionPane.showMessageDialog(this, 
-                        "Please enter a valid number. Using default (1024 blocks).", 
+                        "Cache must have at least 1 block. Using default (" + DEFAULT_CACHE_BLOCKS + " blocks).", 
                         "Invalid Input", JOptionPane.WARNING_MESSAGE);
-                statusLabel.setText("Memory configured with default 1024 blocks");
             }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, 
+                    "Please enter a valid cache size. Using default (" + DEFAULT_CACHE_BLOCKS + " blocks).", 
+                    "Invalid Input", JOptionPane.WARNING_MESSAGE);
         }
+
+        try {
+            int blocks = Integer.parseInt(inputField.getText().trim());
+            if (blocks >= 1024) {
+                memoryBlocks = blocks;
+                return "Memory configured with " + memoryBlocks + " blocks, cache with " + cacheBlocks + " blocks";
+            } else {
+                JOptionPane.showMessageDialog(this, 
+                        "Value must be at least 1024. Using default (1024 blocks).", 
+                        "Invalid Input", JOptionPane.WARNING_MESSAGE);
+            }
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, 
+                    "Please enter a valid number. Using default (1024 blocks).", 
+                    "Invalid Input", JOptionPane.WARNING_MESSAGE);
+        }
+        return "Memory configured with default 1024 blocks, cache with " + cacheBlocks + " blocks";
     }
 
     private void setupGUI() {
@@ -117,6 +250,7 @@ public class DirectMappedCache extends JFrame {
         
         JPanel controlPanel = createControlPanel();
         headerPanel.add(controlPanel, BorderLayout.CENTER);
+        headerPanel.add(createSpeedPanel(), BorderLayout.SOUTH);
         
         statusLabel = new JLabel("Ready. Please select a test pattern.");
         statusLabel.setBorder(new CompoundBorder(
@@ -129,28 +263,27 @@ public class DirectMappedCache extends JFrame {
         simulationProgress.setBorder(new EmptyBorder(5, 10, 5, 10));
         simulationProgress.setVisible(false);
         
-        logArea = new JTextArea();
-        logArea.setEditable(false);
-        logArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        logArea.setBorder(new EmptyBorder(5, 5, 5, 5));
-        JScrollPane scrollPane = new JScrollPane(logArea);
-        scrollPane.setBorder(BorderFactory.createTitledBorder("Access Log"));
+        JPanel logPanel = createLogPanel();
         
         JPanel cacheVisualizationPanel = createCacheVisualizationPanel();
         
-        chartPanel = new JPanel();
-        chartPanel.setBorder(BorderFactory.createTitledBorder("Cache Performance"));
-        chartPanel.setLayout(new BorderLayout());
+        chartPanel = new StatsChartPanel(CACHE_HIT_COLOR, CACHE_MISS_COLOR);
         chartPanel.setPreferredSize(new Dimension(300, 200));
-        updateStatsChart(0, 0); 
+        timeSeriesPanel = new TimeSeriesChartPanel(CACHE_HIT_COLOR, CACHE_MISS_COLOR);
+        
+        // Whole-run totals next to the windowed rates, where phase changes show up
+        JTabbedPane chartTabs = new JTabbedPane();
+        chartTabs.setBorder(BorderFactory.createTitledBorder("Cache Performance"));
+        chartTabs.addTab("Totals", chartPanel);
+        chartTabs.addTab("Over Time", timeSeriesPanel);
         
         JPanel rightPanel = new JPanel(new BorderLayout(0, 10));
         rightPanel.add(cacheVisualizationPanel, BorderLayout.CENTER);
-        rightPanel.add(chartPanel, BorderLayout.SOUTH);
+        rightPanel.add(chartTabs, BorderLayout.SOUTH);
         
         JSplitPane splitPane = new JSplitPane(
                 JSplitPane.HORIZONTAL_SPLIT,
-                scrollPane,
+                logPanel,
                 rightPanel
         );
         splitPane.setResizeWeight(0.6);
@@ -170,6 +303,137 @@ public class DirectMappedCache extends JFrame {
         setLocationRelativeTo(null);
     }
 
+    // Access log: test header, a virtualized list over the bounded log, and filter / spill controls
+    private JPanel createLogPanel() {
+        logHeader = new JTextArea(5, 20);
+        logHeader.setEditable(false);
+        logHeader.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        logHeader.setBorder(new EmptyBorder(5, 5, 5, 5));
+        logHeader.setOpaque(false);
+
+        logModel = new AccessLogModel(accessLog, worker.lock());
+        logList = new JList<>(logModel);
+        logList.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        logList.setPrototypeCellValue("#0000000 [Miss] Memory Block 0000000000 (tag 0x00000000, index 00000)"
+                + " loaded into Cache Block 00000");
+        logList.setFixedCellHeight(logList.getFontMetrics(logList.getFont()).getHeight() + 2);
+        JScrollPane scrollPane = new JScrollPane(logList);
+        scrollPane.setBorder(null);
+
+        JComboBox<String> filterBox = new JComboBox<>(new String[] {"All accesses", "Hits only", "Misses only", "Cache block"});
+        JTextField setField = new JTextField("0", 5);
+        setField.setEnabled(false);
+        Runnable applyFilter = () -> {
+            int choice = filterBox.getSelectedIndex();
+            setField.setEnabled(choice == 3);
+            int set = 0;
+            try {
+                set = Integer.parseInt(setField.getText().trim());
+            } catch (NumberFormatException e) {
+                setField.setText("0");
+            }
+            logModel.setFilter(AccessLogModel.Filter.values()[choice], set);
+        };
+        filterBox.addActionListener(e -> applyFilter.run());
+        setField.addActionListener(e -> applyFilter.run());
+
+        spillButton = new JToggleButton("Save Full Log...");
+        spillButton.setToolTipText("Write the last " + LOG_CAPACITY + " accesses and every access from now on to a "
+                + "text file; turn it on before a test to save the whole test");
+        spillButton.addActionListener(e -> toggleSpill());
+
+        JButton traceButton = new JButton("Save Trace...");
+        traceButton.setToolTipText("Record the current test's accesses as a compact trace for BatchRunner replay");
+        traceButton.addActionListener(e -> saveTrace());
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        filterPanel.add(new JLabel("Show:"));
+        filterPanel.add(filterBox);
+        filterPanel.add(setField);
+        filterPanel.add(spillButton);
+        filterPanel.add(traceButton);
+
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(logHeader, BorderLayout.CENTER);
+        top.add(filterPanel, BorderLayout.SOUTH);
+
+        JPanel logPanel = new JPanel(new BorderLayout());
+        logPanel.setBorder(BorderFactory.createTitledBorder("Access Log (last " + LOG_CAPACITY + " accesses)"));
+        logPanel.add(top, BorderLayout.NORTH);
+        logPanel.add(scrollPane, BorderLayout.CENTER);
+        return logPanel;
+    }
+
+    private void toggleSpill() {
+        try {
+            if (!spillButton.isSelected()) {
+                worker.lock().lock();
+                try {
+                    accessLog.stopSpill();
+                } finally {
+                    worker.lock().unlock();
+                }
+                statusLabel.setText("Stopped saving the full access log.");
+                return;
+            }
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("access-log.txt"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+                spillButton.setSelected(false);
+                return;
+            }
+            // The simulation thread writes to the spill, so it is swapped under the simulation lock
+            worker.lock().lock();
+            try {
+                accessLog.startSpill(chooser.getSelectedFile().toPath());
+            } finally {
+                worker.lock().unlock();
+            }
+            statusLabel.setText("Saving the full access log to " + chooser.getSelectedFile());
+        } catch (java.io.IOException ex) {
+            spillButton.setSelected(false);
+            JOptionPane.showMessageDialog(this, "Could not write the log: " + ex.getMessage(),
+                    "Access Log", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Writes the whole current test, regenerated from its start, as a compact trace
+    private void saveTrace() {
+        if (currentTest == null) {
+            statusLabel.setText("Run a test first to save its trace.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("test-trace.ctz"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            long accesses = TraceRecorder.record(currentTest.get(), chooser.getSelectedFile().toPath());
+            statusLabel.setText("Saved " + accesses + " accesses to " + chooser.getSelectedFile());
+        } catch (java.io.IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not write the trace: " + ex.getMessage(),
+                    "Save Trace", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Shows newly logged accesses and keeps the newest one in view
+    private void refreshLog() {
+        java.io.IOException spillFailure = accessLog.takeSpillFailure();
+        if (spillFailure != null) {
+            // The simulation thread already closed the file and carried on without it
+            spillButton.setSelected(false);
+            statusLabel.setText("Stopped saving the full access log.");
+            JOptionPane.showMessageDialog(this, "Could not write the log: " + spillFailure.getMessage(),
+                    "Access Log", JOptionPane.ERROR_MESSAGE);
+        }
+        logModel.refresh();
+        int size = logModel.getSize();
+        if (size > 0) {
+            logList.ensureIndexIsVisible(size - 1);
+        }
+    }
+
     private JPanel createControlPanel() {
         JPanel controlPanel = new JPanel(new GridLayout(1, 4, 10, 10));
         controlPanel.setBorder(new EmptyBorder(10, 0, 10, 0));
@@ -192,6 +456,49 @@ public class DirectMappedCache extends JFrame {
         return controlPanel;
     }
 
+    // Speed control: single-step through N accesses per second up to unthrottled, plus pause / step / fast-forward
+    private JPanel createSpeedPanel() {
+        speedBox = new JComboBox<>(SPEED_NAMES);
+        speedBox.setSelectedIndex(DEFAULT_SPEED);
+        speedBox.addActionListener(e -> applySpeed());
+
+        pauseButton = new JToggleButton("Pause");
+        pauseButton.addActionListener(e -> {
+            pauseButton.setText(pauseButton.isSelected() ? "Resume" : "Pause");
+            applySpeed();
+        });
+
+        JButton stepButton = new JButton("Step");
+        stepButton.setToolTipText("Run exactly one more access");
+        stepButton.addActionListener(e -> {
+            if (!pauseButton.isSelected()) {
+                pauseButton.doClick();
+            }
+            worker.step();
+        });
+
+        JButton fastForwardButton = new JButton("Fast Forward");
+        fastForwardButton.setToolTipText("Run the rest of the test as fast as possible");
+        fastForwardButton.addActionListener(e -> {
+            if (pauseButton.isSelected()) {
+                pauseButton.doClick();
+            }
+            speedBox.setSelectedIndex(SPEED_RATES.length - 1);
+        });
+
+        JPanel speedPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        speedPanel.add(new JLabel("Speed:"));
+        speedPanel.add(speedBox);
+        speedPanel.add(pauseButton);
+        speedPanel.add(stepButton);
+        speedPanel.add(fastForwardButton);
+        return speedPanel;
+    }
+
+    private void applySpeed() {
+        worker.setRate(pauseButton.isSelected() ? 0 : SPEED_RATES[speedBox.getSelectedIndex()]);
+    }
+
     private JButton createStyledButton(String text, String tooltip) {
         JButton button = new JButton(text);
         button.setToolTipText(tooltip);
@@ -216,217 +523,108 @@ public class DirectMappedCache extends JFrame {
     }
 
     private JPanel createCacheVisualizationPanel() {
-        JPanel cachePanel = new JPanel();
-        cachePanel.setLayout(new GridLayout(CACHE_BLOCKS, 1, 0, 10));
-        cachePanel.setBorder(BorderFactory.createTitledBorder("Cache Memory"));
-        
-        cacheBlockPanels = new JPanel[CACHE_BLOCKS];
-        cacheStatusLabels = new JLabel[CACHE_BLOCKS];
-        cacheMemoryLabels = new JLabel[CACHE_BLOCKS];
-        
-        for (int i = 0; i < CACHE_BLOCKS; i++) {
-            cacheBlockPanels[i] = new JPanel(new BorderLayout());
-            cacheBlockPanels[i].setBorder(BorderFactory.createLineBorder(Color.GRAY, 1));
-            cacheBlockPanels[i].setBackground(EMPTY_CACHE_COLOR);
-            
-            JPanel headerPanel = new JPanel(new BorderLayout());
-            headerPanel.setBackground(new Color(33, 150, 243));
-            JLabel headerLabel = new JLabel("Cache Block " + i, JLabel.CENTER);
-            headerLabel.setForeground(Color.WHITE);
-            headerLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
-            headerLabel.setBorder(new EmptyBorder(5, 0, 5, 0));
-            headerPanel.add(headerLabel, BorderLayout.CENTER);
-            
-            JPanel contentPanel = new JPanel(new GridLayout(2, 1));
-            contentPanel.setOpaque(false);
-            contentPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
-            
-            cacheStatusLabels[i] = new JLabel("Status: Empty", JLabel.CENTER);
-            cacheStatusLabels[i].setFont(new Font("SansSerif", Font.PLAIN, 14));
-            
-            cacheMemoryLabels[i] = new JLabel("Memory Block: None", JLabel.CENTER);
-            cacheMemoryLabels[i].setFont(new Font("SansSerif", Font.PLAIN, 14));
-            
-            contentPanel.add(cacheStatusLabels[i]);
-            contentPanel.add(cacheMemoryLabels[i]);
-            
-            cacheBlockPanels[i].add(headerPanel, BorderLayout.NORTH);
-            cacheBlockPanels[i].add(contentPanel, BorderLayout.CENTER);
-            
-            cachePanel.add(cacheBlockPanels[i]);
-        }
-        
-        return cachePanel;
+        int visibleBlocks = Math.min(cacheBlocks, MAX_VISIBLE_BLOCKS);
+        cacheView = new CacheViewPanel(visibleBlocks, CACHE_HIT_COLOR, CACHE_MISS_COLOR, EMPTY_CACHE_COLOR);
+        cacheView.setAddressMapping(simulator.getAddressMapping());
+        
+        JPanel wrapper = new JPanel(new BorderLayout());
+        String title = visibleBlocks < cacheBlocks
+                ? "Cache Memory (first " + visibleBlocks + " of " + cacheBlocks + " blocks)"
+                : "Cache Memory";
+        wrapper.setBorder(BorderFactory.createTitledBorder(title));
+        JScrollPane cacheScroll = new JScrollPane(cacheView);
+        cacheScroll.setBorder(null);
+        wrapper.add(cacheScroll, BorderLayout.CENTER);
+        return wrapper;
     }
 
     private void resetCache() {
-        for (int i = 0; i < CACHE_BLOCKS; i++) {
-            cache[i] = new CacheBlock();
-            cacheBlockPanels[i].setBackground(EMPTY_CACHE_COLOR);
-            cacheStatusLabels[i].setText("Status: Empty");
-            cacheMemoryLabels[i].setText("Memory Block: None");
-        }
+        running = false;
+        worker.load(null);
         
         memoryAccessCount = 0;
-        cacheHitCount = 0;
-        cacheMissCount = 0;
-        logArea.setText("");
+        logHeader.setText("");
         statusLabel.setText("Cache reset. Ready for new test.");
-        
-        updateStatsChart(0, 0);
+        renderFrame();
     }
 
-    private void setupAnimationTimer() {
-        animationTimer = new Timer(200, e -> {
-            if (!memoryQueue.isEmpty()) {
-                int address = memoryQueue.poll();
-                processMemoryAccess(address);
-                
-                int progress = 100 - (int)((double)memoryQueue.size() / (double)memoryAccessCount * 100);
-                simulationProgress.setValue(progress);
-                simulationProgress.setString("Processing: " + progress + "%");
-                
-                updateStatsChart(cacheHitCount, cacheMissCount);
-                
-            } else {
-                animationTimer.stop();
-                simulationProgress.setVisible(false);
-                statusLabel.setText("Test completed. " + memoryAccessCount + " accesses processed.");
-                
-                updateStatsChart(cacheHitCount, cacheMissCount);
-            }
-        });
+    @Override
+    public void onReset() {
+        cacheView.clear();
     }
 
-    private void processMemoryAccess(int blockNumber) {
-        memoryAccessCount++;
-
-        int index = blockNumber % CACHE_BLOCKS;
-
-        if (cache[index].valid && cache[index].memoryBlockNumber == blockNumber) {
-            cacheHitCount++; 
-            logArea.append("[Hit] Memory Block " + blockNumber + " found in Cache Block " + index + "\n");
-            
-            flashCacheBlock(index, CACHE_HIT_COLOR);
-            
-        } else { 
-            cacheMissCount++; 
-
-            cache[index].valid = true; 
-            cache[index].memoryBlockNumber = blockNumber; 
-
-            logArea.append("[Miss] Memory Block " + blockNumber + " loaded into Cache Block " + index + "\n");
-            
-            
-            flashCacheBlock(index, CACHE_MISS_COLOR);
-        }
-
-        logArea.setCaretPosition(logArea.getDocument().getLength());
-        
-        updateCacheDisplay(index, cache[index].valid, cache[index].memoryBlockNumber);
+    private void setupAnimationTimer() {
+        animationTimer = new Timer(FRAME_MS, e -> renderFrame());
+        animationTimer.start();
     }
 
-    private void flashCacheBlock(int index, Color highlightColor) {
-        
-        Color originalColor = cache[index].valid ? 
-                new Color(240, 249, 255) : EMPTY_CACHE_COLOR;
-        
-        
-        Timer flashTimer = new Timer(100, null);
-        final int[] flashCount = {0};
-        
-        flashTimer.addActionListener(e -> {
-            if (flashCount[0] % 2 == 0) {
-                cacheBlockPanels[index].setBackground(highlightColor);
-            } else {
-                cacheBlockPanels[index].setBackground(originalColor);
+    // Samples the worker once per frame; cost depends on the frame rate, not the access rate
+    private void renderFrame() {
+        worker.lock().lock();
+        try {
+            if (cacheView.sync(simulator, System.nanoTime())) {
+                cacheView.repaint();
             }
-            
-            flashCount[0]++;
-            if (flashCount[0] >= 4) {
-                flashTimer.stop();
-                cacheBlockPanels[index].setBackground(originalColor);
+            timeSeriesPanel.update(windowedMetrics);
+        } finally {
+            worker.lock().unlock();
+        }
+        chartPanel.update(worker.hits(), worker.misses());
+        refreshLog();
+
+        if (running) {
+            int progress = (int) (worker.position() * 100 / Math.max(worker.length(), 1));
+            simulationProgress.setValue(progress);
+            simulationProgress.setString("Processing: " + worker.position() + " / " + worker.length()
+                    + " (" + progress + "%)");
+            if (worker.isFinished()) {
+                running = false;
+                simulationProgress.setVisible(false);
+                statusLabel.setText("Test completed. " + worker.position() + " accesses processed.");
             }
-        });
-        
-        flashTimer.start();
+        }
     }
 
-    private void updateCacheDisplay(int index, boolean valid, int memoryBlockNumber) {
-
-        cacheStatusLabels[index].setText("Status: " + (valid ? "Valid" : "Empty"));
-        cacheMemoryLabels[index].setText("Memory Block: " + (valid ? String.valueOf(memoryBlockNumber) : "None"));
-        
-        if (valid) {
-            cacheBlockPanels[index].setBackground(new Color(240, 249, 255)); 
-        } else {
-            cacheBlockPanels[index].setBackground(EMPTY_CACHE_COLOR); 
-        }
+    @Override
+    public void onAccess(long blockNumber, int index, boolean hit) {
+        // Runs on the simulation thread; the access is recorded by the AccessLog listener and the
+        // next frame paints the flash
+        cacheView.flash(index, hit);
     }
 
     private void prepareTest(int testType) {
-        // Reset the cache to its initial empty state
+        // Stop any test still running and reset the cache to its initial empty state
         resetCache();
 
-        // Clear the memory queue before starting the new test
-        memoryQueue.clear();
-
-        // Random number generator for the random test case
-        Random rand = new Random();
-
         // Define the maximum number of memory blocks to be accessed in sequential and mid-repeat tests
-        int maxBlocks = (2 * CACHE_BLOCKS);
-        String testName = "";
+        int maxBlocks = (int) Math.min(2L * cacheBlocks, Integer.MAX_VALUE);
+        long seed = randomSeed; // Logged, and entered again in the configuration to reproduce a run
+        int blocks = cacheBlocks; // Sizes as of now, so Save Trace rebuilds this very test
+        int memory = memoryBlocks;
+        java.util.function.Supplier<Workload> test;
 
         // Determine the type of memory access pattern based on testType
         switch (testType) {
-            case 1: // Sequential Access Test
-                testName = "Sequential Test";
-                // Access memory blocks in sequential order, repeating the sequence 4 times
-                for (int repeat = 0; repeat < 4; repeat++) {
-                    for (int i = 0; i < maxBlocks; i++) {
-                        memoryQueue.add(i); // Add each memory block in order
-                    }
-                }
+            case 1: // Sequential Access Test: blocks 0 .. 2N-1 in order, repeated 4 times
+                test = () -> Workload.sequential(maxBlocks, 4);
                 break;
 
-            case 2: // Random Access Test
-                testName = "Random Test";
-                // Access a random selection of memory blocks
-                int totalBlocks = (4 * CACHE_BLOCKS); // Define total number of accesses
-                for (int i = 0; i < totalBlocks; i++) {
-                    memoryQueue.add(rand.nextInt(memoryBlocks)); // Add a randomly selected memory block
-                }
+            case 2: // Random Access Test: 4N randomly selected memory blocks
+                test = () -> Workload.random(memory, 4L * blocks, seed);
                 break;
 
-            case 3: // Mid-Repeat Access Test
-                testName = "Mid-Repeat Test";
-                // Simulates a mix of repeated and unique memory accesses
-                for (int repeat = 0; repeat < 4; repeat++) {
-                    // First phase: Access blocks sequentially within the cache size
-                    for (int i = 0; i < CACHE_BLOCKS; i++) {
-                        memoryQueue.add(i);
-                    }
-
-                    // Second phase: Repeat access to mid-range blocks twice
-                    for (int midRepeat = 0; midRepeat < 2; midRepeat++) {
-                        for (int i = 1; i < CACHE_BLOCKS; i++) {
-                            memoryQueue.add(i);
-                        }
-                    }
-
-                    // Third phase: Access remaining blocks beyond cache size
-                    for (int i = CACHE_BLOCKS; i < maxBlocks; i++) {
-                        memoryQueue.add(i);
-                    }
-                }
+            case 3: // Mid-Repeat Access Test: a mix of repeated and unique memory accesses
+                test = () -> Workload.midRepeat(blocks, 4);
                 break;
+
+            default:
+                return;
         }
+        Workload workload = test.get();
+        currentTest = test;
+        String testName = workload.name();
 
-        memoryAccessCount = memoryQueue.size();
-        
-        cacheHitCount = 0;
-        cacheMissCount = 0;
+        memoryAccessCount = workload.length();
         
       
         simulationProgress.setValue(0);
@@ -435,105 +633,83 @@ public class DirectMappedCache extends JFrame {
         
         statusLabel.setText("Running " + testName + " with " + memoryAccessCount + " memory accesses...");
         
-        logArea.setText("=== " + testName + " ===\n");
-        logArea.append("Cache Size: " + CACHE_BLOCKS + " blocks\n");
-        logArea.append("Memory Size: " + memoryBlocks + " blocks\n");
-        logArea.append("Total Memory Accesses: " + memoryAccessCount + "\n");
-        logArea.append("---------------------------\n\n");
-
-        animationTimer.start();
-    }
-
-    private void updateStatsChart(int hits, int misses) {
-        chartPanel.removeAll();
-        
-        if (hits + misses == 0) {
-            JLabel emptyLabel = new JLabel("No data available yet", JLabel.CENTER);
-            emptyLabel.setFont(new Font("SansSerif", Font.ITALIC, 14));
-            chartPanel.add(emptyLabel, BorderLayout.CENTER);
-            chartPanel.revalidate();
-            chartPanel.repaint();
-            return;
+        StringBuilder header = new StringBuilder();
+        header.append("=== ").append(testName).append(" ===\n");
+        header.append("Cache Size: ").append(cacheBlocks).append(" blocks\n");
+        header.append("Memory Size: ").append(memoryBlocks).append(" blocks\n");
+        header.append("Total Memory Accesses: ").append(memoryAccessCount);
+        if (testType == 2) {
+            header.append("\nRandom Seed: ").append(seed);
         }
-        
-        JPanel barChart = new JPanel(new GridLayout(1, 2, 10, 0));
-        barChart.setBorder(new EmptyBorder(10, 10, 10, 10));
-        
-        JPanel hitPanel = createStatBar("Hits", hits, hits + misses, CACHE_HIT_COLOR);
-        
-        JPanel missPanel = createStatBar("Misses", misses, hits + misses, CACHE_MISS_COLOR);
-        
-        barChart.add(hitPanel);
-        barChart.add(missPanel);
-        
-        DecimalFormat df = new DecimalFormat("0.00");
-        double hitRate = ((double) hits / Math.max(hits + misses, 1)) * 100;
-        double missRate = 100 - hitRate;
-        
-        JLabel summaryLabel = new JLabel(
-            "<html><b>Summary:</b> " + 
-            hits + " hits (" + df.format(hitRate) + "%), " +
-            misses + " misses (" + df.format(missRate) + "%)" +
-            "</html>", 
-            JLabel.CENTER
-        );
-        summaryLabel.setBorder(new EmptyBorder(10, 0, 0, 0));
-        
-        chartPanel.add(barChart, BorderLayout.CENTER);
-        chartPanel.add(summaryLabel, BorderLayout.SOUTH);
-        
-        chartPanel.revalidate();
-        chartPanel.repaint();
-    }
+        logHeader.setText(header.toString());
 
-    private JPanel createStatBar(String label, int value, int total, Color color) {
-        JPanel panel = new JPanel(new BorderLayout(0, 5));
-        
-        JPanel barContainer = new JPanel(new BorderLayout());
-        barContainer.setBorder(BorderFactory.createLineBorder(Color.GRAY));
-        
-        JPanel bar = new JPanel();
-        bar.setBackground(color);
-        
-        double percentage = (double) value / Math.max(total, 1);
-        int height = (int) (100 * percentage);
-        
-        barContainer.setLayout(new BorderLayout());
-        barContainer.add(bar, BorderLayout.SOUTH);
-        bar.setPreferredSize(new Dimension(30, height));
-        
-        JLabel nameLabel = new JLabel(label, JLabel.CENTER);
-        
-        JLabel countLabel = new JLabel(String.valueOf(value), JLabel.CENTER);
-        countLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
-        
-        panel.add(nameLabel, BorderLayout.NORTH);
-        panel.add(barContainer, BorderLayout.CENTER);
-        panel.add(countLabel, BorderLayout.SOUTH);
-        
-        return panel;
+        running = true;
+        worker.load(workload);
     }
 
     private void showStats() {
         // Create a decimal format to display numbers with two decimal places
         DecimalFormat df = new DecimalFormat("0.00");
 
+        // Counters as last published by the simulation thread
+        long cacheHitCount = worker.hits();
+        long cacheMissCount = worker.misses();
+        long memoryAccessCount = cacheHitCount + cacheMissCount;
+        long victimHitCount = worker.victimHits(); // Part of the hits, at the slower victim hit time
+        long arrayHitCount = cacheHitCount - victimHitCount;
+
         // Calculate the cache hit rate as a percentage
         double hitRate = ((double) cacheHitCount / Math.max(memoryAccessCount, 1)) * 100;
 
         // Calculate the cache miss rate as a percentage
         double missRate = ((double) cacheMissCount / Math.max(memoryAccessCount, 1)) * 100;
 
-        // Compute the average memory access time (considering both hits and misses)
-        double avgMemoryAccessTime = ((cacheHitCount * CACHE_HIT_TIME_NS + cacheMissCount * MEMORY_ACCESS_TIME_NS)
-                / Math.max(memoryAccessCount, 1));
-
         // Compute the total memory access time for all accesses
-        double totalMemoryAccessTime = cacheHitCount * CACHE_HIT_TIME_NS + cacheMissCount * MEMORY_ACCESS_TIME_NS;
+        double totalMemoryAccessTime = arrayHitCount * CACHE_HIT_TIME_NS + victimHitCount * VICTIM_HIT_TIME_NS
+                + cacheMissCount * MEMORY_ACCESS_TIME_NS;
+
+        // Compute the average memory access time (considering both hits and misses)
+        double avgMemoryAccessTime = totalMemoryAccessTime / Math.max(memoryAccessCount, 1);
+
+        // Three-C breakdown, copied under the lock since the classifier runs on the simulation thread
+        long compulsoryMisses;
+        long capacityMisses;
+        long conflictMisses;
+        Long[][] perIndex = new Long[Math.min(missClassifier.sets(), MAX_VISIBLE_BLOCKS)][];
+        worker.lock().lock();
+        try {
+            compulsoryMisses = missClassifier.compulsory();
+            capacityMisses = missClassifier.capacity();
+            conflictMisses = missClassifier.conflict();
+            for (int set = 0; set < perIndex.length; set++) {
+                perIndex[set] = new Long[] {(long) set, missClassifier.compulsoryAt(set),
+                        missClassifier.capacityAt(set), missClassifier.conflictAt(set)};
+            }
+        } finally {
+            worker.lock().unlock();
+        }
+        long classifiedMisses = Math.max(compulsoryMisses + capacityMisses + conflictMisses, 1);
+        PrefetchUnit prefetch = simulator.getPrefetchUnit();
+        String[][] prefetchRows = null;
+        if (prefetch != null) {
+            worker.lock().lock();
+            try {
+                prefetchRows = new String[][] {
+                        {"Prefetcher", prefetch.describe()},
+                        {"Prefetches Issued", String.valueOf(prefetch.issued())},
+                        {"Useful Prefetches", String.valueOf(prefetch.useful())},
+                        {"Prefetch Accuracy", df.format(100 * prefetch.accuracy()) + "%"},
+                        {"Prefetch Coverage", df.format(100 * prefetch.coverage()) + "%"},
+                        {"Prefetch Timeliness", df.format(100 * prefetch.timeliness()) + "%"},
+                        {"Pollution Misses", String.valueOf(prefetch.pollution())}};
+            } finally {
+                worker.lock().unlock();
+            }
+        }
 
         // Create custom styled dialog for statistics
         JDialog statsDialog = new JDialog(this, "Cache Performance Statistics", true);
-        statsDialog.setSize(500, 400);
+        statsDialog.setSize(500, 560);
         statsDialog.setLocationRelativeTo(this);
         
         JPanel statsPanel = new JPanel();
@@ -546,21 +722,59 @@ public class DirectMappedCache extends JFrame {
         statsPanel.add(titleLabel);
         statsPanel.add(Box.createVerticalStrut(20));
         
-        addStatRow(statsPanel, "Number of Cache Blocks", String.valueOf(CACHE_BLOCKS));
+        addStatRow(statsPanel, "Number of Cache Blocks", String.valueOf(cacheBlocks));
         addStatRow(statsPanel, "Total Memory Blocks", String.valueOf(memoryBlocks));
+        addStatRow(statsPanel, "Line Size", lineBytes + " bytes");
+        addStatRow(statsPanel, "Address Layout", simulator.getAddressMapping().describe());
         addStatRow(statsPanel, "Total Memory Accesses", String.valueOf(memoryAccessCount));
         statsPanel.add(Box.createVerticalStrut(10));
         
         addStatRow(statsPanel, "Cache Hits", String.valueOf(cacheHitCount));
         addStatRow(statsPanel, "Cache Misses", String.valueOf(cacheMissCount));
+        if (victimEntries > 0) {
+            addStatRow(statsPanel, "Victim Cache Entries", String.valueOf(victimEntries));
+            addStatRow(statsPanel, "Victim Cache Hits", victimHitCount + " ("
+                    + df.format(100.0 * victimHitCount / Math.max(victimHitCount + cacheMissCount, 1))
+                    + "% of array misses)");
+            addStatRow(statsPanel, "Time Saved by Victim Cache", df.format(victimHitCount
+                    * (MEMORY_ACCESS_TIME_NS - VICTIM_HIT_TIME_NS)) + " ns");
+        }
         statsPanel.add(Box.createVerticalStrut(10));
         
         addStatRow(statsPanel, "Cache Hit Rate", df.format(hitRate) + "%");
         addStatRow(statsPanel, "Cache Miss Rate", df.format(missRate) + "%");
         statsPanel.add(Box.createVerticalStrut(10));
+
+        addStatRow(statsPanel, "Compulsory Misses", compulsoryMisses + " ("
+                + df.format(100.0 * compulsoryMisses / classifiedMisses) + "%)");
+        addStatRow(statsPanel, "Capacity Misses", capacityMisses + " ("
+                + df.format(100.0 * capacityMisses / classifiedMisses) + "%)");
+        addStatRow(statsPanel, "Conflict Misses", conflictMisses + " ("
+                + df.format(100.0 * conflictMisses / classifiedMisses) + "%)");
+        JTable indexTable = new JTable(perIndex, new String[] {"Cache Index", "Compulsory", "Capacity", "Conflict"});
+        indexTable.setEnabled(false);
+        JScrollPane indexScroll = new JScrollPane(indexTable);
+        indexScroll.setPreferredSize(new Dimension(440, Math.min(indexTable.getRowHeight() * (perIndex.length + 1) + 4, 160)));
+        indexScroll.setMaximumSize(indexScroll.getPreferredSize());
+        indexScroll.setAlignmentX(Component.LEFT_ALIGNMENT);
+        statsPanel.add(indexScroll);
+        statsPanel.add(Box.createVerticalStrut(10));
         
+        if (prefetchRows != null) {
+            for (String[] row : prefetchRows) {
+                addStatRow(statsPanel, row[0], row[1]);
+            }
+            statsPanel.add(Box.createVerticalStrut(10));
+        }
+
         addStatRow(statsPanel, "Average Memory Access Time", df.format(avgMemoryAccessTime) + " ns");
         addStatRow(statsPanel, "Total Memory Access Time", df.format(totalMemoryAccessTime) + " ns");
+        statsPanel.add(Box.createVerticalStrut(10));
+
+        // Traffic between the cache and memory: block fetches in, writebacks and write-throughs out
+        addStatRow(statsPanel, "Writes", String.valueOf(worker.writes()));
+        addStatRow(statsPanel, "Bytes Read from Memory", String.valueOf(worker.bytesRead()));
+        addStatRow(statsPanel, "Bytes Written to Memory", String.valueOf(worker.bytesWritten()));
         
         JPanel chartPanel = createPieChart(cacheHitCount, cacheMissCount);
         chartPanel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -568,18 +782,55 @@ public class DirectMappedCache extends JFrame {
         statsPanel.add(chartPanel);
         
        
+        JButton exportButton = new JButton("Export Time Series...");
+        exportButton.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        exportButton.setToolTipText("Save the windowed rates, per-set misses and reuse distances as CSV or JSON");
+        exportButton.addActionListener(e -> exportTimeSeries(statsDialog));
         JButton closeButton = new JButton("Close");
         closeButton.setFont(new Font("SansSerif", Font.BOLD, 14));
-        closeButton.setAlignmentX(Component.CENTER_ALIGNMENT);
         closeButton.addActionListener(e -> statsDialog.dispose());
+        JPanel buttonRow = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        buttonRow.setAlignmentX(Component.CENTER_ALIGNMENT);
+        buttonRow.add(exportButton);
+        buttonRow.add(closeButton);
         statsPanel.add(Box.createVerticalStrut(20));
-        statsPanel.add(closeButton);
+        statsPanel.add(buttonRow);
         
        
         statsDialog.add(new JScrollPane(statsPanel));
         statsDialog.setVisible(true);
     }
 
+    // Writes the retained windows as JSON when the file name ends in .json, otherwise as CSV
+    private void exportTimeSeries(Component parent) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("time-series.csv"));
+        if (chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        java.io.File file = chooser.getSelectedFile();
+        StringBuilder out = new StringBuilder();
+        worker.lock().lock();
+        try {
+            if (file.getName().endsWith(".json")) {
+                windowedMetrics.writeJson(out);
+            } else {
+                windowedMetrics.writeCsv(out);
+            }
+        } catch (java.io.IOException ex) {
+            throw new IllegalStateException(ex); // StringBuilder does not throw
+        } finally {
+            worker.lock().unlock();
+        }
+        try {
+            java.nio.file.Files.writeString(file.toPath(), out);
+            statusLabel.setText("Saved the time series to " + file);
+        } catch (java.io.IOException ex) {
+            JOptionPane.showMessageDialog(parent, "Could not write the time series: " + ex.getMessage(),
+                    "Export Time Series", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void addStatRow(JPanel panel, String label, String value) {
         JPanel rowPanel = new JPanel();
         rowPanel.setLayout(new BoxLayout(rowPanel, BoxLayout.X_AXIS));
@@ -601,7 +852,7 @@ public class DirectMappedCache extends JFrame {
         panel.add(Box.createVerticalStrut(5));
     }
 
-    private JPanel createPieChart(int hits, int misses) {
+    private JPanel createPieChart(long hits, long misses) {
         JPanel chartPanel = new JPanel() {
             @Override
             protected void paintComponent(Graphics g) {
@@ -609,7 +860,7 @@ public class DirectMappedCache extends JFrame {
                 Graphics2D g2d = (Graphics2D) g;
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                 
-                int total = hits + misses;
+                long total = hits + misses;
                 if (total == 0) return;
                 
                 int width = getWidth();
@@ -0,0 +1,194 @@
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import cachesim.CacheSimulator;
+import cachesim.Workload;
+
+// Runs the current test on a background thread at a chosen speed. The simulator, its listeners
+// and the workload are only touched while holding lock(); the worker holds it for one short chunk
+// at a time and the lock is fair, so the Swing thread gets a consistent snapshot between chunks
+// even when the worker is unthrottled. Counters and the position are also published through
+// volatile fields for cheap per-frame sampling.
+class SimulationWorker {
+    static final long UNTHROTTLED = Long.MAX_VALUE; // Accesses per second
+    private static final int MAX_CHUNK = 4096; // Accesses per lock hold
+
+    private final CacheSimulator simulator;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+    private final Thread thread;
+    private Workload workload; // Guarded by lock()
+    private long rate = 5; // Accesses per second, 0 = paused; guarded by lock()
+    private int pendingSteps = 0; // Single steps requested while paused; guarded by lock()
+    private int generation = 0; // Bumped on every load or rate change to restart the pacing
+    private volatile long position = 0;
+    private volatile long length = 0;
+    private volatile long hits = 0;
+    private volatile long misses = 0;
+    private volatile long writes = 0;
+    private volatile long victimHits = 0;
+    private volatile long bytesRead = 0;
+    private volatile long bytesWritten = 0;
+
+    SimulationWorker(CacheSimulator simulator) {
+        this.simulator = simulator;
+        this.thread = new Thread(this::run, "cache-simulation");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Held by the Swing thread while it reads the simulator or its listeners
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    // Resets the simulator and starts a new workload (null just stops the current one)
+    void load(Workload newWorkload) {
+        lock.lock();
+        try {
+            simulator.reset();
+            workload = newWorkload;
+            pendingSteps = 0;
+            generation++;
+            publish();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void setRate(long accessesPerSecond) {
+        if (accessesPerSecond < 0) {
+            throw new IllegalArgumentException("Rate must not be negative: " + accessesPerSecond);
+        }
+        lock.lock();
+        try {
+            rate = accessesPerSecond;
+            generation++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long rate() {
+        lock.lock();
+        try {
+            return rate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs exactly one more access; meant for use while paused
+    void step() {
+        lock.lock();
+        try {
+            pendingSteps++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long position() {
+        return position;
+    }
+
+    long length() {
+        return length;
+    }
+
+    long hits() {
+        return hits;
+    }
+
+    long misses() {
+        return misses;
+    }
+
+    long writes() {
+        return writes;
+    }
+
+    // Hits served by the victim cache, included in hits()
+    long victimHits() {
+        return victimHits;
+    }
+
+    // Traffic between the cache and memory
+    long bytesRead() {
+        return bytesRead;
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    boolean isFinished() {
+        return length > 0 && position >= length;
+    }
+
+    private void publish() {
+        position = workload == null ? 0 : workload.position();
+        length = workload == null ? 0 : workload.length();
+        hits = simulator.getHitCount();
+        misses = simulator.getMissCount();
+        writes = simulator.getWriteCount();
+        victimHits = simulator.getVictimHitCount();
+        bytesRead = simulator.getBytesRead();
+        bytesWritten = simulator.getBytesWritten();
+    }
+
+    private boolean hasWork() {
+        return workload != null && workload.hasNext() && (rate > 0 || pendingSteps > 0);
+    }
+
+    private void run() {
+        int paced = -1; // Generation the pacing below belongs to
+        long epoch = 0; // When the current pacing started
+        long issued = 0; // Accesses run since epoch
+        try {
+            while (true) {
+                lock.lockInterruptibly();
+                try {
+                    while (!hasWork()) {
+                        changed.await();
+                        paced = -1;
+                    }
+                    long chunk;
+                    if (pendingSteps > 0) {
+                        pendingSteps--;
+                        chunk = 1;
+                    } else if (rate == UNTHROTTLED) {
+                        chunk = MAX_CHUNK;
+                    } else {
+                        long now = System.nanoTime();
+                        if (paced != generation) {
+                            paced = generation;
+                            epoch = now;
+                            issued = 0;
+                        }
+                        // Everything due by now, counting the first access as due immediately
+                        long due = (long) ((now - epoch) * (double) rate / 1e9) + 1;
+                        chunk = Math.min(due - issued, MAX_CHUNK);
+                        if (chunk <= 0) {
+                            long nextDue = epoch + (long) (issued * 1e9 / rate);
+                            changed.awaitNanos(Math.max(nextDue - now, 1));
+                            continue;
+                        }
+                        issued += chunk;
+                    }
+                    for (long i = 0; i < chunk && workload.hasNext(); i++) {
+                        boolean write = workload.peekWrite();
+                        simulator.access(workload.next(), write);
+                    }
+                    publish();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.awt.*;
+import java.text.DecimalFormat;
+import javax.swing.*;
+
+// Hit / miss bar chart painted directly from two counters; update() only schedules a repaint
+// when the counters changed, so the render loop can call it every frame for free.
+class StatsChartPanel extends JPanel {
+    private final Color hitColor;
+    private final Color missColor;
+    private final DecimalFormat df = new DecimalFormat("0.00");
+    private final Font labelFont = new Font("SansSerif", Font.PLAIN, 12);
+    private final Font countFont = new Font("SansSerif", Font.BOLD, 14);
+    private final Font emptyFont = new Font("SansSerif", Font.ITALIC, 14);
+    private long hits = 0;
+    private long misses = 0;
+
+    StatsChartPanel(Color hitColor, Color missColor) {
+        this.hitColor = hitColor;
+        this.missColor = missColor;
+    }
+
+    void update(long hits, long misses) {
+        if (hits != this.hits || misses != this.misses) {
+            this.hits = hits;
+            this.misses = misses;
+            repaint();
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        Insets insets = getInsets();
+        int x = insets.left + 10;
+        int y = insets.top + 10;
+        int width = getWidth() - insets.left - insets.right - 20;
+        int height = getHeight() - insets.top - insets.bottom - 20;
+        long total = hits + misses;
+
+        if (total == 0) {
+            g2d.setFont(emptyFont);
+            String text = "No data available yet";
+            FontMetrics fm = g2d.getFontMetrics();
+            g2d.drawString(text, x + (width - fm.stringWidth(text)) / 2, y + height / 2);
+            return;
+        }
+
+        int summaryHeight = 24;
+        int columnWidth = (width - 10) / 2;
+        int barTop = y + 18;
+        int barHeight = height - summaryHeight - 18 - 20;
+        drawBar(g2d, "Hits", hits, total, hitColor, x, barTop, columnWidth, barHeight);
+        drawBar(g2d, "Misses", misses, total, missColor, x + columnWidth + 10, barTop, columnWidth, barHeight);
+
+        double hitRate = (double) hits / total * 100;
+        String summary = "Summary: " + hits + " hits (" + df.format(hitRate) + "%), "
+                + misses + " misses (" + df.format(100 - hitRate) + "%)";
+        g2d.setFont(labelFont);
+        g2d.setColor(Color.BLACK);
+        FontMetrics fm = g2d.getFontMetrics();
+        g2d.drawString(summary, x + (width - fm.stringWidth(summary)) / 2, y + height - 4);
+    }
+
+    private void drawBar(Graphics2D g2d, String label, long value, long total, Color color,
+                         int x, int top, int width, int height) {
+        g2d.setFont(labelFont);
+        g2d.setColor(Color.BLACK);
+        FontMetrics fm = g2d.getFontMetrics();
+        g2d.drawString(label, x + (width - fm.stringWidth(label)) / 2, top - 4);
+
+        g2d.setColor(Color.GRAY);
+        g2d.drawRect(x, top, width, height);
+        int filled = (int) (height * (double) value / total);
+        g2d.setColor(color);
+        g2d.fillRect(x + 1, top + height - filled, width - 1, filled);
+
+        g2d.setFont(countFont);
+        g2d.setColor(Color.BLACK);
+        String count = String.valueOf(value);
+        g2d.drawString(count, x + (width - g2d.getFontMetrics().stringWidth(count)) / 2, top + height + 16);
+    }
+}
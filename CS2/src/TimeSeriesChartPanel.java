@@ -0,0 +1,110 @@
+import java.awt.*;
+import javax.swing.*;
+import cachesim.WindowedMetrics;
+
+// Line chart of the windowed hit and miss rates, newest window on the right. update() copies the
+// retained windows out of the metrics rings (the caller holds the simulation lock) and schedules
+// a repaint only when a window has completed since the last frame.
+class TimeSeriesChartPanel extends JPanel {
+    private final Color hitColor;
+    private final Color missColor;
+    private final Font labelFont = new Font("SansSerif", Font.PLAIN, 12);
+    private final Font emptyFont = new Font("SansSerif", Font.ITALIC, 14);
+    private double[] hitRatios = new double[0]; // Oldest retained window first
+    private long firstWindow = 0;
+    private long windows = -1; // Completed windows as of the last copy
+    private int window = 1;
+
+    TimeSeriesChartPanel(Color hitColor, Color missColor) {
+        this.hitColor = hitColor;
+        this.missColor = missColor;
+    }
+
+    void update(WindowedMetrics metrics) {
+        if (metrics.windows() == windows) {
+            return;
+        }
+        windows = metrics.windows();
+        firstWindow = metrics.firstRetained();
+        window = metrics.window();
+        int count = (int) (windows - firstWindow);
+        if (hitRatios.length != count) {
+            hitRatios = new double[count];
+        }
+        for (int i = 0; i < count; i++) {
+            hitRatios[i] = metrics.hitRatio(firstWindow + i);
+        }
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        Insets insets = getInsets();
+        g2d.setFont(labelFont);
+        FontMetrics fm = g2d.getFontMetrics();
+        int left = insets.left + fm.stringWidth("100%") + 8;
+        int top = insets.top + 20;
+        int width = getWidth() - insets.right - 10 - left;
+        int height = getHeight() - insets.bottom - fm.getHeight() - 8 - top;
+
+        if (hitRatios.length == 0) {
+            g2d.setFont(emptyFont);
+            String text = "No complete window of " + window + " accesses yet";
+            g2d.drawString(text, insets.left + (getWidth() - insets.left - insets.right
+                    - g2d.getFontMetrics().stringWidth(text)) / 2, top + height / 2);
+            return;
+        }
+
+        // Axes with 0 / 50 / 100% gridlines
+        g2d.setColor(Color.BLACK);
+        for (int percent = 0; percent <= 100; percent += 50) {
+            int y = top + height - height * percent / 100;
+            String label = percent + "%";
+            g2d.drawString(label, left - 4 - fm.stringWidth(label), y + fm.getAscent() / 2);
+            g2d.setColor(percent == 0 ? Color.GRAY : Color.LIGHT_GRAY);
+            g2d.drawLine(left, y, left + width, y);
+            g2d.setColor(Color.BLACK);
+        }
+        String from = "window " + firstWindow;
+        String to = "window " + (firstWindow + hitRatios.length - 1) + " (" + window + " accesses each)";
+        g2d.drawString(from, left, top + height + fm.getAscent() + 4);
+        g2d.drawString(to, left + width - fm.stringWidth(to), top + height + fm.getAscent() + 4);
+
+        drawLine(g2d, hitColor, false, left, top, width, height);
+        drawLine(g2d, missColor, true, left, top, width, height);
+
+        // Legend above the plot
+        int x = left;
+        for (int i = 0; i < 2; i++) {
+            g2d.setColor(i == 0 ? hitColor : missColor);
+            g2d.fillRect(x, insets.top + 4, 10, 10);
+            g2d.setColor(Color.BLACK);
+            String label = i == 0 ? "Hit rate" : "Miss rate";
+            g2d.drawString(label, x + 14, insets.top + 4 + fm.getAscent() - 2);
+            x += 14 + fm.stringWidth(label) + 16;
+        }
+    }
+
+    private void drawLine(Graphics2D g2d, Color color, boolean miss, int left, int top, int width, int height) {
+        int n = hitRatios.length;
+        int[] xs = new int[n];
+        int[] ys = new int[n];
+        for (int i = 0; i < n; i++) {
+            double ratio = miss ? 1 - hitRatios[i] : hitRatios[i];
+            xs[i] = left + (n == 1 ? width : (int) ((long) width * i / (n - 1)));
+            ys[i] = top + height - (int) Math.round(height * ratio);
+        }
+        g2d.setColor(color);
+        g2d.setStroke(new BasicStroke(2f));
+        if (n == 1) {
+            g2d.fillOval(xs[0] - 3, ys[0] - 3, 6, 6);
+        } else {
+            g2d.drawPolyline(xs, ys, n);
+        }
+        g2d.setStroke(new BasicStroke(1f));
+    }
+}
@@ -0,0 +1,89 @@
+package cachesim;
+
+import java.util.Arrays;
+
+// Reusable primitive buffer of accesses handed between trace readers, generators and the simulator.
+// Filling a batch never allocates, so a whole trace streams through one instance. Each access is
+// a read unless its bit in the write bitset is set; anyWrites lets read-only batches skip the bits.
+public final class AccessBatch {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    final long[] addresses;
+    final long[] writes; // One bit per access
+    int size;
+    boolean anyWrites;
+
+    public AccessBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AccessBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity must be positive: " + capacity);
+        }
+        this.addresses = new long[capacity];
+        this.writes = new long[(capacity + 63) >>> 6];
+    }
+
+    public int capacity() {
+        return addresses.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long address(int i) {
+        return addresses[i];
+    }
+
+    // Backing array; only the first size() entries are meaningful
+    public long[] addresses() {
+        return addresses;
+    }
+
+    public boolean isWrite(int i) {
+        return (writes[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public boolean hasWrites() {
+        return anyWrites;
+    }
+
+    public void clear() {
+        size = 0;
+        clearWrites();
+    }
+
+    // Marks every access a read; producers call this before filling a batch
+    void clearWrites() {
+        if (anyWrites) {
+            Arrays.fill(writes, 0L);
+            anyWrites = false;
+        }
+    }
+
+    void setWrite(int i) {
+        writes[i >>> 6] |= 1L << i;
+        anyWrites = true;
+    }
+
+    public boolean isFull() {
+        return size == addresses.length;
+    }
+
+    // Appends one read; callers check isFull() first
+    public void add(long address) {
+        add(address, false);
+    }
+
+    public void add(long address, boolean write) {
+        int i = size++;
+        addresses[i] = address;
+        if (write) {
+            setWrite(i);
+        } else if (anyWrites) {
+            writes[i >>> 6] &= ~(1L << i);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package cachesim;
+
+// Observer notified by CacheSimulator after every access it processes
+public interface AccessListener {
+    // Called once per access with the cache line it mapped to and whether it hit
+    void onAccess(long blockNumber, int line, boolean hit);
+
+    // Called when the simulator is cleared back to an empty cache
+    default void onReset() {
+    }
+}
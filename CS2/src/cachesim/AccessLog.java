@@ -0,0 +1,201 @@
+package cachesim;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Bounded access log: the most recent accesses are kept as primitive records in a ring buffer
+// and older ones are overwritten, so memory stays fixed however long a run is. The log can
+// optionally be spilled to a text file as records arrive; a spill started before a run holds
+// every access of it, one started later the records still held and everything after them.
+public final class AccessLog implements AccessListener, Closeable {
+    private final int capacity;
+    private final int ways; // Used to report the set of a line
+    private final long[] sequence; // 1-based access number within the run
+    private final long[] blocks;
+    private final int[] lines;
+    private final long[] hitBits;
+    private int next = 0; // Ring slot written next
+    private long total = 0; // Records ever written since the last clear
+    private long clears = 0;
+    private BufferedWriter spill;
+    private volatile IOException spillFailure; // Set on the simulation thread, taken by the GUI
+    private AddressMapping mapping; // When set, records show the block's tag and index
+
+    public AccessLog(int capacity, int ways) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Log capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ways = ways;
+        this.sequence = new long[capacity];
+        this.blocks = new long[capacity];
+        this.lines = new int[capacity];
+        this.hitBits = new long[(capacity + 63) >>> 6];
+    }
+
+    @Override
+    public void onAccess(long blockNumber, int line, boolean hit) {
+        int slot = next;
+        total++;
+        sequence[slot] = total;
+        blocks[slot] = blockNumber;
+        lines[slot] = line;
+        if (hit) {
+            hitBits[slot >>> 6] |= 1L << slot;
+        } else {
+            hitBits[slot >>> 6] &= ~(1L << slot);
+        }
+        next = slot + 1 == capacity ? 0 : slot + 1;
+
+        if (spill != null) {
+            try {
+                spill.write(format(slot));
+                spill.newLine();
+            } catch (IOException e) {
+                // A full disk must not stop the simulation: drop the spill and keep the error for the GUI
+                abandonSpill(e);
+            }
+        }
+    }
+
+    private void abandonSpill(IOException failure) {
+        BufferedWriter writer = spill;
+        spill = null;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        spillFailure = failure;
+    }
+
+    // The error that stopped the spill, once; null if none since the last call
+    public IOException takeSpillFailure() {
+        IOException failure = spillFailure;
+        spillFailure = null;
+        return failure;
+    }
+
+    @Override
+    public void onReset() {
+        clear();
+    }
+
+    public void clear() {
+        next = 0;
+        total = 0;
+        clears++;
+        Arrays.fill(hitBits, 0L);
+    }
+
+    // Shows each block's tag and set index in the formatted records; null turns that off
+    public void setAddressMapping(AddressMapping mapping) {
+        this.mapping = mapping;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Records currently held, at most capacity()
+    public int size() {
+        return (int) Math.min(total, capacity);
+    }
+
+    public long totalRecorded() {
+        return total;
+    }
+
+    // Times the log has been cleared, so a reader tracking totalRecorded() can tell that it restarted
+    public long clears() {
+        return clears;
+    }
+
+    // Ring slot of the i-th held record, 0 = oldest
+    private int slot(int i) {
+        int oldest = total <= capacity ? 0 : next;
+        int slot = oldest + i;
+        return slot >= capacity ? slot - capacity : slot;
+    }
+
+    public long sequenceAt(int i) {
+        return sequence[slot(i)];
+    }
+
+    public long blockAt(int i) {
+        return blocks[slot(i)];
+    }
+
+    public int lineAt(int i) {
+        return lines[slot(i)];
+    }
+
+    // -1 for a write that bypassed the cache
+    public int setAt(int i) {
+        int line = lines[slot(i)];
+        return line < 0 ? -1 : line / ways;
+    }
+
+    public boolean hitAt(int i) {
+        int slot = slot(i);
+        return (hitBits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    // Log line for the i-th held record
+    public String formatAt(int i) {
+        return format(slot(i));
+    }
+
+    private String format(int slot) {
+        boolean hit = (hitBits[slot >>> 6] & (1L << slot)) != 0;
+        String block = "Memory Block " + blocks[slot];
+        if (mapping != null) {
+            long address = mapping.address(blocks[slot]);
+            block += " (tag 0x" + Long.toHexString(mapping.tag(address)) + ", index " + mapping.index(address) + ")";
+        }
+        if (lines[slot] < 0) {
+            return "#" + sequence[slot] + " [Miss] " + block + " written around the cache";
+        }
+        return hit
+                ? "#" + sequence[slot] + " [Hit] " + block + " found in Cache Block " + lines[slot]
+                : "#" + sequence[slot] + " [Miss] " + block + " loaded into Cache Block " + lines[slot];
+    }
+
+    // Writes the records currently held, then every new record, to the file. Records already
+    // overwritten are gone, so the file then starts with a line saying which ones are missing.
+    public void startSpill(Path file) throws IOException {
+        stopSpill();
+        BufferedWriter writer = Files.newBufferedWriter(file);
+        long dropped = total - size();
+        if (dropped > 0) {
+            writer.write("[Dropped] Accesses #1 to #" + dropped + " were overwritten before the log was saved");
+            writer.newLine();
+        }
+        for (int i = 0; i < size(); i++) {
+            writer.write(formatAt(i));
+            writer.newLine();
+        }
+        spill = writer;
+    }
+
+    public boolean isSpilling() {
+        return spill != null;
+    }
+
+    public void stopSpill() throws IOException {
+        if (spill != null) {
+            BufferedWriter writer = spill;
+            spill = null;
+            writer.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopSpill();
+    }
+}
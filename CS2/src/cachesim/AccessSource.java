@@ -0,0 +1,9 @@
+package cachesim;
+
+import java.io.IOException;
+
+// Anything that can stream accesses into a batch: trace files and synthetic workloads
+public interface AccessSource {
+    // Refills the batch from its start; returns the number of accesses read, or 0 when exhausted
+    int read(AccessBatch batch) throws IOException;
+}
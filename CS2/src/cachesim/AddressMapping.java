@@ -0,0 +1,159 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Locale;
+
+// Splits a byte address into tag, set index and line offset for one cache geometry. Addresses
+// are unsigned and addressBits wide (32 or 64; a 32-bit address keeps only its low 32 bits).
+// Power-of-two line sizes and set counts use shifts and masks; anything else falls back to
+// unsigned division, so for example 48-byte lines or 24 sets still decode exactly.
+public final class AddressMapping {
+    private final int lineBytes;
+    private final int sets;
+    private final int addressBits;
+    private final long addressMask;
+    private final int offsetBits; // log2(lineBytes), or -1
+    private final int indexBits; // log2(sets), or -1
+
+    public AddressMapping(int lineBytes, int sets, int addressBits) {
+        if (lineBytes <= 0) {
+            throw new IllegalArgumentException("Line size must be positive: " + lineBytes);
+        }
+        if (sets <= 0) {
+            throw new IllegalArgumentException("Sets must be positive: " + sets);
+        }
+        if (addressBits != 32 && addressBits != 64) {
+            throw new IllegalArgumentException("Addresses must be 32 or 64 bits: " + addressBits);
+        }
+        this.lineBytes = lineBytes;
+        this.sets = sets;
+        this.addressBits = addressBits;
+        this.addressMask = addressBits == 64 ? -1L : 0xFFFF_FFFFL;
+        this.offsetBits = Integer.bitCount(lineBytes) == 1 ? Integer.numberOfTrailingZeros(lineBytes) : -1;
+        this.indexBits = Integer.bitCount(sets) == 1 ? Integer.numberOfTrailingZeros(sets) : -1;
+    }
+
+    public static AddressMapping of(CacheConfig config) {
+        return new AddressMapping(config.blockBytes(), config.sets(), config.addressBits());
+    }
+
+    // Line (block) number holding the address
+    public long block(long address) {
+        address &= addressMask;
+        return offsetBits >= 0 ? address >>> offsetBits : Long.divideUnsigned(address, lineBytes);
+    }
+
+    // First byte of a block
+    public long address(long block) {
+        return block * lineBytes;
+    }
+
+    public int offset(long address) {
+        address &= addressMask;
+        return offsetBits >= 0
+                ? (int) (address & (lineBytes - 1))
+                : (int) Long.remainderUnsigned(address, lineBytes);
+    }
+
+    public int index(long address) {
+        long block = block(address);
+        return indexBits >= 0 ? (int) (block & (sets - 1)) : (int) Long.remainderUnsigned(block, sets);
+    }
+
+    public long tag(long address) {
+        long block = block(address);
+        return indexBits >= 0 ? block >>> indexBits : Long.divideUnsigned(block, sets);
+    }
+
+    // Rewrites byte addresses into block numbers in place
+    public void toBlocks(long[] addresses, int off, int len) {
+        long mask = addressMask;
+        if (offsetBits >= 0) {
+            int shift = offsetBits;
+            for (int i = off, end = off + len; i < end; i++) {
+                addresses[i] = (addresses[i] & mask) >>> shift;
+            }
+        } else {
+            for (int i = off, end = off + len; i < end; i++) {
+                addresses[i] = Long.divideUnsigned(addresses[i] & mask, lineBytes);
+            }
+        }
+    }
+
+    public void toBlocks(AccessBatch batch) {
+        toBlocks(batch.addresses, 0, batch.size);
+    }
+
+    // Wraps a source of byte addresses so it delivers block numbers; closing it closes the source
+    public AccessSource decoding(AccessSource source) {
+        return new Decoding(source);
+    }
+
+    public int lineBytes() {
+        return lineBytes;
+    }
+
+    public int sets() {
+        return sets;
+    }
+
+    public int addressBits() {
+        return addressBits;
+    }
+
+    public boolean isPowerOfTwo() {
+        return offsetBits >= 0 && indexBits >= 0;
+    }
+
+    public int offsetBits() {
+        return offsetBits;
+    }
+
+    public int indexBits() {
+        return indexBits;
+    }
+
+    // Bits left for the tag, or -1 when the geometry is not a power of two
+    public int tagBits() {
+        return isPowerOfTwo() ? Math.max(addressBits - offsetBits - indexBits, 0) : -1;
+    }
+
+    // "32-bit addresses: tag 20 | index 6 | offset 6 bits", or the divisors for other geometries
+    public String describe() {
+        if (isPowerOfTwo()) {
+            return String.format(Locale.ROOT, "%d-bit addresses: tag %d | index %d | offset %d bits",
+                    addressBits, tagBits(), indexBits, offsetBits);
+        }
+        return String.format(Locale.ROOT, "%d-bit addresses: tag = block / %d | index = block mod %d | "
+                + "offset = address mod %d", addressBits, sets, sets, lineBytes);
+    }
+
+    // "0x1f48 -> tag 0x7 | index 53 | offset 8"
+    public String format(long address) {
+        return String.format(Locale.ROOT, "0x%x -> tag 0x%x | index %d | offset %d",
+                address & addressMask, tag(address), index(address), offset(address));
+    }
+
+    private final class Decoding implements AccessSource, Closeable {
+        private final AccessSource source;
+
+        Decoding(AccessSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(AccessBatch batch) throws IOException {
+            int n = source.read(batch);
+            toBlocks(batch.addresses, 0, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (source instanceof Closeable) {
+                ((Closeable) source).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,1407 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+// Command-line entry point for GUI-free runs.
+//
+//   java cachesim.BatchRunner replay [cache options] [--ingest-only] [--classify [--csv FILE]] <trace>
+//   java cachesim.BatchRunner run --pattern P [--count N] [--seed S] [pattern options] [cache options]
+//                                 [--classify [--csv FILE]]
+//   java cachesim.BatchRunner mrc [--max-lines N] [--step S] [--csv FILE] (<trace> | --pattern P ...)
+//   java cachesim.BatchRunner parallel [cache options] [--threads T] [--csv FILE] (<trace> | --pattern P ...)
+//   java cachesim.BatchRunner sweep --lines L1,L2.. --ways W1,.. --policy P1,.. [--block-sizes B1,..]
+//                                   [--threads T] [--csv FILE | --json FILE] (<trace> | --pattern P ...)
+//   java cachesim.BatchRunner hierarchy --l1 SPEC [--l2 SPEC] [--l3 SPEC] [--inclusion inclusive|exclusive|nine]
+//                                       [--memory-latency NS] [--cores N [--quantum Q]] [--csv FILE]
+//                                       (<trace per core>... | --pattern P ...)
+//   java cachesim.BatchRunner sample [cache options] (--sample-sets N | --unit U --period P [--warmup W|functional])
+//                                    [--confidence C] [--hit-latency NS] [--memory-latency NS] (<trace> | --pattern P ...)
+//   java cachesim.BatchRunner convert [--chunk N] [--no-deflate] (<trace> | --pattern P ...) <output>
+//   java cachesim.BatchRunner coherence [cache options] [--cores N] [--protocol mesi|moesi] [--directory]
+//                                       [--quantum Q] [--hot K] [--csv FILE] (<trace per core>... | --pattern P ...)
+//   java cachesim.BatchRunner serve [--port P | --socket PATH] [--sessions N] [--queue Q]
+//   java cachesim.BatchRunner send [--port P | --socket PATH] [cache options] [--report N] (<trace> | --pattern P ...)
+//
+// Level SPEC: lines:ways:latency[:policy][:private|:shared][:wb|:wt][:nwa], ways may be "fa"; L1 defaults
+//                to private, L2/L3 to shared. With --cores N each core has its own copy of the private
+//                levels and its own stream (one trace per core, or the --pattern seeded per core),
+//                interleaved Q accesses at a time
+// Cache options: --lines N, --ways W | --fully-associative, --policy lru|plru|fifo|random|srrip, --off-heap,
+//                --write-policy write-back|write-through, --no-write-allocate, --block-bytes B,
+//                --victim-entries N (1-16 entry victim cache)
+// Trace options: --line-size B decodes the trace's byte addresses with B-byte lines (also the block
+//                size), --address-bits 32|64; without --line-size trace values are block numbers
+// --write-fraction F marks that share of a --pattern workload's accesses as writes
+// Recording (replay / run): --record FILE also writes the stream read to a compact trace; --chunk N
+//                accesses per chunk (the seek granularity), --no-deflate stores chunks uncompressed
+// Checkpoints (replay / run): --checkpoint FILE saves the whole cache state and the input position at
+//                the end, and every --checkpoint-every N accesses; --resume FILE continues such a run from
+//                the saved position; --fork FILE starts from the saved cache contents with zeroed counters
+//                at the start of the input, for what-if runs off one warmed cache. A checkpoint's cache
+//                configuration replaces the cache options; a fork's prefetcher can be replaced with --prefetch.
+// Prefetch options (replay / run): --prefetch next-line|stride|stream, --prefetch-depth D, --prefetch-latency L
+// Coherence: one private cache per core; each trace (or a copy of the --pattern seeded per core) is one
+//                core's stream. --pattern counters [--spacing B] has each core update a counter B bytes
+//                after the previous core's. Without --line-size traces are block numbers and every
+//                coherence miss counts as true sharing.
+// Streaming: serve simulates binary access streams from local clients (see IngestServer), at most --sessions
+//                at once, each with its own cache and --queue batches between its socket and its cache.
+//                send is such a client: it streams a trace or --pattern with its cache options and prints
+//                the server's replies. Both use TCP on the loopback interface, or a Unix domain socket.
+// Metrics options (replay / run): --window N records hit and miss rates, per-set misses and, with --reuse,
+//                reuse-distance percentiles every N accesses, keeping the last --keep K windows;
+//                --metrics FILE writes them as CSV (JSON for a .json name), --set-metrics FILE the per-set misses
+public final class BatchRunner {
+    private BatchRunner() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        Options options = new Options(args, 1);
+        if (options.files.size() > (args[0].equals("convert") ? 2 : 1)
+                && !args[0].equals("coherence") && !args[0].equals("hierarchy")) {
+            throw new IllegalArgumentException("Unexpected argument: " + options.files.get(1));
+        }
+        switch (args[0]) {
+            case "replay":
+                replay(options);
+                break;
+            case "run":
+                run(options);
+                break;
+            case "mrc":
+                missRatioCurve(options);
+                break;
+            case "sweep":
+                sweep(options);
+                break;
+            case "parallel":
+                parallel(options);
+                break;
+            case "hierarchy":
+                hierarchy(options);
+                break;
+            case "sample":
+                sample(options);
+                break;
+            case "coherence":
+                coherence(options);
+                break;
+            case "convert":
+                convert(options);
+                break;
+            case "serve":
+                serve(options);
+                break;
+            case "send":
+                send(options);
+                break;
+            default:
+                usage();
+        }
+    }
+
+    private static void replay(Options options) throws IOException {
+        Path trace = Paths.get(options.requireFile());
+        Checkpoint start = options.start();
+        if (options.ingestOnly && (start != null || options.checkpoint != null)) {
+            throw new IllegalArgumentException("Checkpoints need a simulated cache, not --ingest-only");
+        }
+        CacheSimulator simulator = options.ingestOnly
+                ? null
+                : options.simulator(start);
+        MissClassifier classifier = options.classify && simulator != null ? classify(simulator) : null;
+        WindowedMetrics metrics = null;
+        if (simulator != null) {
+            options.attachPrefetcher(simulator);
+            metrics = options.attachMetrics(simulator);
+        }
+        AccessBatch batch = new AccessBatch();
+
+        long accesses = 0;
+        long bytes;
+        AddressMapping mapping = options.lineSize > 0
+                ? AddressMapping.of(simulator != null ? simulator.getConfig() : options.config())
+                : null;
+        String source = trace.getFileName().toString();
+        long began = System.nanoTime();
+        try (TraceReader reader = TraceReader.open(trace)) {
+            long position = options.resumeAt(start, source);
+            if (reader.skip(position) != position) {
+                throw new IOException(trace + " ends before the checkpoint's position " + position);
+            }
+            Checkpointer checkpoints = options.checkpointer(simulator, position, source);
+            try (TraceRecorder recorder = options.recorder(reader)) {
+                AccessSource input = recorder != null ? recorder : reader;
+                int n;
+                while ((n = input.read(batch)) > 0) {
+                    accesses += n;
+                    if (simulator != null) {
+                        if (mapping != null) {
+                            mapping.toBlocks(batch);
+                        }
+                        simulator.accessAll(batch);
+                        if (checkpoints != null) {
+                            checkpoints.advance(position + accesses);
+                        }
+                    }
+                }
+            }
+            if (checkpoints != null) {
+                checkpoints.finish(position + accesses);
+            }
+            bytes = reader.bytesRead();
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Trace: %s (%,d bytes)%n", trace, bytes);
+        System.out.printf(Locale.ROOT, "%s %,d accesses in %.3f s: %,.0f accesses/s, %.1f MB/s%n",
+                simulator == null ? "Ingested" : "Replayed", accesses, seconds,
+                accesses / Math.max(seconds, 1e-9), bytes / 1e6 / Math.max(seconds, 1e-9));
+        printKernel(simulator);
+        printRecording(options);
+        printStart(start, options);
+        if (simulator != null) {
+            printCounts(simulator);
+            if (mapping != null) {
+                System.out.printf(Locale.ROOT, "Address layout: %s%n", mapping.describe());
+            }
+        }
+        if (classifier != null) {
+            printMissClasses(classifier, options);
+        }
+        if (metrics != null) {
+            printMetrics(metrics, options);
+        }
+    }
+
+    private static void run(Options options) throws IOException {
+        Workload workload = workload(options);
+        Checkpoint start = options.start();
+        CacheSimulator simulator = options.simulator(start);
+        MissClassifier classifier = options.classify ? classify(simulator) : null;
+        options.attachPrefetcher(simulator);
+        WindowedMetrics metrics = options.attachMetrics(simulator);
+        AccessBatch batch = new AccessBatch();
+
+        String source = String.format(Locale.ROOT, "%s (seed %d)", workload.name(), options.seed);
+        long position = options.resumeAt(start, source);
+        if (position > workload.length()) {
+            throw new IllegalArgumentException(source + " ends before the checkpoint's position " + position);
+        }
+        workload.seek(position);
+        Checkpointer checkpoints = options.checkpointer(simulator, position, source);
+        long began = System.nanoTime();
+        try (TraceRecorder recorder = options.recorder(workload)) {
+            AccessSource input = recorder != null ? recorder : workload;
+            while (input.read(batch) > 0) {
+                simulator.accessAll(batch);
+                if (checkpoints != null) {
+                    checkpoints.advance(workload.position());
+                }
+            }
+        }
+        if (checkpoints != null) {
+            checkpoints.finish(workload.position());
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+
+        long accesses = workload.length() - position;
+        System.out.println(source);
+        System.out.printf(Locale.ROOT, "Simulated %,d accesses in %.3f s: %,.0f accesses/s%n",
+                accesses, seconds, accesses / Math.max(seconds, 1e-9));
+        printKernel(simulator);
+        printRecording(options);
+        printStart(start, options);
+        printCounts(simulator);
+        if (classifier != null) {
+            printMissClasses(classifier, options);
+        }
+        if (metrics != null) {
+            printMetrics(metrics, options);
+        }
+    }
+
+    // Which direct-mapped batch kernel served the read batches, when one did
+    private static void printKernel(CacheSimulator simulator) {
+        String kernel = simulator == null ? null : simulator.batchKernel();
+        if (kernel != null) {
+            System.out.printf(Locale.ROOT, "Batch kernel: %s%n", kernel);
+        }
+    }
+
+    private static void printRecording(Options options) throws IOException {
+        if (options.record != null) {
+            System.out.printf(Locale.ROOT, "Recorded to %s (%,d bytes)%n", options.record, Files.size(Paths.get(options.record)));
+        }
+    }
+
+    // Where a --resume or --fork run started, and the --checkpoint file it saved to
+    private static void printStart(Checkpoint start, Options options) {
+        if (start != null) {
+            System.out.printf(Locale.ROOT, "%s %s at access %,d of %s%n", options.resume != null ? "Resumed from" : "Forked from",
+                    options.resume != null ? options.resume : options.fork, start.position(), start.source());
+        }
+        if (options.checkpoint != null) {
+            System.out.printf(Locale.ROOT, "Checkpointed to %s%n", options.checkpoint);
+        }
+    }
+
+    // Saves --checkpoint snapshots every --checkpoint-every accesses of the input and once it ends.
+    // Each snapshot replaces the last, so after a crash the file holds the latest complete one.
+    private static final class Checkpointer {
+        private final CacheSimulator simulator;
+        private final Path file;
+        private final long every; // 0 = only at the end
+        private final String source;
+        private long next;
+
+        Checkpointer(CacheSimulator simulator, Path file, long every, long position, String source) {
+            this.simulator = simulator;
+            this.file = file;
+            this.every = every;
+            this.source = source;
+            this.next = every > 0 ? position + every : Long.MAX_VALUE;
+        }
+
+        // Called at batch boundaries, so snapshots land on the first boundary past each multiple
+        void advance(long position) throws IOException {
+            if (position >= next) {
+                Checkpoint.capture(simulator, position, source).write(file);
+                next = position + every;
+            }
+        }
+
+        void finish(long position) throws IOException {
+            Checkpoint.capture(simulator, position, source).write(file);
+        }
+    }
+
+    // Range of the windowed hit rate, where phase changes show up; --metrics and --set-metrics
+    // write the series
+    private static void printMetrics(WindowedMetrics metrics, Options options) throws IOException {
+        long first = metrics.firstRetained();
+        if (metrics.windows() > first) {
+            long low = first;
+            long high = first;
+            for (long w = first; w < metrics.windows(); w++) {
+                if (metrics.hits(w) < metrics.hits(low)) {
+                    low = w;
+                }
+                if (metrics.hits(w) > metrics.hits(high)) {
+                    high = w;
+                }
+            }
+            System.out.printf(Locale.ROOT, "Windowed Hit Rate: %.2f%% (window %d) to %.2f%% (window %d) over %,d windows "
+                            + "of %,d accesses%n", 100 * metrics.hitRatio(low), low, 100 * metrics.hitRatio(high), high,
+                    metrics.windows() - first, metrics.window());
+        }
+        if (options.metrics != null) {
+            StringBuilder out = new StringBuilder();
+            if (options.metrics.endsWith(".json")) {
+                metrics.writeJson(out);
+            } else {
+                metrics.writeCsv(out);
+            }
+            Files.writeString(Paths.get(options.metrics), out);
+            System.out.println("Wrote " + options.metrics);
+        }
+        if (options.setMetrics != null) {
+            StringBuilder out = new StringBuilder();
+            metrics.writeSetCsv(out);
+            Files.writeString(Paths.get(options.setMetrics), out);
+            System.out.println("Wrote " + options.setMetrics);
+        }
+    }
+
+    private static MissClassifier classify(CacheSimulator simulator) {
+        MissClassifier classifier = new MissClassifier(simulator);
+        simulator.addListener(classifier);
+        return classifier;
+    }
+
+    // Three-C totals; --csv writes the per-set breakdown
+    private static void printMissClasses(MissClassifier classifier, Options options) throws IOException {
+        long misses = Math.max(classifier.misses(), 1);
+        System.out.printf(Locale.ROOT, "Compulsory Misses: %,d (%.2f%%)%n", classifier.compulsory(),
+                100.0 * classifier.compulsory() / misses);
+        System.out.printf(Locale.ROOT, "Capacity Misses: %,d (%.2f%%)%n", classifier.capacity(),
+                100.0 * classifier.capacity() / misses);
+        System.out.printf(Locale.ROOT, "Conflict Misses: %,d (%.2f%%)%n", classifier.conflict(),
+                100.0 * classifier.conflict() / misses);
+        if (options.csv != null) {
+            StringBuilder out = new StringBuilder();
+            classifier.writeSetBreakdown(out);
+            Files.writeString(Paths.get(options.csv), out);
+            System.out.println("Wrote " + options.csv);
+        }
+    }
+
+    // One pass over the trace or workload; prints the miss-ratio curve and reuse histogram
+    private static void missRatioCurve(Options options) throws IOException {
+        if (options.step < 0) {
+            throw new IllegalArgumentException("Step must not be negative: " + options.step);
+        }
+        int dmCount = 31 - Integer.numberOfLeadingZeros(Math.min(options.maxLines, 1 << 24)) + 1;
+        int[] dmSizes = new int[dmCount];
+        for (int i = 0; i < dmCount; i++) {
+            dmSizes[i] = 1 << i;
+        }
+        StackDistanceAnalyzer analyzer = new StackDistanceAnalyzer(options.maxLines, dmSizes);
+        AccessBatch batch = new AccessBatch();
+
+        long start = System.nanoTime();
+        AccessSource source = openSource(options);
+        try {
+            while (source.read(batch) > 0) {
+                analyzer.accessAll(batch);
+            }
+        } finally {
+            if (source instanceof Closeable) {
+                ((Closeable) source).close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Analysed %,d accesses (%,d distinct blocks) in %.3f s: %,.0f accesses/s%n",
+                analyzer.accesses(), analyzer.distinctBlocks(), seconds, analyzer.accesses() / Math.max(seconds, 1e-9));
+        StringBuilder out = new StringBuilder();
+        analyzer.writeMissRatioCurve(out, options.step);
+        out.append('\n');
+        analyzer.writeReuseHistogram(out);
+        if (options.csv != null) {
+            Files.writeString(Paths.get(options.csv), out);
+            System.out.println("Wrote " + options.csv);
+        } else {
+            System.out.print(out);
+        }
+    }
+
+    // One configuration, partitioned by set across cores; --csv writes the per-set counts
+    private static void parallel(Options options) throws IOException {
+        int threads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PartitionedSimulator simulator = new PartitionedSimulator(options.config(), pool, threads);
+
+        long start = System.nanoTime();
+        AccessSource source = openSource(options);
+        try {
+            simulator.run(source);
+        } finally {
+            if (source instanceof Closeable) {
+                ((Closeable) source).close();
+            }
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Simulated %,d accesses on %d partitions in %.3f s: %,.0f accesses/s%n",
+                simulator.accesses(), simulator.partitions(), seconds, simulator.accesses() / Math.max(seconds, 1e-9));
+        printCounts(simulator.config(), simulator.accesses(), simulator.hits());
+        if (options.csv != null) {
+            StringBuilder out = new StringBuilder();
+            simulator.writeSetStats(out);
+            Files.writeString(Paths.get(options.csv), out);
+            System.out.println("Wrote " + options.csv);
+        }
+    }
+
+    // L1 -> L2 -> L3 -> memory; prints the AMAT and the per-level breakdown
+    private static void hierarchy(Options options) throws IOException {
+        List<CacheLevel> levels = new ArrayList<>();
+        levels.add(options.l1 != null
+                ? CacheLevel.parse("L1", options.l1, false)
+                : CacheLevel.privateLevel("L1", options.config(), 1.0));
+        if (options.l2 != null) {
+            levels.add(CacheLevel.parse("L2", options.l2, true));
+        }
+        if (options.l3 != null) {
+            levels.add(CacheLevel.parse("L3", options.l3, true));
+        }
+        int cores = options.cores > 0 ? options.cores : Math.max(options.files.size(), 1);
+        if (!options.files.isEmpty() && options.files.size() != cores) {
+            throw new IllegalArgumentException("Need one trace per core: " + options.files.size() + " for " + cores + " cores");
+        }
+        CacheHierarchy hierarchy = new CacheHierarchy(levels, options.inclusion, cores, options.memoryLatency);
+
+        long start = System.nanoTime();
+        if (cores == 1) {
+            AccessBatch batch = new AccessBatch();
+            AccessSource source = openSource(options);
+            try {
+                while (source.read(batch) > 0) {
+                    hierarchy.accessAll(0, batch);
+                }
+            } finally {
+                if (source instanceof Closeable) {
+                    ((Closeable) source).close();
+                }
+            }
+        } else {
+            List<AccessSource> streams = new ArrayList<>();
+            try {
+                for (int c = 0; c < cores; c++) {
+                    streams.add(options.files.isEmpty()
+                            ? workload(options, options.seed + c)
+                            : openTrace(options, options.files.get(c)));
+                }
+                interleave(hierarchy, streams, options.quantum);
+            } finally {
+                for (AccessSource source : streams) {
+                    if (source instanceof Closeable) {
+                        ((Closeable) source).close();
+                    }
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Simulated %,d accesses in %.3f s: %,.0f accesses/s%n",
+                hierarchy.accesses(), seconds, hierarchy.accesses() / Math.max(seconds, 1e-9));
+        if (cores > 1) {
+            System.out.printf(Locale.ROOT, "Cores: %d, one stream each, interleaved %d access%s at a time%n",
+                    cores, options.quantum, options.quantum == 1 ? "" : "es");
+        }
+        for (int i = 0; i < hierarchy.levels(); i++) {
+            System.out.println(hierarchy.level(i).describe());
+        }
+        System.out.printf(Locale.ROOT, "Memory: %s ns, %s hierarchy%n", options.memoryLatency,
+                options.inclusion.name().toLowerCase(Locale.ROOT));
+        System.out.printf(Locale.ROOT, "Average memory access time: %.3f ns%n", hierarchy.amatNs());
+        System.out.printf(Locale.ROOT, "Memory traffic: %,d bytes read (%,d blocks), %,d bytes written "
+                        + "(%,d writebacks, %,d write-throughs)%n",
+                hierarchy.memoryBytesRead(), hierarchy.memoryReads(), hierarchy.memoryBytesWritten(),
+                hierarchy.memoryWritebacks(), hierarchy.memoryWriteThroughs());
+        StringBuilder out = new StringBuilder();
+        hierarchy.writeBreakdown(out);
+        if (options.csv != null) {
+            Files.writeString(Paths.get(options.csv), out);
+            System.out.println("Wrote " + options.csv);
+        } else {
+            System.out.print(out);
+        }
+    }
+
+    // Gives each core quantum accesses of its own stream in turn, round-robin, until every stream
+    // ends; a core whose stream has ended drops out. Each core reads ahead one batch of its own.
+    private static void interleave(CacheHierarchy hierarchy, List<AccessSource> streams, int quantum) throws IOException {
+        int cores = streams.size();
+        AccessBatch[] batches = new AccessBatch[cores];
+        int[] next = new int[cores];
+        boolean[] ended = new boolean[cores];
+        for (int c = 0; c < cores; c++) {
+            batches[c] = new AccessBatch();
+        }
+        int live = cores;
+        while (live > 0) {
+            for (int c = 0; c < cores; c++) {
+                AccessBatch batch = batches[c];
+                for (int q = 0; q < quantum && !ended[c]; q++) {
+                    if (next[c] == batch.size) {
+                        next[c] = 0;
+                        if (streams.get(c).read(batch) == 0) {
+                            ended[c] = true;
+                            live--;
+                            break;
+                        }
+                    }
+                    int i = next[c]++;
+                    hierarchy.access(c, batch.addresses[i], batch.anyWrites && batch.isWrite(i));
+                }
+            }
+        }
+    }
+
+    // Estimates the hit rate and AMAT of one configuration from a set or time sample, with
+    // confidence intervals; AMAT = hit latency + miss ratio * memory latency
+    private static void sample(Options options) throws IOException {
+        if ((options.sampleSets > 0) == (options.unit > 0)) {
+            throw new IllegalArgumentException("sample needs either --sample-sets or --unit and --period");
+        }
+        SetSampler sets = options.sampleSets > 0 ? new SetSampler(options.config(), options.sampleSets) : null;
+        TimeSampler time = sets == null
+                ? new TimeSampler(new CacheSimulator(options.config()), options.unit,
+                        options.period > 0 ? options.period : options.unit,
+                        options.warmup >= 0 ? options.warmup : TimeSampler.defaultWarmup(options.config()))
+                : null;
+        if (sets != null ? sets.sampledSets() == options.config().sets() : time.functionalWarming()) {
+            System.err.println(sets != null
+                    ? "Warning: every set is sampled, so every access is simulated and sampling saves no time"
+                    : "Warning: the warmup covers the whole gap between units, so every access is simulated and "
+                            + "sampling saves no time; use a shorter --warmup or a longer --period");
+        }
+
+        long start = System.nanoTime();
+        AccessSource source = openSource(options);
+        try {
+            if (sets != null) {
+                sets.run(source);
+            } else {
+                time.run(source);
+            }
+        } finally {
+            if (source instanceof Closeable) {
+                ((Closeable) source).close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long accesses = sets != null ? sets.accesses() : time.accesses();
+        long simulated = sets != null ? sets.simulated() : time.simulated();
+        RatioEstimate estimate = sets != null ? sets.estimate() : time.estimate();
+        System.out.printf(Locale.ROOT, "Read %,d accesses in %.3f s: %,.0f accesses/s, %,d simulated (%.2f%%)%n",
+                accesses, seconds, accesses / Math.max(seconds, 1e-9), simulated,
+                100.0 * simulated / Math.max(accesses, 1));
+        System.out.printf(Locale.ROOT, "Cache: %s%n", options.config().describe());
+        if (sets != null) {
+            System.out.printf(Locale.ROOT, "Set sampling: %,d of %,d sets, %,d accesses measured%n",
+                    sets.sampledSets(), options.config().sets(), estimate.accesses());
+        } else {
+            System.out.printf(Locale.ROOT, "Time sampling: %,d units of %,d accesses every %,d, %s%n",
+                    estimate.clusters(), time.unit(), time.period(), time.functionalWarming()
+                            ? "functional warming"
+                            : String.format(Locale.ROOT, "%,d warmup accesses", time.warmup()));
+        }
+        double z = RatioEstimate.z(options.confidence);
+        double halfWidth = z * estimate.standardError();
+        System.out.printf(Locale.ROOT, "Estimated Hit Rate: %.2f%% +/- %.2f%% (%.1f%% confidence)%n",
+                100 * estimate.hitRatio(), 100 * halfWidth, 100 * options.confidence);
+        System.out.printf(Locale.ROOT, "Estimated Miss Rate: %.2f%% +/- %.2f%%%n",
+                100 * estimate.missRatio(), 100 * halfWidth);
+        System.out.printf(Locale.ROOT, "Estimated Average Memory Access Time: %.3f ns +/- %.3f ns "
+                        + "(hit %s ns, memory %s ns)%n",
+                options.hitLatency + estimate.missRatio() * options.memoryLatency, halfWidth * options.memoryLatency,
+                options.hitLatency, options.memoryLatency);
+        if (estimate.clusters() < 30) {
+            System.out.printf(Locale.ROOT, "Only %d %s sampled; the interval is rough%n", estimate.clusters(),
+                    sets != null ? "sets" : "units");
+        }
+    }
+
+    // Runs one stream per core through private caches kept coherent over a bus or a directory
+    private static void coherence(Options options) throws IOException {
+        int cores = options.cores > 0 ? options.cores : Math.max(options.files.size(), 2);
+        if (!options.files.isEmpty() && options.files.size() != cores) {
+            throw new IllegalArgumentException("Need one trace per core: " + options.files.size() + " for " + cores + " cores");
+        }
+        CoherenceSimulator simulator = new CoherenceSimulator(options.config(), cores, options.protocol,
+                options.directory ? CoherenceSimulator.Interconnect.DIRECTORY : CoherenceSimulator.Interconnect.SNOOPING_BUS);
+        simulator.setQuantum(options.quantum);
+        List<AccessSource> streams = new ArrayList<>();
+        boolean byteAddresses = options.files.isEmpty() ? options.pattern.equals("counters") : options.lineSize > 0;
+
+        long start = System.nanoTime();
+        try {
+            for (int c = 0; c < cores; c++) {
+                if (!options.files.isEmpty()) {
+                    streams.add(TraceReader.open(Paths.get(options.files.get(c))));
+                } else if (options.pattern.equals("counters")) {
+                    streams.add(Workload.counters(c, options.spacing, options.count > 0 ? options.count : 4L * options.lines));
+                } else {
+                    streams.add(workload(options, options.seed + c));
+                }
+            }
+            simulator.run(streams, byteAddresses);
+        } finally {
+            for (AccessSource source : streams) {
+                if (source instanceof Closeable) {
+                    ((Closeable) source).close();
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long accesses = simulator.accesses();
+        System.out.printf(Locale.ROOT, "Simulated %,d accesses in %.3f s: %,.0f accesses/s%n",
+                accesses, seconds, accesses / Math.max(seconds, 1e-9));
+        System.out.printf(Locale.ROOT, "Coherence: %s, quantum %d%n", simulator.describe(), options.quantum);
+        for (int c = 0; c < cores; c++) {
+            System.out.printf(Locale.ROOT, "Core %d: %,d accesses, %,d misses (%.2f%%), %,d coherence misses, "
+                            + "%,d invalidations received%n", c, simulator.accesses(c), simulator.misses(c),
+                    100.0 * simulator.misses(c) / Math.max(simulator.accesses(c), 1), simulator.coherenceMisses(c),
+                    simulator.invalidationsReceived(c));
+        }
+        System.out.printf(Locale.ROOT, "Cache Misses: %,d (%.2f%%), %,d coherence: %,d true sharing, %,d false sharing%n",
+                simulator.misses(), 100.0 * simulator.misses() / Math.max(accesses, 1),
+                simulator.trueSharingMisses() + simulator.falseSharingMisses(), simulator.trueSharingMisses(),
+                simulator.falseSharingMisses());
+        System.out.printf(Locale.ROOT, "Bus transactions: %,d BusRd, %,d BusRdX, %,d BusUpgr; %,d invalidations%n",
+                simulator.busReads(), simulator.busReadExclusives(), simulator.busUpgrades(), simulator.invalidations());
+        System.out.printf(Locale.ROOT, "Data: %,d cache-to-cache transfers, %,d memory reads, %,d writebacks%n",
+                simulator.cacheToCacheTransfers(), simulator.memoryReads(), simulator.writebacks());
+        System.out.printf(Locale.ROOT, "Traffic: %,d bytes, %,d %s%n", simulator.trafficBytes(),
+                options.directory ? simulator.messages() : simulator.snoops(),
+                options.directory ? "directory messages" : "snoops");
+        StringBuilder hot = new StringBuilder();
+        simulator.writeHotLines(hot, options.hot);
+        System.out.println(simulator.falseSharingMisses() > 0 ? "False-sharing hot lines:" : "Most invalidated lines:");
+        System.out.print(hot);
+        if (options.csv != null) {
+            StringBuilder out = new StringBuilder();
+            simulator.writeCoreBreakdown(out);
+            Files.writeString(Paths.get(options.csv), out);
+            System.out.println("Wrote " + options.csv);
+        }
+    }
+
+    // Rewrites a text, binary or compact trace, or a --pattern workload, as a compact trace. Values
+    // are copied as they are (no --line-size decoding), so the conversion is lossless.
+    private static void convert(Options options) throws IOException {
+        boolean fromPattern = options.files.size() == 1;
+        if (options.files.isEmpty()) {
+            throw new IllegalArgumentException("Missing output file");
+        }
+        Path output = Paths.get(options.files.get(options.files.size() - 1));
+        AccessSource input = fromPattern ? workload(options) : TraceReader.open(Paths.get(options.files.get(0)));
+        AccessBatch batch = new AccessBatch();
+
+        long start = System.nanoTime();
+        long accesses;
+        long inputBytes = 0;
+        try (CompactTraceWriter writer = new CompactTraceWriter(output, options.chunk, options.deflate)) {
+            while (input.read(batch) > 0) {
+                writer.write(batch);
+            }
+            accesses = writer.accessesWritten();
+        } finally {
+            if (input instanceof TraceReader) {
+                inputBytes = ((TraceReader) input).bytesRead();
+                ((TraceReader) input).close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long outputBytes = Files.size(output);
+        long binaryBytes = BinaryTraceReader.HEADER_BYTES + accesses * BinaryTraceReader.RECORD_BYTES;
+        System.out.printf(Locale.ROOT, "Converted %,d accesses in %.3f s: %,.0f accesses/s%n",
+                accesses, seconds, accesses / Math.max(seconds, 1e-9));
+        if (!fromPattern) {
+            System.out.printf(Locale.ROOT, "Input: %s (%,d bytes, %.2fx the output)%n", options.files.get(0),
+                    inputBytes, inputBytes / (double) outputBytes);
+        }
+        System.out.printf(Locale.ROOT, "Output: %s (%,d bytes, %.2f bytes per access, %.2fx smaller than binary)%n",
+                output, outputBytes, outputBytes / (double) Math.max(accesses, 1), binaryBytes / (double) outputBytes);
+    }
+
+    // Runs an IngestServer until the process is stopped; each client session gets its own cache
+    private static void serve(Options options) throws IOException {
+        IngestServer server = new IngestServer(options.endpoint(), options.sessions, options.queue, System.out);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // Exiting anyway
+            }
+        }));
+        System.out.printf(Locale.ROOT, "Listening on %s: up to %d sessions, %d batches of %,d accesses queued each%n",
+                server.address(), options.sessions, options.queue, IngestServer.BATCH_ACCESSES);
+        server.start();
+        try {
+            server.awaitClose();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Streams the input to a serve process; its replies are printed by a second thread as they arrive
+    private static void send(Options options) throws IOException {
+        AccessSource input = options.file != null ? TraceReader.open(Paths.get(options.file)) : workload(options);
+        long accesses = 0;
+        long start = System.nanoTime();
+        try (SocketChannel channel = SocketChannel.open(options.endpoint())) {
+            Thread replies = new Thread(() -> printReplies(channel), "ingest-replies");
+            replies.setDaemon(true);
+            replies.start();
+            ByteBuffer line = StandardCharsets.UTF_8.encode(options.sessionOptions() + "\n");
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+            try (BinaryTraceWriter writer = new BinaryTraceWriter(halfClosing(channel))) {
+                AccessBatch batch = new AccessBatch();
+                int n;
+                while ((n = input.read(batch)) > 0) {
+                    writer.write(batch);
+                    accesses += n;
+                }
+            } catch (IOException e) {
+                // The server refused or dropped the session; its reply, printed above, says why
+                joinQuietly(replies);
+                System.err.println("Stream aborted after " + accesses + " accesses: " + e.getMessage());
+                return;
+            } finally {
+                if (input instanceof Closeable) {
+                    ((Closeable) input).close();
+                }
+            }
+            joinQuietly(replies);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Sent %,d accesses in %.3f s: %,.0f accesses/s%n",
+                accesses, seconds, accesses / Math.max(seconds, 1e-9));
+    }
+
+    private static void printReplies(SocketChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        StringBuilder line = new StringBuilder();
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                line.append(StandardCharsets.UTF_8.decode(buffer));
+                buffer.clear();
+                int end;
+                while ((end = line.indexOf("\n")) >= 0) {
+                    System.out.println(line.substring(0, end));
+                    line.delete(0, end + 1);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Connection lost: " + e.getMessage());
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The socket's sending half as a channel whose close() ends the stream but keeps the replies open
+    private static WritableByteChannel halfClosing(SocketChannel channel) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                return channel.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.shutdownOutput();
+            }
+        };
+    }
+
+    // Every combination of the listed lines, block sizes, ways and policies in one pass
+    private static void sweep(Options options) throws IOException {
+        if (options.lineSize > 0) {
+            throw new IllegalArgumentException("sweep takes its line sizes from --block-sizes");
+        }
+        ForkJoinPool pool = options.threads > 0 ? new ForkJoinPool(options.threads) : ForkJoinPool.commonPool();
+        ConfigSweep sweep = new ConfigSweep(pool);
+        for (String message : sweep.addGrid(options.linesList, options.blockSizes, options.waysList, options.policies)) {
+            System.err.println("Skipped: " + message);
+        }
+
+        long start = System.nanoTime();
+        AccessSource source = openSource(options);
+        try {
+            sweep.run(source);
+        } finally {
+            if (source instanceof Closeable) {
+                ((Closeable) source).close();
+            }
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long accesses = sweep.points().isEmpty() ? 0 : sweep.points().get(0).accesses();
+        System.err.printf(Locale.ROOT, "Swept %d configurations over %,d accesses in %.3f s: %,.0f simulated accesses/s%n",
+                sweep.points().size(), accesses, seconds, accesses * sweep.points().size() / Math.max(seconds, 1e-9));
+        StringBuilder out = new StringBuilder();
+        if (options.json != null) {
+            sweep.writeJson(out);
+            Files.writeString(Paths.get(options.json), out);
+        } else {
+            sweep.writeCsv(out);
+            if (options.csv != null) {
+                Files.writeString(Paths.get(options.csv), out);
+            } else {
+                System.out.print(out);
+            }
+        }
+    }
+
+    // The trace named on the command line, or the --pattern workload when there is none. With
+    // --line-size the trace holds byte addresses and is decoded to block numbers as it is read.
+    static AccessSource openSource(Options options) throws IOException {
+        return options.file != null ? openTrace(options, options.file) : workload(options);
+    }
+
+    // A trace, decoded to block numbers when --line-size is given
+    private static AccessSource openTrace(Options options, String file) throws IOException {
+        TraceReader reader = TraceReader.open(Paths.get(file));
+        return options.lineSize > 0 ? AddressMapping.of(options.config()).decoding(reader) : reader;
+    }
+
+    // Builds the synthetic workload named by --pattern; sizes default to the GUI tests' proportions
+    static Workload workload(Options options) {
+        return workload(options, options.seed);
+    }
+
+    private static Workload workload(Options options, long seed) {
+        Workload workload = pattern(options, seed);
+        return options.writeFraction > 0 ? workload.withWrites(options.writeFraction, seed) : workload;
+    }
+
+    private static Workload pattern(Options options, long seed) {
+        int lines = options.lines;
+        long count = options.count > 0 ? options.count : 4L * lines;
+        switch (options.pattern) {
+            case "sequential":
+                return Workload.sequential(2 * lines, options.repeats);
+            case "random":
+                return Workload.random(options.memoryBlocks, count, seed);
+            case "mid-repeat":
+                return Workload.midRepeat(lines, options.repeats);
+            case "strided":
+                return Workload.strided(options.stride, options.footprint > 0 ? options.footprint : options.memoryBlocks, count);
+            case "loop":
+                return Workload.loop(options.footprint > 0 ? options.footprint : 2L * lines, count);
+            case "zipf":
+                return Workload.zipf(options.footprint > 0 ? options.footprint : options.memoryBlocks,
+                        options.exponent, count, seed);
+            case "matrix":
+                return Workload.matrixMultiply(options.n);
+            case "stencil":
+                return Workload.stencil(options.n, options.n, options.repeats);
+            default:
+                throw new IllegalArgumentException("Unknown pattern: " + options.pattern);
+        }
+    }
+
+    static void printCounts(CacheConfig config, long accesses, long hits) {
+        long misses = accesses - hits;
+        System.out.printf(Locale.ROOT, "Cache: %s%n", config.describe());
+        System.out.printf(Locale.ROOT, "Cache Hits: %,d (%.2f%%)%n", hits, 100.0 * hits / Math.max(accesses, 1));
+        System.out.printf(Locale.ROOT, "Cache Misses: %,d (%.2f%%)%n", misses, 100.0 * misses / Math.max(accesses, 1));
+    }
+
+    // Hit and miss counts plus the writes and the traffic to the level below
+    static void printCounts(CacheSimulator simulator) {
+        printCounts(simulator.getConfig(), simulator.getAccessCount(), simulator.getHitCount());
+        if (simulator.getWriteCount() > 0) {
+            System.out.printf(Locale.ROOT, "Writes: %,d (%,d missed)%n",
+                    simulator.getWriteCount(), simulator.getWriteMissCount());
+        }
+        if (simulator.getVictimCache() != null) {
+            System.out.printf(Locale.ROOT, "Victim Cache Hits: %,d (%.2f%% of the array's misses)%n",
+                    simulator.getVictimHitCount(), 100.0 * simulator.getVictimHitCount()
+                            / Math.max(simulator.getMissCount() + simulator.getVictimHitCount(), 1));
+        }
+        System.out.printf(Locale.ROOT, "Memory traffic: %,d bytes read (%,d blocks), %,d bytes written "
+                        + "(%,d writebacks, %,d write-throughs)%n",
+                simulator.getBytesRead(), simulator.getFetchCount(), simulator.getBytesWritten(),
+                simulator.getWritebackCount(), simulator.getWriteThroughCount());
+        PrefetchUnit prefetch = simulator.getPrefetchUnit();
+        if (prefetch != null) {
+            System.out.printf(Locale.ROOT, "Prefetcher: %s%n", prefetch.describe());
+            System.out.printf(Locale.ROOT, "Prefetches: %,d issued, %,d useful, %,d late, %,d evicted unused, "
+                    + "%,d already cached%n", prefetch.issued(), prefetch.useful(), prefetch.late(),
+                    prefetch.unused(), prefetch.redundant());
+            System.out.printf(Locale.ROOT, "Accuracy %.2f%%, coverage %.2f%%, timeliness %.2f%%, pollution %,d misses%n",
+                    100 * prefetch.accuracy(), 100 * prefetch.coverage(), 100 * prefetch.timeliness(),
+                    prefetch.pollution());
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java cachesim.BatchRunner replay [cache options] [--ingest-only] [--classify [--csv FILE]] <trace>");
+        System.err.println("       java cachesim.BatchRunner run --pattern P [--count N] [--seed S] [cache options] [--classify [--csv FILE]]");
+        System.err.println("       java cachesim.BatchRunner mrc [--max-lines N] [--step S] [--csv FILE] (<trace> | --pattern P ...)");
+        System.err.println("       java cachesim.BatchRunner parallel [cache options] [--threads T] [--csv FILE] (<trace> | --pattern P ...)");
+        System.err.println("       java cachesim.BatchRunner sweep --lines L1,L2 --ways W1,W2 --policy P1,P2 [--block-sizes B1,B2]");
+        System.err.println("                                       [--threads T] [--csv FILE | --json FILE] (<trace> | --pattern P ...)");
+        System.err.println("       java cachesim.BatchRunner hierarchy --l1 SPEC [--l2 SPEC] [--l3 SPEC] [--inclusion I]");
+        System.err.println("                                           [--memory-latency NS] [--cores N [--quantum Q]] [--csv FILE]");
+        System.err.println("                                           (<trace per core>... | --pattern P ...)");
+        System.err.println("       java cachesim.BatchRunner sample [cache options] (--sample-sets N | --unit U --period P [--warmup W|functional])");
+        System.err.println("                                        [--confidence C] [--hit-latency NS] [--memory-latency NS] (<trace> | --pattern P ...)");
+        System.err.println("       java cachesim.BatchRunner convert [--chunk N] [--no-deflate] (<trace> | --pattern P ...) <output>");
+        System.err.println("       java cachesim.BatchRunner coherence [cache options] [--cores N] [--protocol mesi|moesi] [--directory]");
+        System.err.println("                                           [--quantum Q] [--hot K] [--csv FILE] (<trace per core>... | --pattern P ...)");
+        System.err.println("       java cachesim.BatchRunner serve [--port P | --socket PATH] [--sessions N] [--queue Q]");
+        System.err.println("       java cachesim.BatchRunner send [--port P | --socket PATH] [cache options] [--report N] (<trace> | --pattern P ...)");
+        System.err.println("  level SPEC: lines:ways:latency[:policy][:private|:shared][:wb|:wt][:nwa], e.g. 512:1:1:wt");
+        System.err.println("  inclusion: inclusive, exclusive, nine");
+        System.err.println("  cache options: --lines N, --ways W | --fully-associative, --policy P, --off-heap,");
+        System.err.println("                 --write-policy write-back|write-through, --no-write-allocate, --block-bytes B,");
+        System.err.println("                 --victim-entries N");
+        System.err.println("  trace options: --line-size B (trace holds byte addresses), --address-bits 32|64");
+        System.err.println("  policies: lru, plru, fifo, random, srrip");
+        System.err.println("  patterns: sequential, random, mid-repeat, strided, loop, zipf, matrix, stencil,");
+        System.err.println("            counters (coherence only, --spacing B bytes between the cores' counters)");
+        System.err.println("  pattern options: --repeats R, --memory-blocks M, --stride S, --footprint F,");
+        System.err.println("                   --exponent E, --n N (matrix / stencil size), --write-fraction F");
+        System.err.println("  recording (replay / run): --record FILE [--chunk N] [--no-deflate]");
+        System.err.println("  checkpoints (replay / run): --checkpoint FILE [--checkpoint-every N], --resume FILE, --fork FILE");
+        System.err.println("  prefetch options: --prefetch next-line|stride|stream, --prefetch-depth D, --prefetch-latency L");
+        System.err.println("  metrics options: --window N [--keep K] [--reuse] [--metrics FILE(.csv|.json)] [--set-metrics FILE]");
+    }
+
+    // Flags shared by every command; unknown flags are rejected
+    static final class Options {
+        // List-valued flags keep every value for sweep; other commands use the first one
+        int[] linesList = {4};
+        int[] waysList = {1};
+        ReplacementPolicy[] policies = {ReplacementPolicy.LRU};
+        int[] blockSizes = {1};
+        int lines = 4;
+        int ways = 1;
+        boolean fullyAssociative = false;
+        ReplacementPolicy policy = ReplacementPolicy.LRU;
+        int threads = 0; // 0 uses the common pool
+        String json;
+        boolean offHeap = false;
+        boolean ingestOnly = false;
+        boolean classify = false; // Split misses into compulsory, capacity and conflict
+        String file; // The first of files
+        List<String> files = new ArrayList<>(); // Traces named on the command line; coherence takes one per core
+        String pattern = "sequential";
+        long count = 0; // 0 picks the pattern's default length
+        long seed = 1;
+        int repeats = 4;
+        int memoryBlocks = 1024;
+        long stride = 1;
+        long footprint = 0; // 0 picks the pattern's default footprint
+        double exponent = 1.0;
+        int n = 64;
+        int maxLines = 1 << 20;
+        int step = 0; // Miss-ratio curve rows every step lines, 0 = powers of two
+        String csv;
+        String l1;
+        String l2;
+        String l3;
+        InclusionPolicy inclusion = InclusionPolicy.NINE;
+        double memoryLatency = 100.0; // ns, the GUI's MEMORY_ACCESS_TIME_NS
+        double hitLatency = 1.0; // ns, the GUI's CACHE_HIT_TIME_NS
+        int sampleSets = 0; // Set sampling: sets simulated, 0 = off
+        long unit = 0; // Time sampling: accesses per measurement unit, 0 = off
+        long period = 0; // Accesses from one unit to the next, 0 = the unit (no sampling)
+        long warmup = -1; // Time sampling: accesses warmed before each unit, -1 = TimeSampler.defaultWarmup
+        double confidence = 0.95;
+        WritePolicy writePolicy = WritePolicy.WRITE_BACK;
+        boolean writeAllocate = true;
+        int blockBytes = 64;
+        int victimEntries = 0;
+        int lineSize = 0; // Bytes per line when the trace holds byte addresses, 0 = block numbers
+        int addressBits = 64;
+        double writeFraction = 0; // Extra random writes mixed into a --pattern workload
+        String prefetcher; // null = no prefetching
+        int prefetchDepth = 1;
+        int prefetchLatency = 0; // Accesses until a prefetch arrives
+        int window = 0; // Accesses per metrics window, 0 = no windowed metrics
+        int keep = 1024; // Windows retained
+        boolean reuse = false; // Reuse-distance percentiles per window
+        String metrics;
+        String setMetrics;
+        int cores = 0; // 0 = one per trace, or 2
+        CoherenceProtocol protocol = CoherenceProtocol.MESI;
+        boolean directory = false; // Directory instead of a snooping bus
+        int quantum = 1; // Accesses per core per bus turn
+        int hot = 10; // Hot lines listed
+        long spacing = 8; // Bytes between the counters pattern's per-core counters
+        String record; // Compact trace written alongside replay / run
+        int chunk = CompactTraceWriter.DEFAULT_CHUNK_ACCESSES;
+        boolean deflate = true;
+        String checkpoint; // Snapshot written during replay / run
+        long checkpointEvery = 0; // Accesses between snapshots, 0 = only at the end
+        String resume; // Checkpoint to continue from
+        String fork; // Checkpoint whose cache contents start a fresh run
+        int port = IngestServer.DEFAULT_PORT; // serve / send over TCP loopback
+        String socket; // Unix domain socket path instead of a port
+        int sessions = 8; // Concurrent serve sessions
+        int queue = 4; // Batches queued between a session's socket and its cache
+        long report = 0; // Accesses between a session's progress lines, 0 = only the summary
+
+        Options(String[] args, int from) {
+            for (int i = from; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--lines":
+                        linesList = parseInts(value(args, ++i));
+                        lines = linesList[0];
+                        break;
+                    case "--ways":
+                        waysList = parseInts(value(args, ++i));
+                        ways = waysList[0];
+                        break;
+                    case "--block-sizes":
+                        blockSizes = parseInts(value(args, ++i));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--json":
+                        json = value(args, ++i);
+                        break;
+                    case "--fully-associative":
+                        fullyAssociative = true;
+                        break;
+                    case "--policy":
+                        String[] names = value(args, ++i).split(",");
+                        policies = new ReplacementPolicy[names.length];
+                        for (int p = 0; p < names.length; p++) {
+                            policies[p] = ReplacementPolicy.parse(names[p]);
+                        }
+                        policy = policies[0];
+                        break;
+                    case "--off-heap":
+                        offHeap = true;
+                        break;
+                    case "--ingest-only":
+                        ingestOnly = true;
+                        break;
+                    case "--classify":
+                        classify = true;
+                        break;
+                    case "--pattern":
+                        pattern = value(args, ++i);
+                        break;
+                    case "--count":
+                        count = parseCount(value(args, ++i));
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value(args, ++i));
+                        break;
+                    case "--repeats":
+                        repeats = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--memory-blocks":
+                        memoryBlocks = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--stride":
+                        stride = Long.parseLong(value(args, ++i));
+                        break;
+                    case "--footprint":
+                        footprint = parseCount(value(args, ++i));
+                        break;
+                    case "--exponent":
+                        exponent = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--max-lines":
+                        maxLines = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--step":
+                        step = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--csv":
+                        csv = value(args, ++i);
+                        break;
+                    case "--l1":
+                        l1 = value(args, ++i);
+                        break;
+                    case "--l2":
+                        l2 = value(args, ++i);
+                        break;
+                    case "--l3":
+                        l3 = value(args, ++i);
+                        break;
+                    case "--inclusion":
+                        inclusion = InclusionPolicy.parse(value(args, ++i));
+                        break;
+                    case "--memory-latency":
+                        memoryLatency = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--hit-latency":
+                        hitLatency = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--sample-sets":
+                        sampleSets = (int) parseCount(value(args, ++i));
+                        break;
+                    case "--unit":
+                        unit = parseCount(value(args, ++i));
+                        break;
+                    case "--period":
+                        period = parseCount(value(args, ++i));
+                        break;
+                    case "--warmup":
+                        String warm = value(args, ++i);
+                        warmup = warm.equals("functional") ? TimeSampler.FUNCTIONAL_WARMING : parseCount(warm);
+                        break;
+                    case "--confidence":
+                        confidence = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--write-policy":
+                        writePolicy = WritePolicy.parse(value(args, ++i));
+                        break;
+                    case "--no-write-allocate":
+                        writeAllocate = false;
+                        break;
+                    case "--line-size":
+                        lineSize = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--address-bits":
+                        addressBits = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--victim-entries":
+                        victimEntries = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--block-bytes":
+                        blockBytes = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--write-fraction":
+                        writeFraction = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--prefetch":
+                        prefetcher = value(args, ++i);
+                        break;
+                    case "--prefetch-depth":
+                        prefetchDepth = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--prefetch-latency":
+                        prefetchLatency = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--window":
+                        window = (int) parseCount(value(args, ++i));
+                        break;
+                    case "--keep":
+                        keep = (int) parseCount(value(args, ++i));
+                        break;
+                    case "--reuse":
+                        reuse = true;
+                        break;
+                    case "--metrics":
+                        metrics = value(args, ++i);
+                        break;
+                    case "--set-metrics":
+                        setMetrics = value(args, ++i);
+                        break;
+                    case "--n":
+                        n = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--cores":
+                        cores = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--protocol":
+                        protocol = CoherenceProtocol.parse(value(args, ++i));
+                        break;
+                    case "--directory":
+                        directory = true;
+                        break;
+                    case "--quantum":
+                        quantum = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--hot":
+                        hot = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--record":
+                        record = value(args, ++i);
+                        break;
+                    case "--chunk":
+                        chunk = (int) parseCount(value(args, ++i));
+                        break;
+                    case "--no-deflate":
+                        deflate = false;
+                        break;
+                    case "--checkpoint":
+                        checkpoint = value(args, ++i);
+                        break;
+                    case "--checkpoint-every":
+                        checkpointEvery = parseCount(value(args, ++i));
+                        break;
+                    case "--resume":
+                        resume = value(args, ++i);
+                        break;
+                    case "--fork":
+                        fork = value(args, ++i);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--socket":
+                        socket = value(args, ++i);
+                        break;
+                    case "--sessions":
+                        sessions = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--queue":
+                        queue = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--report":
+                        report = parseCount(value(args, ++i));
+                        break;
+                    case "--spacing":
+                        spacing = parseCount(value(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        }
+                        if (file == null) {
+                            file = args[i];
+                        }
+                        files.add(args[i]);
+                }
+            }
+        }
+
+        CacheConfig config() {
+            CacheConfig config = fullyAssociative
+                    ? CacheConfig.fullyAssociative(lines, policy)
+                    : CacheConfig.setAssociative(lines, ways, policy);
+            return config.withOffHeap(offHeap).withSeed(seed)
+                    .withWritePolicy(writePolicy).withWriteAllocate(writeAllocate)
+                    .withBlockBytes(lineSize > 0 ? lineSize : blockBytes)
+                    .withAddressBits(addressBits)
+                    .withVictimEntries(victimEntries);
+        }
+
+        // A resumed run keeps the checkpoint's prefetcher
+        void attachPrefetcher(CacheSimulator simulator) {
+            if (prefetcher != null && resume == null) {
+                simulator.setPrefetcher(Prefetcher.create(prefetcher, prefetchDepth), prefetchLatency);
+            }
+        }
+
+        WindowedMetrics attachMetrics(CacheSimulator simulator) {
+            if (window <= 0) {
+                return null;
+            }
+            WindowedMetrics windowed = new WindowedMetrics(simulator, window, keep, reuse);
+            simulator.addListener(windowed);
+            return windowed;
+        }
+
+        SocketAddress endpoint() {
+            return socket != null ? IngestServer.unixSocket(Paths.get(socket)) : IngestServer.loopback(port);
+        }
+
+        // The flags a serve session needs to rebuild this cache: the cache, address-decoding and
+        // prefetch options and --report
+        String sessionOptions() {
+            StringBuilder line = new StringBuilder();
+            line.append("--lines ").append(lines);
+            line.append(fullyAssociative ? " --fully-associative" : " --ways " + ways);
+            line.append(" --policy ").append(policy.name().toLowerCase(Locale.ROOT));
+            line.append(" --seed ").append(seed);
+            line.append(" --write-policy ").append(writePolicy == WritePolicy.WRITE_BACK ? "write-back" : "write-through");
+            if (!writeAllocate) {
+                line.append(" --no-write-allocate");
+            }
+            if (offHeap) {
+                line.append(" --off-heap");
+            }
+            line.append(" --block-bytes ").append(blockBytes);
+            if (lineSize > 0) {
+                line.append(" --line-size ").append(lineSize);
+            }
+            line.append(" --address-bits ").append(addressBits);
+            line.append(" --victim-entries ").append(victimEntries);
+            if (prefetcher != null) {
+                line.append(" --prefetch ").append(prefetcher);
+                line.append(" --prefetch-depth ").append(prefetchDepth);
+                line.append(" --prefetch-latency ").append(prefetchLatency);
+            }
+            if (report > 0) {
+                line.append(" --report ").append(report);
+            }
+            return line.toString();
+        }
+
+        // The --resume or --fork checkpoint, or null to start empty
+        Checkpoint start() throws IOException {
+            if (resume != null && fork != null) {
+                throw new IllegalArgumentException("Use either --resume or --fork");
+            }
+            if (resume == null && fork == null) {
+                return null;
+            }
+            return Checkpoint.read(Paths.get(resume != null ? resume : fork));
+        }
+
+        // The cache to simulate: restored from the checkpoint (with zeroed counters for --fork),
+        // otherwise an empty one built from the cache options
+        CacheSimulator simulator(Checkpoint start) {
+            if (start == null) {
+                return new CacheSimulator(config());
+            }
+            CacheSimulator simulator = start.restore();
+            if (fork != null) {
+                simulator.clearCounters();
+            }
+            return simulator;
+        }
+
+        // Accesses of the input already simulated: the checkpoint's position for --resume, else 0
+        long resumeAt(Checkpoint start, String source) {
+            if (start == null || resume == null) {
+                return 0;
+            }
+            if (!start.source().equals(source)) {
+                System.err.printf(Locale.ROOT, "Warning: %s was taken on %s, not %s%n", resume, start.source(), source);
+            }
+            return start.position();
+        }
+
+        // Null without --checkpoint
+        Checkpointer checkpointer(CacheSimulator simulator, long position, String source) {
+            if (checkpoint == null) {
+                return null;
+            }
+            if (checkpointEvery < 0) {
+                throw new IllegalArgumentException("Checkpoint interval must not be negative: " + checkpointEvery);
+            }
+            return new Checkpointer(simulator, Paths.get(checkpoint), checkpointEvery, position, source);
+        }
+
+        // Tees the source into the --record trace, or null when not recording
+        TraceRecorder recorder(AccessSource source) throws IOException {
+            return record == null ? null
+                    : new TraceRecorder(source, new CompactTraceWriter(Paths.get(record), chunk, deflate));
+        }
+
+        String requireFile() {
+            if (file == null) {
+                throw new IllegalArgumentException("Missing trace file");
+            }
+            return file;
+        }
+
+        static int[] parseInts(String text) {
+            String[] parts = text.split(",");
+            int[] values = new int[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                values[i] = (int) parseCount(parts[i].trim());
+            }
+            return values;
+        }
+
+        // Accepts plain integers as well as scientific notation such as 1e9
+        static long parseCount(String text) {
+            if (text.indexOf('e') >= 0 || text.indexOf('E') >= 0) {
+                return (long) Double.parseDouble(text);
+            }
+            return Long.parseLong(text.replace("_", ""));
+        }
+
+        private static String value(String[] args, int i) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+            }
+            return args[i];
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package cachesim;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads the binary trace format: an 8-byte header ("CTRC", version, 3 reserved bytes)
+// followed by one little-endian 64-bit record per access. Version 1 records are plain
+// addresses (all reads); version 2 uses the top bit as the write flag and the low 63 bits as
+// the address. The file is mapped in fixed windows, so multi-GB traces never sit on the heap.
+public final class BinaryTraceReader implements TraceReader {
+    static final byte[] MAGIC = {'C', 'T', 'R', 'C'};
+    static final int VERSION = 2;
+    static final long WRITE_FLAG = 1L << 63;
+    static final int HEADER_BYTES = 8;
+    static final int RECORD_BYTES = 8;
+    private static final long WINDOW_BYTES = 256L << 20;
+
+    private final FileChannel channel;
+    private final long end;
+    private final boolean flagged; // Records carry the write flag (version 2)
+    private long windowStart;
+    private LongBuffer window;
+
+    public BinaryTraceReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES, channel.size()));
+            byte[] head = new byte[header.remaining()];
+            header.get(head);
+            if (head.length < HEADER_BYTES || !hasMagic(head)) {
+                throw new IOException("Not a binary trace: " + file);
+            }
+            if (head[4] != 1 && head[4] != VERSION) {
+                throw new IOException("Unsupported binary trace version " + head[4] + ": " + file);
+            }
+            flagged = head[4] == VERSION;
+            long payload = channel.size() - HEADER_BYTES;
+            end = HEADER_BYTES + payload - payload % RECORD_BYTES;
+            windowStart = HEADER_BYTES;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static boolean hasMagic(byte[] head) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read(AccessBatch batch) throws IOException {
+        batch.size = 0;
+        batch.clearWrites();
+        while (batch.size < batch.addresses.length) {
+            if (window == null || !window.hasRemaining()) {
+                if (!mapNextWindow()) {
+                    break;
+                }
+            }
+            int n = Math.min(window.remaining(), batch.addresses.length - batch.size);
+            window.get(batch.addresses, batch.size, n);
+            batch.size += n;
+        }
+        if (flagged) {
+            decodeFlags(batch, 0);
+        }
+        return batch.size;
+    }
+
+    // Moves the write flags of version 2 records from batch position `from` on into the batch
+    static void decodeFlags(AccessBatch batch, int from) {
+        long[] addresses = batch.addresses;
+        for (int i = from; i < batch.size; i++) {
+            long record = addresses[i];
+            if (record < 0) {
+                addresses[i] = record & ~WRITE_FLAG;
+                batch.setWrite(i);
+            }
+        }
+    }
+
+    // Records are fixed-size, so skipping only moves the next window
+    @Override
+    public long skip(long accesses) {
+        long from = bytesRead();
+        long skipped = Math.min(Math.max(accesses, 0), (end - from) / RECORD_BYTES);
+        windowStart = from + skipped * RECORD_BYTES;
+        window = null;
+        return skipped;
+    }
+
+    private boolean mapNextWindow() throws IOException {
+        if (window != null) {
+            windowStart += (long) window.capacity() * RECORD_BYTES;
+        }
+        long length = Math.min(WINDOW_BYTES, end - windowStart);
+        if (length <= 0) {
+            window = null;
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asLongBuffer();
+        return true;
+    }
+
+    @Override
+    public long bytesRead() {
+        if (window == null) {
+            return Math.max(windowStart, HEADER_BYTES);
+        }
+        return windowStart + (long) window.position() * RECORD_BYTES;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,74 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes the format read by BinaryTraceReader (always version 2, with write flags), to a file or
+// any other channel such as a socket to an IngestServer
+public final class BinaryTraceWriter implements Closeable {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private long written = 0;
+
+    public BinaryTraceWriter(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    // close() closes the channel
+    public BinaryTraceWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer.put(BinaryTraceReader.MAGIC);
+        buffer.put((byte) BinaryTraceReader.VERSION);
+        buffer.put(new byte[BinaryTraceReader.HEADER_BYTES - BinaryTraceReader.MAGIC.length - 1]);
+    }
+
+    // Records a read
+    public void write(long address) throws IOException {
+        write(address, false);
+    }
+
+    public void write(long address, boolean isWrite) throws IOException {
+        if ((address & BinaryTraceReader.WRITE_FLAG) != 0) {
+            throw new IllegalArgumentException("Address does not fit in 63 bits: " + address);
+        }
+        if (buffer.remaining() < BinaryTraceReader.RECORD_BYTES) {
+            flush();
+        }
+        buffer.putLong(isWrite ? address | BinaryTraceReader.WRITE_FLAG : address);
+        written++;
+    }
+
+    public void write(AccessBatch batch) throws IOException {
+        for (int i = 0; i < batch.size; i++) {
+            write(batch.addresses[i], batch.isWrite(i));
+        }
+    }
+
+    public long accessesWritten() {
+        return written;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package cachesim;
+
+import java.util.Locale;
+
+// Immutable description of one cache: geometry, replacement and write policies and storage
+// options. Direct-mapped is ways == 1, fully associative is ways == lines. The defaults are
+// write-back with write-allocate, 64-byte blocks and 64-bit addresses, and no victim cache.
+// The block size is also the line size used to decode byte addresses (see AddressMapping).
+public final class CacheConfig {
+    private final int lines;
+    private final int ways;
+    private final ReplacementPolicy policy;
+    private final boolean offHeap;
+    private final long seed;
+    private final WritePolicy writePolicy;
+    private final boolean writeAllocate;
+    private final int blockBytes;
+    private final int victimEntries; // Fully-associative victim cache behind the array, 0 = none
+    private final int addressBits; // Width of byte addresses, 32 or 64
+
+    private CacheConfig(int lines, int ways, ReplacementPolicy policy, boolean offHeap, long seed,
+                        WritePolicy writePolicy, boolean writeAllocate, int blockBytes, int victimEntries,
+                        int addressBits) {
+        if (lines <= 0) {
+            throw new IllegalArgumentException("Cache must have at least one block: " + lines);
+        }
+        if (ways <= 0 || lines % ways != 0) {
+            throw new IllegalArgumentException("Ways must divide the number of lines: " + ways + " ways, " + lines + " lines");
+        }
+        if (policy == null || writePolicy == null) {
+            throw new IllegalArgumentException("Replacement and write policies are required");
+        }
+        if (blockBytes <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockBytes);
+        }
+        this.lines = lines;
+        this.ways = ways;
+        this.policy = policy;
+        this.offHeap = offHeap;
+        this.seed = seed;
+        this.writePolicy = writePolicy;
+        this.writeAllocate = writeAllocate;
+        if (victimEntries < 0 || victimEntries > VictimCache.MAX_ENTRIES) {
+            throw new IllegalArgumentException("Victim cache must have between 0 and " + VictimCache.MAX_ENTRIES
+                    + " entries: " + victimEntries);
+        }
+        if (addressBits != 32 && addressBits != 64) {
+            throw new IllegalArgumentException("Addresses must be 32 or 64 bits: " + addressBits);
+        }
+        this.blockBytes = blockBytes;
+        this.addressBits = addressBits;
+        this.victimEntries = victimEntries;
+    }
+
+    // Most lines the chosen tag store can hold; larger caches fail when the simulator is built
+    public static int maxLines(boolean offHeap) {
+        return offHeap ? OffHeapTagStore.MAX_LINES : HeapTagStore.MAX_LINES;
+    }
+
+    public static CacheConfig directMapped(int lines) {
+        return new CacheConfig(lines, 1, ReplacementPolicy.LRU, false, 1, WritePolicy.WRITE_BACK, true, 64, 0, 64);
+    }
+
+    public static CacheConfig setAssociative(int lines, int ways, ReplacementPolicy policy) {
+        return new CacheConfig(lines, ways, policy, false, 1, WritePolicy.WRITE_BACK, true, 64, 0, 64);
+    }
+
+    public static CacheConfig fullyAssociative(int lines, ReplacementPolicy policy) {
+        return new CacheConfig(lines, lines, policy, false, 1, WritePolicy.WRITE_BACK, true, 64, 0, 64);
+    }
+
+    // Keeps tag and valid arrays in direct memory, for LLC-sized models
+    public CacheConfig withOffHeap(boolean offHeap) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries, addressBits);
+    }
+
+    // Seed of the RANDOM replacement policy
+    public CacheConfig withSeed(long seed) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries, addressBits);
+    }
+
+    public CacheConfig withWritePolicy(WritePolicy writePolicy) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries, addressBits);
+    }
+
+    // false selects no-write-allocate: a write miss goes to the level below without filling a line
+    public CacheConfig withWriteAllocate(boolean writeAllocate) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries, addressBits);
+    }
+
+    // Bytes per line: moved per block fill or writeback, and the offset range of a byte address
+    public CacheConfig withBlockBytes(int blockBytes) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries, addressBits);
+    }
+
+    // Entries of a small fully-associative cache that catches evicted lines, 0 for none
+    public CacheConfig withVictimEntries(int victimEntries) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries, addressBits);
+    }
+
+    public CacheConfig withAddressBits(int addressBits) {
+        return new CacheConfig(lines, ways, policy, offHeap, seed, writePolicy, writeAllocate, blockBytes, victimEntries,
+                addressBits);
+    }
+
+    public int lines() {
+        return lines;
+    }
+
+    public int ways() {
+        return ways;
+    }
+
+    public int sets() {
+        return lines / ways;
+    }
+
+    public ReplacementPolicy policy() {
+        return policy;
+    }
+
+    public boolean offHeap() {
+        return offHeap;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public WritePolicy writePolicy() {
+        return writePolicy;
+    }
+
+    public boolean writeAllocate() {
+        return writeAllocate;
+    }
+
+    public int blockBytes() {
+        return blockBytes;
+    }
+
+    public int addressBits() {
+        return addressBits;
+    }
+
+    public int victimEntries() {
+        return victimEntries;
+    }
+
+    public boolean isDirectMapped() {
+        return ways == 1;
+    }
+
+    public boolean isFullyAssociative() {
+        return ways == lines;
+    }
+
+    // Short label such as "1024 lines, 8-way LRU"; non-default write policies and a victim cache are appended
+    public String describe() {
+        String label;
+        if (isDirectMapped()) {
+            label = lines + " lines, direct-mapped";
+        } else if (isFullyAssociative()) {
+            label = String.format(Locale.ROOT, "%d lines, fully associative %s", lines, policy);
+        } else {
+            label = String.format(Locale.ROOT, "%d lines, %d-way %s", lines, ways, policy);
+        }
+        if (writePolicy != WritePolicy.WRITE_BACK) {
+            label += ", write-through";
+        }
+        if (!writeAllocate) {
+            label += ", no-write-allocate";
+        }
+        if (victimEntries > 0) {
+            label += ", " + victimEntries + "-entry victim cache";
+        }
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+}
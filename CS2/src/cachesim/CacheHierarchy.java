@@ -0,0 +1,386 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Multi-level cache pipeline: each level's misses feed the next, ending in memory. Levels are
+// private (one CacheSimulator per core) or shared (one for all cores); a private level may not
+// sit below a shared one. Lookups are serial, so a hit in level i costs the latencies of
+// levels 0..i and a memory access costs every level plus the memory latency.
+// Writes follow each level's write policy: dirty victims are written back into the level
+// below, write-through and no-write-allocate writes travel down until a write-back level holds
+// the block, and whatever leaves the last level is counted as memory traffic.
+public final class CacheHierarchy {
+    private final CacheLevel[] levels;
+    private final InclusionPolicy inclusion;
+    private final int cores;
+    private final double memoryLatencyNs;
+    private final CacheSimulator[][] caches; // [level][core], a single instance for shared levels
+    private final double[] hitCostNs; // Latency of a hit served by each level
+    private final long[] evictions; // Blocks displaced from each level
+    private final long[] backInvalidations; // Upper-level copies removed by each level's evictions
+    private long accesses = 0;
+    private long memoryAccesses = 0; // Demand accesses no level could serve
+    private long memoryReads = 0; // Blocks fetched from memory
+    private long memoryWritebacks = 0; // Dirty blocks written to memory
+    private long memoryWriteThroughs = 0; // Single writes that reached memory
+
+    public CacheHierarchy(List<CacheLevel> levels, InclusionPolicy inclusion, int cores, double memoryLatencyNs) {
+        if (levels.isEmpty()) {
+            throw new IllegalArgumentException("A hierarchy needs at least one level");
+        }
+        if (cores <= 0) {
+            throw new IllegalArgumentException("Cores must be positive: " + cores);
+        }
+        this.levels = levels.toArray(new CacheLevel[0]);
+        this.inclusion = inclusion;
+        this.cores = cores;
+        this.memoryLatencyNs = memoryLatencyNs;
+        this.caches = new CacheSimulator[this.levels.length][];
+        this.hitCostNs = new double[this.levels.length];
+        this.evictions = new long[this.levels.length];
+        this.backInvalidations = new long[this.levels.length];
+
+        double cost = 0;
+        boolean sharedAbove = false;
+        for (int i = 0; i < this.levels.length; i++) {
+            CacheLevel level = this.levels[i];
+            if (sharedAbove && !level.isShared()) {
+                throw new IllegalArgumentException(level.name() + " is private but sits below a shared level");
+            }
+            if (level.config().victimEntries() > 0) {
+                // Hierarchy fills and back-invalidations go around the array's victim buffer
+                throw new IllegalArgumentException(level.name() + ": victim caches are only modelled for single caches");
+            }
+            sharedAbove |= level.isShared();
+            caches[i] = new CacheSimulator[level.isShared() ? 1 : cores];
+            for (int c = 0; c < caches[i].length; c++) {
+                caches[i][c] = new CacheSimulator(level.config());
+            }
+            cost += level.latencyNs();
+            hitCostNs[i] = cost;
+        }
+    }
+
+    // Runs one read from a core; returns the index of the level that hit, or levels() for memory
+    public int access(int core, long blockNumber) {
+        return access(core, blockNumber, false);
+    }
+
+    public int access(int core, long blockNumber, boolean write) {
+        accesses++;
+        if (inclusion == InclusionPolicy.EXCLUSIVE) {
+            return accessExclusive(core, blockNumber, write);
+        }
+        int n = levels.length;
+        boolean pending = write; // The write still has to be performed further down
+        boolean needData = false; // Some level filled a line and needs the block from below
+        int level = 0;
+        for (; level < n; level++) {
+            CacheSimulator cache = cache(level, core);
+            CacheConfig config = levels[level].config();
+            boolean hit = cache.access(blockNumber, pending);
+            if (cache.hasEvicted()) {
+                evicted(level, core, cache.lastEvicted(), cache.lastEvictedDirty());
+            }
+            boolean filled = !hit && (!pending || config.writeAllocate());
+            boolean absorbed = pending && config.writePolicy() == WritePolicy.WRITE_BACK && (hit || filled);
+            if (hit) {
+                if (pending && !absorbed) {
+                    writeThrough(level + 1, core, blockNumber);
+                }
+                break;
+            }
+            needData |= filled;
+            pending &= !absorbed;
+        }
+        if (level == n) {
+            memoryAccesses++;
+            if (needData) {
+                memoryReads++;
+            }
+            if (pending) {
+                memoryWriteThroughs++;
+            }
+        }
+        return level;
+    }
+
+    // The block moves to L1 from wherever it was found; each level's victim drops one level down
+    // with its dirty bit. Exclusive levels always allocate on a write miss.
+    private int accessExclusive(int core, long blockNumber, boolean write) {
+        int n = levels.length;
+        boolean l1WriteBack = levels[0].config().writePolicy() == WritePolicy.WRITE_BACK;
+        int level = 0;
+        while (level < n && !cache(level, core).lookup(blockNumber, level == 0 && write)) {
+            level++;
+        }
+        if (level == 0) {
+            if (write && !l1WriteBack) {
+                memoryWriteThroughs++; // Lower levels never hold a block that is in L1
+            }
+            return 0;
+        }
+        boolean dirty = false;
+        if (level < n) {
+            cache(level, core).invalidate(blockNumber);
+            dirty = cache(level, core).lastEvictedDirty();
+        } else {
+            memoryAccesses++;
+            memoryReads++;
+        }
+        if (write) {
+            if (l1WriteBack) {
+                dirty = true;
+            } else {
+                memoryWriteThroughs++;
+            }
+        }
+        long moving = blockNumber;
+        boolean carrying = true;
+        for (int i = 0; i < n && carrying; i++) {
+            CacheSimulator cache = cache(i, core);
+            moving = cache.fill(moving, dirty);
+            carrying = cache.hasEvicted();
+            dirty = cache.lastEvictedDirty();
+            if (carrying) {
+                evictions[i]++;
+            }
+        }
+        if (carrying && dirty) {
+            memoryWritebacks++;
+        }
+        return level;
+    }
+
+    // A write that passed through a write-through level: the first write-back level holding the
+    // block absorbs it, otherwise it reaches memory
+    private void writeThrough(int from, int core, long blockNumber) {
+        for (int level = from; level < levels.length; level++) {
+            if (cache(level, core).absorbWrite(blockNumber)) {
+                return;
+            }
+        }
+        memoryWriteThroughs++;
+    }
+
+    private void evicted(int level, int core, long victim, boolean dirty) {
+        evictions[level]++;
+        if (inclusion == InclusionPolicy.INCLUSIVE && level > 0) {
+            boolean shared = levels[level].isShared();
+            for (int above = 0; above < level; above++) {
+                CacheSimulator[] instances = caches[above];
+                if (instances.length == 1 || !shared) {
+                    dirty |= backInvalidate(level, cache(above, core), victim);
+                } else {
+                    for (CacheSimulator instance : instances) {
+                        dirty |= backInvalidate(level, instance, victim);
+                    }
+                }
+            }
+        }
+        if (dirty) {
+            writeBack(level + 1, core, victim);
+        }
+    }
+
+    // Removes an upper copy of a block evicted below; returns whether that copy was dirty
+    private boolean backInvalidate(int level, CacheSimulator above, long victim) {
+        if (!above.invalidate(victim)) {
+            return false;
+        }
+        backInvalidations[level]++;
+        return above.lastEvictedDirty();
+    }
+
+    // Puts a dirty block into the level below (or memory); that may displace another block
+    private void writeBack(int level, int core, long blockNumber) {
+        if (level == levels.length) {
+            memoryWritebacks++;
+            return;
+        }
+        CacheSimulator cache = cache(level, core);
+        long victim = cache.fill(blockNumber, true);
+        if (cache.hasEvicted()) {
+            evicted(level, core, victim, cache.lastEvictedDirty());
+        }
+    }
+
+    private CacheSimulator cache(int level, int core) {
+        CacheSimulator[] instances = caches[level];
+        return instances.length == 1 ? instances[0] : instances[core];
+    }
+
+    public void accessAll(int core, long[] blocks, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            access(core, blocks[off + i]);
+        }
+    }
+
+    public void accessAll(int core, AccessBatch batch) {
+        if (!batch.anyWrites) {
+            accessAll(core, batch.addresses, 0, batch.size);
+            return;
+        }
+        for (int i = 0; i < batch.size; i++) {
+            access(core, batch.addresses[i], batch.isWrite(i));
+        }
+    }
+
+    public void reset() {
+        for (CacheSimulator[] instances : caches) {
+            for (CacheSimulator cache : instances) {
+                cache.reset();
+            }
+        }
+        Arrays.fill(evictions, 0);
+        Arrays.fill(backInvalidations, 0);
+        accesses = 0;
+        memoryAccesses = 0;
+        memoryReads = 0;
+        memoryWritebacks = 0;
+        memoryWriteThroughs = 0;
+    }
+
+    public int levels() {
+        return levels.length;
+    }
+
+    public CacheLevel level(int i) {
+        return levels[i];
+    }
+
+    public InclusionPolicy inclusion() {
+        return inclusion;
+    }
+
+    public int cores() {
+        return cores;
+    }
+
+    public double memoryLatencyNs() {
+        return memoryLatencyNs;
+    }
+
+    // The cache instance of a level seen by a core
+    public CacheSimulator cacheFor(int level, int core) {
+        return cache(level, core);
+    }
+
+    // Lookups that reached the level, summed over its instances
+    public long levelAccesses(int level) {
+        long total = 0;
+        for (CacheSimulator cache : caches[level]) {
+            total += cache.getAccessCount();
+        }
+        return total;
+    }
+
+    public long levelHits(int level) {
+        long total = 0;
+        for (CacheSimulator cache : caches[level]) {
+            total += cache.getHitCount();
+        }
+        return total;
+    }
+
+    public long levelMisses(int level) {
+        return levelAccesses(level) - levelHits(level);
+    }
+
+    public long evictions(int level) {
+        return evictions[level];
+    }
+
+    public long backInvalidations(int level) {
+        return backInvalidations[level];
+    }
+
+    public long accesses() {
+        return accesses;
+    }
+
+    public long memoryAccesses() {
+        return memoryAccesses;
+    }
+
+    public long memoryReads() {
+        return memoryReads;
+    }
+
+    public long memoryWritebacks() {
+        return memoryWritebacks;
+    }
+
+    public long memoryWriteThroughs() {
+        return memoryWriteThroughs;
+    }
+
+    // Memory traffic in bytes, using the last level's block size
+    public long memoryBytesRead() {
+        return memoryReads * levels[levels.length - 1].config().blockBytes();
+    }
+
+    public long memoryBytesWritten() {
+        return memoryWritebacks * levels[levels.length - 1].config().blockBytes()
+                + memoryWriteThroughs * CacheSimulator.WRITE_THROUGH_BYTES;
+    }
+
+    // Writes that reached the level, summed over its instances
+    public long levelWrites(int level) {
+        long total = 0;
+        for (CacheSimulator cache : caches[level]) {
+            total += cache.getWriteCount();
+        }
+        return total;
+    }
+
+    // Dirty blocks the level wrote to the level below
+    public long levelWritebacks(int level) {
+        long total = 0;
+        for (CacheSimulator cache : caches[level]) {
+            total += cache.getWritebackCount();
+        }
+        return total;
+    }
+
+    // Latency of an access served by the level (levels() for memory)
+    public double hitCostNs(int level) {
+        return level == levels.length ? hitCostNs[level - 1] + memoryLatencyNs : hitCostNs[level];
+    }
+
+    public double totalTimeNs() {
+        double total = memoryAccesses * hitCostNs(levels.length);
+        for (int i = 0; i < levels.length; i++) {
+            total += levelHits(i) * hitCostNs[i];
+        }
+        return total;
+    }
+
+    // Average memory access time over every access so far
+    public double amatNs() {
+        return totalTimeNs() / Math.max(accesses, 1);
+    }
+
+    // One CSV row per level plus memory: local miss rate is misses / lookups at that level,
+    // global miss rate is misses / all accesses, and ns/access is the level's share of the AMAT.
+    // For memory, writebacks counts dirty blocks received and bytes the traffic in both directions.
+    public void writeBreakdown(Appendable out) throws IOException {
+        out.append("level,accesses,hits,misses,local_miss_rate,global_miss_rate,writes,evictions,writebacks,"
+                + "back_invalidations,ns_per_access,bytes\n");
+        long total = Math.max(accesses, 1);
+        for (int i = 0; i < levels.length; i++) {
+            long lookups = levelAccesses(i);
+            long misses = levelMisses(i);
+            out.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%.6f,%.6f,%d,%d,%d,%d,%.4f,%n",
+                    levels[i].name(), lookups, levelHits(i), misses,
+                    (double) misses / Math.max(lookups, 1), (double) misses / total, levelWrites(i),
+                    evictions[i], levelWritebacks(i), backInvalidations[i], levelHits(i) * hitCostNs[i] / total));
+        }
+        out.append(String.format(Locale.ROOT, "memory,%d,%d,0,0,0,%d,0,%d,0,%.4f,%d%n",
+                memoryAccesses, memoryAccesses, memoryWriteThroughs, memoryWritebacks,
+                memoryAccesses * hitCostNs(levels.length) / total, memoryBytesRead() + memoryBytesWritten()));
+    }
+}
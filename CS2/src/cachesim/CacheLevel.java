@@ -0,0 +1,93 @@
+package cachesim;
+
+import java.util.Locale;
+
+// One level of a CacheHierarchy: its geometry, lookup latency and whether each core gets a
+// private copy or all cores share one. Immutable.
+public final class CacheLevel {
+    private final String name;
+    private final CacheConfig config;
+    private final double latencyNs;
+    private final boolean shared;
+
+    private CacheLevel(String name, CacheConfig config, double latencyNs, boolean shared) {
+        if (latencyNs < 0) {
+            throw new IllegalArgumentException("Latency must not be negative: " + latencyNs);
+        }
+        this.name = name;
+        this.config = config;
+        this.latencyNs = latencyNs;
+        this.shared = shared;
+    }
+
+    public static CacheLevel privateLevel(String name, CacheConfig config, double latencyNs) {
+        return new CacheLevel(name, config, latencyNs, false);
+    }
+
+    public static CacheLevel sharedLevel(String name, CacheConfig config, double latencyNs) {
+        return new CacheLevel(name, config, latencyNs, true);
+    }
+
+    // Parses "lines:ways:latency[:policy][:private|:shared][:wb|:wt][:nwa]", e.g. "512:1:1" or
+    // "65536:16:40:srrip:shared". Ways may be "fa" for fully associative; sharing defaults to
+    // sharedByDefault, writes to write-back with write-allocate ("nwa" turns allocation off).
+    public static CacheLevel parse(String name, String spec, boolean sharedByDefault) {
+        String[] parts = spec.split(":");
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Expected lines:ways:latency for " + name + ": " + spec);
+        }
+        int lines = (int) BatchRunner.Options.parseCount(parts[0]);
+        ReplacementPolicy policy = ReplacementPolicy.LRU;
+        boolean shared = sharedByDefault;
+        WritePolicy writePolicy = WritePolicy.WRITE_BACK;
+        boolean writeAllocate = true;
+        for (int i = 3; i < parts.length; i++) {
+            switch (parts[i].toLowerCase(Locale.ROOT)) {
+                case "private":
+                    shared = false;
+                    break;
+                case "shared":
+                    shared = true;
+                    break;
+                case "wb":
+                case "write-back":
+                case "wt":
+                case "write-through":
+                    writePolicy = WritePolicy.parse(parts[i]);
+                    break;
+                case "nwa":
+                case "no-write-allocate":
+                    writeAllocate = false;
+                    break;
+                default:
+                    policy = ReplacementPolicy.parse(parts[i]);
+            }
+        }
+        CacheConfig config = "fa".equalsIgnoreCase(parts[1])
+                ? CacheConfig.fullyAssociative(lines, policy)
+                : CacheConfig.setAssociative(lines, Integer.parseInt(parts[1]), policy);
+        config = config.withWritePolicy(writePolicy).withWriteAllocate(writeAllocate);
+        return new CacheLevel(name, config, Double.parseDouble(parts[2]), shared);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public CacheConfig config() {
+        return config;
+    }
+
+    public double latencyNs() {
+        return latencyNs;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "%s: %s, %s ns, %s", name, config.describe(),
+                latencyNs, shared ? "shared" : "private");
+    }
+}
@@ -0,0 +1,785 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+// GUI-free cache model: direct-mapped, N-way set-associative or fully associative.
+// Accesses can be fed one at a time, as a primitive batch or as a stream; observers are
+// optional and only called when attached. Lines are numbered set * ways + way.
+// Writes follow the configured write policy; traffic to the level below is counted as block
+// fetches, dirty writebacks and write-throughs (single words, or the whole write on a
+// no-write-allocate miss). An optional victim cache catches the lines the array evicts; a
+// block found there counts as a hit and swaps places with the array's victim.
+public class CacheSimulator {
+    private static final AccessListener[] NO_LISTENERS = new AccessListener[0];
+    // Sets wider than this look tags up through a hash index instead of scanning every way
+    private static final int MAX_SCANNED_WAYS = 16;
+    // Bytes moved by one write-through
+    static final int WRITE_THROUGH_BYTES = 8;
+
+    private final CacheConfig config;
+    private final int lines; // Number of cache blocks
+    private final int ways;
+    private final int sets;
+    private final int setBits; // log2(sets) when sets is a power of two, otherwise -1
+    private final long setMask;
+    private final TagStore store; // Valid and dirty bits and tags for every line
+    private final boolean writeBack;
+    private final boolean writeAllocate;
+    private final ReplacementState replacement; // null when direct-mapped
+    private final int[] validWays; // Valid lines per set; null when direct-mapped
+    private final LongIntHashMap tagIndex; // Block number -> line for wide sets, otherwise null
+    private final VictimCache victims; // null without a victim cache
+    private final AddressMapping mapping; // Byte address -> block number for accessAddress
+    private final DirectMappedKernel kernel; // Read batches of a plain direct-mapped cache, otherwise null
+    private long accessCount = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long writeCount = 0;
+    private long writeMissCount = 0;
+    private long fetchCount = 0; // Blocks read from the level below
+    private long writebackCount = 0; // Dirty blocks written to the level below on eviction
+    private long writeThroughCount = 0; // Writes passed to the level below without a fill
+    private long victimHitCount = 0; // Array misses served by the victim cache
+    private long evicted = -1; // Block displaced by the latest fill, or -1
+    private boolean hasEvicted = false; // Whether evicted is a block: block numbers can be negative
+    private boolean evictedDirty = false;
+    private AccessListener[] listeners = NO_LISTENERS;
+    private PrefetchUnit prefetch; // null unless a prefetcher is attached
+
+    public CacheSimulator(int lines) {
+        this(CacheConfig.directMapped(lines));
+    }
+
+    // offHeap keeps the tag and valid arrays in direct memory, for LLC-sized models
+    public CacheSimulator(int lines, boolean offHeap) {
+        this(CacheConfig.directMapped(lines).withOffHeap(offHeap));
+    }
+
+    public CacheSimulator(CacheConfig config) {
+        this.config = config;
+        this.lines = config.lines();
+        this.ways = config.ways();
+        this.sets = config.sets();
+        this.setBits = Integer.bitCount(sets) == 1 ? Integer.numberOfTrailingZeros(sets) : -1;
+        this.setMask = sets - 1;
+        this.store = TagStore.create(lines, config.offHeap());
+        this.writeBack = config.writePolicy() == WritePolicy.WRITE_BACK;
+        this.writeAllocate = config.writeAllocate();
+        if (ways == 1) {
+            this.replacement = null;
+            this.validWays = null;
+        } else {
+            this.replacement = config.policy().create(sets, ways, config.seed());
+            this.validWays = new int[sets];
+        }
+        this.tagIndex = ways > MAX_SCANNED_WAYS ? new LongIntHashMap(lines) : null;
+        this.victims = config.victimEntries() > 0 ? new VictimCache(config.victimEntries()) : null;
+        this.mapping = AddressMapping.of(config);
+        this.kernel = ways == 1 && setBits >= 0 && victims == null && store instanceof HeapTagStore
+                ? new DirectMappedKernel((HeapTagStore) store, setBits)
+                : null;
+    }
+
+    // Attaches a prefetcher (null detaches it); latency is in accesses, 0 = prefetches arrive at once
+    public void setPrefetcher(Prefetcher prefetcher, int latency) {
+        prefetch = prefetcher == null ? null : new PrefetchUnit(prefetcher, lines, latency);
+    }
+
+    // Prefetch metrics, or null without a prefetcher
+    public PrefetchUnit getPrefetchUnit() {
+        return prefetch;
+    }
+
+    public void addListener(AccessListener listener) {
+        AccessListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[listeners.length] = listener;
+        listeners = next;
+    }
+
+    public void removeListener(AccessListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                AccessListener[] next = new AccessListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, next, 0, i);
+                System.arraycopy(listeners, i + 1, next, i, next.length - i);
+                listeners = next;
+                return;
+            }
+        }
+    }
+
+    // Byte-address entry points: the address is decoded with the configured line size
+    public boolean accessAddress(long address) {
+        return access(mapping.block(address), false);
+    }
+
+    public boolean accessAddress(long address, boolean write) {
+        return access(mapping.block(address), write);
+    }
+
+    // Processes one read and returns true on a hit
+    public boolean access(long blockNumber) {
+        return access(blockNumber, false);
+    }
+
+    // Processes one access and returns true on a hit. Listeners get line -1 for a write miss
+    // that bypassed the cache (no-write-allocate).
+    public boolean access(long blockNumber, boolean write) {
+        accessCount++;
+
+        int set = setIndex(blockNumber);
+        long tag = tagOf(blockNumber);
+        int line;
+        boolean hit;
+
+        if (ways == 1) {
+            // Direct-mapped: one valid bit and one tag decide everything
+            line = set;
+            hit = store.isValid(line) && store.tag(line) == tag;
+        } else {
+            line = find(set, tag, blockNumber);
+            hit = line >= 0;
+        }
+        if (hit) {
+            hitCount++;
+            evicted = -1;
+            hasEvicted = false;
+            touch(set, line);
+        } else if (victims != null && (line = victimHit(set, tag, blockNumber)) >= 0) {
+            hit = true;
+        } else {
+            missCount++;
+            if (write && !writeAllocate) {
+                line = -1;
+                evicted = -1;
+                hasEvicted = false;
+            } else {
+                line = install(set, tag, blockNumber);
+                fetchCount++;
+            }
+        }
+        if (write) {
+            recordWrite(line, hit);
+        }
+        if (prefetch != null) {
+            prefetch.afterDemand(this, blockNumber, line, hit, accessCount);
+        }
+
+        AccessListener[] current = listeners;
+        for (AccessListener listener : current) {
+            listener.onAccess(blockNumber, line, hit);
+        }
+        return hit;
+    }
+
+    // Swaps the block back from the victim cache, the array's victim taking its slot; returns the
+    // line it now occupies, or -1 if the victim cache does not hold it either
+    private int victimHit(int set, long tag, long blockNumber) {
+        if (!victims.remove(blockNumber)) {
+            return -1;
+        }
+        hitCount++;
+        victimHitCount++;
+        boolean wasDirty = victims.removedDirty();
+        int line = install(set, tag, blockNumber);
+        if (wasDirty) {
+            store.setDirty(line);
+        }
+        return line;
+    }
+
+    // Fills a prefetch candidate unless it is already cached. The victim of a prefetch does not
+    // replace the demand access's lastEvicted(); a dirty one is still written back.
+    void prefetch(long blockNumber) {
+        int set = setIndex(blockNumber);
+        long tag = tagOf(blockNumber);
+        if (find(set, tag, blockNumber) >= 0 || (victims != null && victims.contains(blockNumber))) {
+            prefetch.alreadyCached();
+            return;
+        }
+        long demandEvicted = evicted;
+        boolean demandHasEvicted = hasEvicted;
+        boolean demandEvictedDirty = evictedDirty;
+        int line = install(set, tag, blockNumber);
+        fetchCount++;
+        prefetch.filled(blockNumber, line, hasEvicted, evicted, accessCount);
+        evicted = demandEvicted;
+        hasEvicted = demandHasEvicted;
+        evictedDirty = demandEvictedDirty;
+    }
+
+    // Write bookkeeping once the line (or -1 for a bypass) is known
+    private void recordWrite(int line, boolean hit) {
+        writeCount++;
+        if (!hit) {
+            writeMissCount++;
+        }
+        if (line >= 0 && writeBack) {
+            store.setDirty(line);
+        } else {
+            writeThroughCount++;
+        }
+    }
+
+    // Counts an access like access() but does not fill on a miss; used by hierarchies that decide
+    // themselves where a missing block goes. A write hit is applied; listeners are not called.
+    public boolean lookup(long blockNumber, boolean write) {
+        accessCount++;
+        int set = setIndex(blockNumber);
+        int line = find(set, tagOf(blockNumber), blockNumber);
+        evicted = -1;
+        hasEvicted = false;
+        if (line < 0) {
+            missCount++;
+            if (write) {
+                writeCount++;
+                writeMissCount++;
+            }
+            return false;
+        }
+        hitCount++;
+        touch(set, line);
+        if (write) {
+            recordWrite(line, true);
+        }
+        return true;
+    }
+
+    public boolean lookup(long blockNumber) {
+        return lookup(blockNumber, false);
+    }
+
+    // Installs a block without counting an access and returns the block it displaced, or -1
+    // (hasEvicted() tells the two apart when block numbers can be negative).
+    // A block that is already present stays where it is; dirty marks it dirty either way, as
+    // when a writeback from the level above lands here.
+    public long fill(long blockNumber, boolean dirty) {
+        int set = setIndex(blockNumber);
+        long tag = tagOf(blockNumber);
+        evicted = -1;
+        hasEvicted = false;
+        int line = find(set, tag, blockNumber);
+        if (line < 0) {
+            line = install(set, tag, blockNumber);
+        }
+        if (dirty) {
+            store.setDirty(line);
+        }
+        return evicted;
+    }
+
+    public long fill(long blockNumber) {
+        return fill(blockNumber, false);
+    }
+
+    // Applies a write arriving from the level above without counting an access: a present
+    // block in a write-back cache absorbs it and becomes dirty. Returns false when the write
+    // has to continue to the level below (absent, or this cache is write-through).
+    public boolean absorbWrite(long blockNumber) {
+        int line = find(setIndex(blockNumber), tagOf(blockNumber), blockNumber);
+        if (line >= 0 && writeBack) {
+            store.setDirty(line);
+            return true;
+        }
+        return false;
+    }
+
+    // Removes a block if present; returns whether it was. lastEvictedDirty() then tells whether
+    // the removed copy held data the level below has not seen.
+    public boolean invalidate(long blockNumber) {
+        int set = setIndex(blockNumber);
+        int line = find(set, tagOf(blockNumber), blockNumber);
+        evictedDirty = false;
+        if (line < 0) {
+            if (victims != null && victims.remove(blockNumber)) {
+                evictedDirty = victims.removedDirty();
+                return true;
+            }
+            return false;
+        }
+        evictedDirty = store.isDirty(line);
+        store.invalidate(line);
+        if (prefetch != null) {
+            prefetch.replaced(line);
+        }
+        if (ways > 1) {
+            validWays[set]--;
+        }
+        if (tagIndex != null) {
+            tagIndex.remove(blockNumber);
+        }
+        return true;
+    }
+
+    // Non-counting presence check
+    public boolean contains(long blockNumber) {
+        return find(setIndex(blockNumber), tagOf(blockNumber), blockNumber) >= 0;
+    }
+
+    // Line holding the block, or -1; non-counting
+    int lineOf(long blockNumber) {
+        return find(setIndex(blockNumber), tagOf(blockNumber), blockNumber);
+    }
+
+    // Block displaced by the most recent access(), fill() or lookup(), or -1 if none was
+    public long lastEvicted() {
+        return evicted;
+    }
+
+    // Whether lastEvicted() is a displaced block rather than the -1 for none, which is also a
+    // valid block number
+    public boolean hasEvicted() {
+        return hasEvicted;
+    }
+
+    // Whether the block reported by lastEvicted(), or removed by the latest invalidate(), was dirty
+    public boolean lastEvictedDirty() {
+        return evictedDirty;
+    }
+
+    // Line holding the block, or -1
+    private int find(int set, long tag, long blockNumber) {
+        if (ways == 1) {
+            return store.isValid(set) && store.tag(set) == tag ? set : -1;
+        }
+        if (tagIndex != null) {
+            return tagIndex.get(blockNumber);
+        }
+        return store.find(set * ways, ways, tag);
+    }
+
+    private void touch(int set, int line) {
+        if (ways > 1) {
+            replacement.onHit(set, line - set * ways);
+        }
+    }
+
+    // Fills the block into its set, recording any displaced block in evicted; returns the line.
+    // With a victim cache the array's victim moves there and evicted is what that pushed out.
+    private int install(int set, long tag, long blockNumber) {
+        int line;
+        if (ways == 1) {
+            line = set;
+            boolean valid = store.isValid(line);
+            evicted = valid ? store.tag(line) * sets + set : -1;
+            hasEvicted = valid;
+            evictedDirty = valid && store.isDirty(line);
+        } else {
+            line = allocate(set);
+        }
+        if (victims != null && hasEvicted) {
+            hasEvicted = victims.insert(evicted, evictedDirty);
+            evicted = hasEvicted ? victims.displaced() : -1;
+            evictedDirty = hasEvicted && victims.displacedDirty();
+        }
+        if (evictedDirty) {
+            writebackCount++;
+        }
+        if (prefetch != null) {
+            prefetch.replaced(line);
+        }
+        store.fill(line, tag);
+        if (ways > 1) {
+            replacement.onFill(set, line - set * ways);
+            if (tagIndex != null) {
+                tagIndex.put(blockNumber, line);
+            }
+        }
+        return line;
+    }
+
+    // Picks the line to fill: a free way while the set is filling up, otherwise the policy's victim
+    private int allocate(int set) {
+        int base = set * ways;
+        int filled = validWays[set];
+        if (filled < ways) {
+            validWays[set] = filled + 1;
+            evicted = -1;
+            hasEvicted = false;
+            evictedDirty = false;
+            // Without invalidations ways fill in order, so the first candidate is almost always free
+            for (int way = filled; ; way = way + 1 == ways ? 0 : way + 1) {
+                if (!store.isValid(base + way)) {
+                    return base + way;
+                }
+            }
+        }
+        int line = base + replacement.victim(set);
+        evicted = store.tag(line) * sets + set;
+        hasEvicted = true;
+        evictedDirty = store.isDirty(line);
+        if (tagIndex != null) {
+            tagIndex.remove(evicted);
+        }
+        return line;
+    }
+
+    // Processes a batch and returns the number of hits. hitsOut may be null; when
+    // given, hitsOut[i] receives the result of blocks[off + i].
+    public int accessAll(long[] blocks, int off, int len, boolean[] hitsOut) {
+        if (hitsOut == null && usesBatchKernel()) {
+            return runKernel(blocks, off, len);
+        }
+        int hits = 0;
+        for (int i = 0; i < len; i++) {
+            boolean hit = access(blocks[off + i]);
+            if (hit) {
+                hits++;
+            }
+            if (hitsOut != null) {
+                hitsOut[i] = hit;
+            }
+        }
+        return hits;
+    }
+
+    // Same counts and state as access() per block, for a batch of reads
+    private int runKernel(long[] blocks, int off, int len) {
+        kernel.writebacks = 0;
+        kernel.evicted = evicted;
+        kernel.hasEvicted = hasEvicted;
+        kernel.evictedDirty = evictedDirty;
+        int hits = kernel.run(blocks, off, len);
+        accessCount += len;
+        hitCount += hits;
+        missCount += len - hits;
+        fetchCount += len - hits;
+        writebackCount += kernel.writebacks;
+        evicted = kernel.evicted;
+        hasEvicted = kernel.hasEvicted;
+        evictedDirty = kernel.evictedDirty;
+        return hits;
+    }
+
+    // Whether read batches currently go through DirectMappedKernel rather than access() one by
+    // one: only for plain direct-mapped caches, and not while a prefetcher or listener is attached
+    public boolean usesBatchKernel() {
+        return kernel != null && prefetch == null && listeners.length == 0;
+    }
+
+    // DirectMappedKernel.describe() while usesBatchKernel(), otherwise null
+    public String batchKernel() {
+        return usesBatchKernel() ? kernel.describe() : null;
+    }
+
+    public int accessAll(int[] blocks, int off, int len, boolean[] hitsOut) {
+        int hits = 0;
+        for (int i = 0; i < len; i++) {
+            boolean hit = access(blocks[off + i]);
+            if (hit) {
+                hits++;
+            }
+            if (hitsOut != null) {
+                hitsOut[i] = hit;
+            }
+        }
+        return hits;
+    }
+
+    public int accessAll(int[] blocks) {
+        return accessAll(blocks, 0, blocks.length, null);
+    }
+
+    public int accessAll(long[] blocks) {
+        return accessAll(blocks, 0, blocks.length, null);
+    }
+
+    public int accessAll(AccessBatch batch) {
+        if (!batch.anyWrites) {
+            return accessAll(batch.addresses, 0, batch.size, null);
+        }
+        int hits = 0;
+        for (int i = 0; i < batch.size; i++) {
+            if (access(batch.addresses[i], batch.isWrite(i))) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    // Drains the iterator and returns the number of hits
+    public long accessAll(PrimitiveIterator.OfLong blocks) {
+        long hits = 0;
+        while (blocks.hasNext()) {
+            if (access(blocks.nextLong())) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    public long accessAll(LongStream blocks) {
+        return accessAll(blocks.iterator());
+    }
+
+    public long accessAll(IntStream blocks) {
+        return accessAll(blocks.asLongStream().iterator());
+    }
+
+    // Empties every cache block and clears the counters
+    public void reset() {
+        store.clear();
+        if (replacement != null) {
+            replacement.reset();
+            Arrays.fill(validWays, 0);
+        }
+        if (tagIndex != null) {
+            tagIndex.clear();
+        }
+        accessCount = 0;
+        hitCount = 0;
+        missCount = 0;
+        writeCount = 0;
+        writeMissCount = 0;
+        fetchCount = 0;
+        writebackCount = 0;
+        writeThroughCount = 0;
+        victimHitCount = 0;
+        if (victims != null) {
+            victims.clear();
+        }
+        evicted = -1;
+        hasEvicted = false;
+        evictedDirty = false;
+        if (prefetch != null) {
+            prefetch.reset();
+        }
+
+        for (AccessListener listener : listeners) {
+            listener.onReset();
+        }
+    }
+
+    // Zeroes the counters (the prefetcher's too) but keeps the cached blocks and what the
+    // replacement policy and prefetcher have learned, so a warmed cache can be measured afresh
+    public void clearCounters() {
+        accessCount = 0;
+        hitCount = 0;
+        missCount = 0;
+        writeCount = 0;
+        writeMissCount = 0;
+        fetchCount = 0;
+        writebackCount = 0;
+        writeThroughCount = 0;
+        victimHitCount = 0;
+        if (prefetch != null) {
+            prefetch.clearCounters();
+        }
+    }
+
+    // Checkpoint support (see Checkpoint): counters, the lines (valid and dirty bitsets, then the
+    // tags of valid lines only), replacement state, victim cache and prefetcher. Per-set fill
+    // counts and the wide-set tag index follow from the lines and are rebuilt on restore.
+    // Listeners observe the cache and are not part of its state.
+    void saveState(DataOutput out) throws IOException {
+        for (long counter : new long[] {accessCount, hitCount, missCount, writeCount, writeMissCount, fetchCount,
+                writebackCount, writeThroughCount, victimHitCount, evicted}) {
+            out.writeLong(counter);
+        }
+        out.writeBoolean(hasEvicted);
+        out.writeBoolean(evictedDirty);
+        for (int base = 0; base < lines; base += 64) {
+            long valid = 0;
+            long dirty = 0;
+            for (int line = base, end = Math.min(base + 64, lines); line < end; line++) {
+                if (store.isValid(line)) {
+                    valid |= 1L << line;
+                    if (store.isDirty(line)) {
+                        dirty |= 1L << line;
+                    }
+                }
+            }
+            out.writeLong(valid);
+            out.writeLong(dirty);
+            for (int line = base; valid != 0; line++, valid >>>= 1) {
+                if ((valid & 1) != 0) {
+                    out.writeLong(store.tag(line));
+                }
+            }
+        }
+        if (replacement != null) {
+            replacement.save(out);
+        }
+        if (victims != null) {
+            victims.save(out);
+        }
+        out.writeBoolean(prefetch != null);
+        if (prefetch != null) {
+            Prefetcher prefetcher = prefetch.prefetcher();
+            if (prefetcher.name() == null) {
+                throw new IllegalStateException("Prefetcher cannot be checkpointed: " + prefetcher.describe());
+            }
+            out.writeUTF(prefetcher.name());
+            out.writeInt(prefetcher.depth());
+            out.writeInt(prefetch.latency());
+            prefetch.save(out);
+        }
+    }
+
+    // Replaces this cache's state with one saved from a cache of the same configuration
+    void restoreState(DataInput in) throws IOException {
+        accessCount = in.readLong();
+        hitCount = in.readLong();
+        missCount = in.readLong();
+        writeCount = in.readLong();
+        writeMissCount = in.readLong();
+        fetchCount = in.readLong();
+        writebackCount = in.readLong();
+        writeThroughCount = in.readLong();
+        victimHitCount = in.readLong();
+        evicted = in.readLong();
+        hasEvicted = in.readBoolean();
+        evictedDirty = in.readBoolean();
+        store.clear();
+        if (validWays != null) {
+            Arrays.fill(validWays, 0);
+        }
+        if (tagIndex != null) {
+            tagIndex.clear();
+        }
+        for (int base = 0; base < lines; base += 64) {
+            long valid = in.readLong();
+            long dirty = in.readLong();
+            for (int line = base; valid != 0; line++, valid >>>= 1, dirty >>>= 1) {
+                if ((valid & 1) == 0) {
+                    continue;
+                }
+                long tag = in.readLong();
+                store.fill(line, tag);
+                if ((dirty & 1) != 0) {
+                    store.setDirty(line);
+                }
+                if (ways > 1) {
+                    int set = line / ways;
+                    validWays[set]++;
+                    if (tagIndex != null) {
+                        tagIndex.put(tag * sets + set, line);
+                    }
+                }
+            }
+        }
+        if (replacement != null) {
+            replacement.restore(in);
+        }
+        if (victims != null) {
+            victims.restore(in);
+        }
+        if (in.readBoolean()) {
+            String name = in.readUTF();
+            int depth = in.readInt();
+            setPrefetcher(Prefetcher.create(name, depth), in.readInt());
+            prefetch.restore(in);
+        } else {
+            prefetch = null;
+        }
+    }
+
+    // Power-of-two geometries use shift-and-mask; anything else falls back to floor division
+    public int setIndex(long blockNumber) {
+        if (setBits >= 0) {
+            return (int) (blockNumber & setMask);
+        }
+        return (int) Math.floorMod(blockNumber, (long) sets);
+    }
+
+    public long tagOf(long blockNumber) {
+        if (setBits >= 0) {
+            return blockNumber >> setBits;
+        }
+        return Math.floorDiv(blockNumber, (long) sets);
+    }
+
+    public AddressMapping getAddressMapping() {
+        return mapping;
+    }
+
+    public CacheConfig getConfig() {
+        return config;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getSets() {
+        return sets;
+    }
+
+    public boolean isValid(int line) {
+        return store.isValid(line);
+    }
+
+    // Memory block number held by the line, or -1 when it is empty
+    public long blockAt(int line) {
+        if (!store.isValid(line)) {
+            return -1;
+        }
+        return store.tag(line) * sets + line / ways;
+    }
+
+    public long getAccessCount() {
+        return accessCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    // Accesses that missed the array but were found in the victim cache (included in the hits)
+    public long getVictimHitCount() {
+        return victimHitCount;
+    }
+
+    // The victim cache, or null
+    public VictimCache getVictimCache() {
+        return victims;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    public long getWriteMissCount() {
+        return writeMissCount;
+    }
+
+    public long getFetchCount() {
+        return fetchCount;
+    }
+
+    public long getWritebackCount() {
+        return writebackCount;
+    }
+
+    public long getWriteThroughCount() {
+        return writeThroughCount;
+    }
+
+    // Bytes read from the level below: one block per fetch
+    public long getBytesRead() {
+        return fetchCount * config.blockBytes();
+    }
+
+    // Bytes written to the level below: one block per writeback plus one word per write-through
+    public long getBytesWritten() {
+        return writebackCount * config.blockBytes() + writeThroughCount * WRITE_THROUGH_BYTES;
+    }
+
+    public boolean isDirty(int line) {
+        return store.isDirty(line);
+    }
+}
@@ -0,0 +1,237 @@
+package cachesim;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Snapshot of a simulator part-way through a run: its configuration, every bit of cache state
+// (tags, valid and dirty bits, replacement and RNG state, victim cache, prefetcher tables and
+// counters) and the number of accesses consumed from the input. restore() builds an independent
+// copy that continues exactly as the original would, so one warmed cache can be forked into
+// several what-if continuations, and a long run can resume after a crash.
+//
+// File layout (big-endian, as DataOutput writes it):
+//   header   "CCKP", version byte
+//   config   lines, ways, policy, off-heap, seed, write policy, write-allocate, block bytes,
+//            victim entries, address bits
+//   input    accesses consumed, source label (UTF)
+//   state    uncompressed and deflated lengths (ints), then the deflated state
+// Listeners are observers rather than cache state and are not saved.
+public final class Checkpoint {
+    static final byte[] MAGIC = {'C', 'C', 'K', 'P'};
+    static final int VERSION = 4; // 2: stride prefetcher history, 3: FIFO fill order, 4: eviction flag
+
+    private final CacheConfig config;
+    private final long position;
+    private final String source;
+    private final byte[] state; // CacheSimulator.saveState output, uncompressed
+
+    private Checkpoint(CacheConfig config, long position, String source, byte[] state) {
+        this.config = config;
+        this.position = position;
+        this.source = source;
+        this.state = state;
+    }
+
+    // position is the number of input accesses the simulator has consumed; source names the input
+    public static Checkpoint capture(CacheSimulator simulator, long position, String source) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Position must not be negative: " + position);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 12);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            simulator.saveState(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory write failed", e);
+        }
+        return new Checkpoint(simulator.getConfig(), position, source == null ? "" : source, bytes.toByteArray());
+    }
+
+    // A new simulator holding the saved state; forks made this way share nothing
+    public CacheSimulator restore() {
+        CacheSimulator simulator = new CacheSimulator(config);
+        restoreInto(simulator);
+        return simulator;
+    }
+
+    // Overwrites the state of an existing simulator, which must have the same configuration.
+    // Its listeners stay attached but are not told about the change.
+    public void restoreInto(CacheSimulator simulator) {
+        if (!Arrays.equals(configBytes(simulator.getConfig()), configBytes(config))) {
+            throw new IllegalArgumentException("Checkpoint of " + config.describe() + " cannot restore "
+                    + simulator.getConfig().describe());
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            simulator.restoreState(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Checkpoint state is corrupt", e);
+        }
+    }
+
+    public CacheConfig config() {
+        return config;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    // Uncompressed size of the cache state
+    public int stateBytes() {
+        return state.length;
+    }
+
+    // Writes to a temporary file beside the target and moves it into place, so a crash while
+    // checkpointing leaves the previous checkpoint intact
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(stream)) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.write(configBytes(config));
+            out.writeLong(position);
+            out.writeUTF(source);
+            ByteArrayOutputStream packed = new ByteArrayOutputStream(state.length / 4 + 64);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream deflate = new DeflaterOutputStream(packed, deflater)) {
+                deflate.write(state);
+            } finally {
+                deflater.end();
+            }
+            out.writeInt(state.length);
+            out.writeInt(packed.size());
+            packed.writeTo(out);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static Checkpoint read(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(stream)) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a checkpoint: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+            }
+            CacheConfig config;
+            try {
+                config = readConfig(in);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ": " + e.getMessage(), e);
+            }
+            long position = in.readLong();
+            String source = in.readUTF();
+            int length = in.readInt();
+            int packedLength = in.readInt();
+            if (length < 0 || packedLength < 0) {
+                throw new IOException(file + ": corrupt state length");
+            }
+            byte[] packed = new byte[packedLength];
+            in.readFully(packed);
+            byte[] state = new byte[length];
+            try (DataInputStream inflate = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(packed)))) {
+                inflate.readFully(state);
+            }
+            return new Checkpoint(config, position, source, state);
+        }
+    }
+
+    private static byte[] configBytes(CacheConfig config) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(config.lines());
+            out.writeInt(config.ways());
+            out.writeUTF(config.policy().name());
+            out.writeBoolean(config.offHeap());
+            out.writeLong(config.seed());
+            out.writeUTF(config.writePolicy().name());
+            out.writeBoolean(config.writeAllocate());
+            out.writeInt(config.blockBytes());
+            out.writeInt(config.victimEntries());
+            out.writeInt(config.addressBits());
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory write failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CacheConfig readConfig(DataInput in) throws IOException {
+        int lines = in.readInt();
+        int ways = in.readInt();
+        ReplacementPolicy policy = ReplacementPolicy.valueOf(in.readUTF());
+        boolean offHeap = in.readBoolean();
+        long seed = in.readLong();
+        WritePolicy writePolicy = WritePolicy.valueOf(in.readUTF());
+        return CacheConfig.setAssociative(lines, ways, policy)
+                .withOffHeap(offHeap)
+                .withSeed(seed)
+                .withWritePolicy(writePolicy)
+                .withWriteAllocate(in.readBoolean())
+                .withBlockBytes(in.readInt())
+                .withVictimEntries(in.readInt())
+                .withAddressBits(in.readInt());
+    }
+
+    // Array helpers for the saveState / restoreState methods of the cache parts. Arrays are
+    // restored into the instance's own, and a length mismatch means a different geometry.
+    static void writeLongs(DataOutput out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    static void readLongs(DataInput in, long[] values) throws IOException {
+        checkLength(in.readInt(), values.length);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readLong();
+        }
+    }
+
+    static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static void readInts(DataInput in, int[] values) throws IOException {
+        checkLength(in.readInt(), values.length);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+    }
+
+    private static void checkLength(int saved, int expected) throws IOException {
+        if (saved != expected) {
+            throw new IOException("Saved array has " + saved + " entries, expected " + expected);
+        }
+    }
+}
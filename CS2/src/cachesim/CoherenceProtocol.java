@@ -0,0 +1,12 @@
+package cachesim;
+
+// Invalidation protocol keeping the private caches of a CoherenceSimulator coherent
+public enum CoherenceProtocol {
+    MESI,  // A dirty line read by another core is written back to memory and both copies become Shared
+    MOESI; // The writer keeps it as Owned and supplies later readers itself; memory is updated on eviction
+
+    // Accepts names case-insensitively, e.g. "mesi" or "MOESI"
+    public static CoherenceProtocol parse(String name) {
+        return valueOf(name.trim().toUpperCase(java.util.Locale.ROOT));
+    }
+}
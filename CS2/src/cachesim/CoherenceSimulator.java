@@ -0,0 +1,512 @@
+package cachesim;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// N private write-back caches kept coherent by MESI or MOESI invalidation. Each core reads its own
+// access stream on its own thread; the bus grants the cores turns of `quantum` accesses in
+// round-robin order on the calling thread, so a run is deterministic however the readers are
+// scheduled. Every line carries a state next to its tag:
+//   M modified, O owned (MOESI only), E exclusive, S shared, I invalid.
+// A read miss (BusRd) is served by a dirty holder when there is one, otherwise by memory; a write
+// miss (BusRdX) or a write to a Shared / Owned line (BusUpgr) invalidates every other copy.
+//
+// With a snooping bus every request is looked up by the other N-1 caches. With a directory the
+// requester talks to the block's home node, which forwards to the holders only: one request, one
+// message per holder contacted, one acknowledgement per invalidation and one data reply. The
+// directory's sharer lists are the private caches' contents, which a full-map directory tracks
+// exactly, so both interconnects produce the same states and misses and differ only in traffic.
+//
+// A coherence miss is a miss on a block this core lost to another core's write. It is true sharing
+// when the word it now accesses was written by another core since then, and false sharing when
+// only other words of the line were (Torrellas et al.). Words are 4 bytes, or lineBytes / 16 for
+// lines over 64 bytes; traces of block numbers have no offsets, so their misses all count as true.
+public final class CoherenceSimulator {
+    public enum Interconnect { SNOOPING_BUS, DIRECTORY }
+
+    static final byte INVALID = 0;
+    static final byte SHARED = 1;
+    static final byte EXCLUSIVE = 2;
+    static final byte OWNED = 3;
+    static final byte MODIFIED = 4;
+    private static final String STATES = "ISEOM";
+    private static final int BATCH_SIZE = 1 << 14;
+    private static final int MESSAGE_BYTES = 8; // Request, forward, invalidation or acknowledgement
+
+    private final CacheConfig config;
+    private final int cores;
+    private final CoherenceProtocol protocol;
+    private final Interconnect interconnect;
+    private final AddressMapping mapping;
+    private final int wordShift; // log2 of the word size used to detect false sharing
+    private final int lineBytes;
+    private final CacheSimulator[] caches;
+    private final byte[][] states; // [core][line]
+    private final LongIntHashMap[] lost; // Per core: invalidated block -> words others wrote since
+    private final LongIntHashMap falseSharingByBlock = new LongIntHashMap(1024);
+    private final LongIntHashMap invalidationsByBlock = new LongIntHashMap(1024);
+    private int quantum = 1;
+
+    private final long[] coreAccesses;
+    private final long[] coreMisses;
+    private final long[] coreCoherenceMisses;
+    private final long[] coreInvalidations; // Copies this core lost to other cores' writes
+    private long busReads = 0;
+    private long busReadExclusives = 0;
+    private long busUpgrades = 0;
+    private long writebacks = 0; // Dirty lines written to memory: evictions, and MESI downgrades
+    private long cacheToCache = 0; // Misses served by another core's dirty copy
+    private long memoryReads = 0;
+    private long invalidations = 0;
+    private long trueSharingMisses = 0;
+    private long falseSharingMisses = 0;
+    private long snoops = 0; // Tag lookups by the other caches on a snooping bus
+    private long messages = 0; // Control messages (directory) or bus requests (snooping)
+    private long dataBytes = 0; // Line transfers between caches and memory or cache to cache
+
+    public CoherenceSimulator(CacheConfig config, int cores, CoherenceProtocol protocol, Interconnect interconnect) {
+        if (cores < 1) {
+            throw new IllegalArgumentException("Cores must be positive: " + cores);
+        }
+        if (config.writePolicy() != WritePolicy.WRITE_BACK || !config.writeAllocate()) {
+            throw new IllegalArgumentException("Coherent caches are modelled as write-back with write-allocate");
+        }
+        if (config.victimEntries() > 0) {
+            throw new IllegalArgumentException("Victim caches are only modelled for single caches");
+        }
+        this.config = config;
+        this.cores = cores;
+        this.protocol = protocol;
+        this.interconnect = interconnect;
+        this.mapping = AddressMapping.of(config);
+        this.lineBytes = config.blockBytes();
+        int wordBytes = Math.max(4, Integer.highestOneBit(Math.max(lineBytes / 16, 1)));
+        this.wordShift = Integer.numberOfTrailingZeros(wordBytes);
+        this.caches = new CacheSimulator[cores];
+        this.states = new byte[cores][config.lines()];
+        this.lost = new LongIntHashMap[cores];
+        for (int c = 0; c < cores; c++) {
+            caches[c] = new CacheSimulator(config.withSeed(config.seed() + c));
+            lost[c] = new LongIntHashMap(1024);
+        }
+        this.coreAccesses = new long[cores];
+        this.coreMisses = new long[cores];
+        this.coreCoherenceMisses = new long[cores];
+        this.coreInvalidations = new long[cores];
+    }
+
+    // Accesses each core runs before the bus moves on to the next core
+    public void setQuantum(int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be positive: " + quantum);
+        }
+        this.quantum = quantum;
+    }
+
+    // One access by a core to a byte address; returns true on a hit
+    public boolean access(int core, long address, boolean write) {
+        return accessBlock(core, mapping.block(address), wordOf(address), write);
+    }
+
+    private int wordOf(long address) {
+        return Math.min(mapping.offset(address) >>> wordShift, 15);
+    }
+
+    private boolean accessBlock(int core, long block, int word, boolean write) {
+        coreAccesses[core]++;
+        CacheSimulator cache = caches[core];
+        byte[] state = states[core];
+        if (write) {
+            noteWrite(core, block, word);
+        }
+        if (cache.lookup(block, false)) {
+            if (write) {
+                int line = cache.lineOf(block);
+                byte s = state[line];
+                if (s == SHARED || s == OWNED) {
+                    busUpgrades++;
+                    request(core);
+                    invalidateOthers(core, block, word);
+                    if (interconnect == Interconnect.DIRECTORY) {
+                        messages++; // Grant once the acknowledgements are in
+                    }
+                }
+                state[line] = MODIFIED;
+            }
+            return true;
+        }
+
+        coreMisses[core]++;
+        int written = lost[core].remove(block);
+        if (written != LongIntHashMap.MISSING) {
+            coreCoherenceMisses[core]++;
+            if ((written & (1 << word)) != 0) {
+                trueSharingMisses++;
+            } else {
+                falseSharingMisses++;
+                increment(falseSharingByBlock, block);
+            }
+        }
+
+        request(core);
+        boolean supplied;
+        byte next;
+        if (write) {
+            busReadExclusives++;
+            supplied = invalidateOthers(core, block, word);
+            next = MODIFIED;
+        } else {
+            busReads++;
+            supplied = false;
+            boolean shared = false;
+            for (int o = 0; o < cores; o++) {
+                int line = o == core ? -1 : caches[o].lineOf(block);
+                if (line < 0) {
+                    continue;
+                }
+                shared = true;
+                if (interconnect == Interconnect.DIRECTORY) {
+                    messages++; // Forwarded to the holder
+                }
+                byte s = states[o][line];
+                if (s == MODIFIED) {
+                    supplied = true;
+                    if (protocol == CoherenceProtocol.MOESI) {
+                        states[o][line] = OWNED;
+                    } else {
+                        states[o][line] = SHARED;
+                        writebacks++;
+                        dataBytes += lineBytes;
+                    }
+                } else if (s == OWNED) {
+                    supplied = true;
+                } else if (s == EXCLUSIVE) {
+                    states[o][line] = SHARED;
+                }
+            }
+            next = shared ? SHARED : EXCLUSIVE;
+        }
+        if (supplied) {
+            cacheToCache++;
+        } else {
+            memoryReads++;
+        }
+        dataBytes += lineBytes;
+        if (interconnect == Interconnect.DIRECTORY) {
+            messages++; // Data reply
+        }
+
+        cache.fill(block, false);
+        int line = cache.lineOf(block);
+        if (cache.hasEvicted() && (state[line] == MODIFIED || state[line] == OWNED)) {
+            writebacks++;
+            dataBytes += lineBytes;
+            if (interconnect == Interconnect.DIRECTORY) {
+                messages++;
+            }
+        }
+        state[line] = next;
+        return false;
+    }
+
+    // A request leaves the core: one bus transaction snooped by every other cache, or one
+    // message to the home directory
+    private void request(int core) {
+        messages++;
+        if (interconnect == Interconnect.SNOOPING_BUS) {
+            snoops += cores - 1;
+        }
+    }
+
+    // Removes every other copy of the block; returns whether one of them was dirty and so supplies
+    // the data. Each loser remembers the block so its next miss on it is classified.
+    private boolean invalidateOthers(int core, long block, int word) {
+        boolean dirty = false;
+        for (int o = 0; o < cores; o++) {
+            if (o == core) {
+                continue;
+            }
+            int line = caches[o].lineOf(block);
+            if (line < 0) {
+                continue;
+            }
+            byte s = states[o][line];
+            dirty |= s == MODIFIED || s == OWNED;
+            caches[o].invalidate(block);
+            states[o][line] = INVALID;
+            invalidations++;
+            coreInvalidations[o]++;
+            increment(invalidationsByBlock, block);
+            lost[o].put(block, 1 << word);
+            if (interconnect == Interconnect.DIRECTORY) {
+                messages += 2; // Invalidation and acknowledgement
+            }
+        }
+        return dirty;
+    }
+
+    // Marks the word as written for every core that has lost the block
+    private void noteWrite(int core, long block, int word) {
+        for (int o = 0; o < cores; o++) {
+            if (o != core) {
+                int written = lost[o].get(block);
+                if (written != LongIntHashMap.MISSING) {
+                    lost[o].put(block, written | (1 << word));
+                }
+            }
+        }
+    }
+
+    private static void increment(LongIntHashMap counts, long block) {
+        int n = counts.get(block);
+        counts.put(block, n == LongIntHashMap.MISSING ? 1 : n + 1);
+    }
+
+    // Runs one stream per core to the end. Readers fill batches on their own threads; the bus
+    // interleaves the cores quantum accesses at a time, dropping each stream when it ends.
+    // byteAddresses false treats the streams as block numbers.
+    public void run(List<? extends AccessSource> streams, boolean byteAddresses) throws IOException {
+        if (streams.size() != cores) {
+            throw new IllegalArgumentException("Need one stream per core: " + streams.size() + " for " + cores + " cores");
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(cores, r -> {
+            Thread thread = new Thread(r, "core-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Reader[] feeds = new Reader[cores];
+        try {
+            for (int c = 0; c < cores; c++) {
+                feeds[c] = new Reader(streams.get(c));
+                readers.execute(feeds[c]);
+            }
+            AccessBatch[] current = new AccessBatch[cores];
+            int[] position = new int[cores];
+            int active = cores;
+            while (active > 0) {
+                for (int c = 0; c < cores; c++) {
+                    for (int q = 0; q < quantum; q++) {
+                        if (current[c] != null && position[c] == current[c].size) {
+                            feeds[c].empty.add(current[c]);
+                            current[c] = null;
+                        }
+                        if (current[c] == null) {
+                            if (feeds[c].done) {
+                                break;
+                            }
+                            current[c] = feeds[c].take();
+                            position[c] = 0;
+                            if (current[c].size == 0) {
+                                feeds[c].done = true;
+                                current[c] = null;
+                                active--;
+                                break;
+                            }
+                        }
+                        AccessBatch batch = current[c];
+                        int i = position[c]++;
+                        long value = batch.addresses[i];
+                        boolean write = batch.anyWrites && batch.isWrite(i);
+                        if (byteAddresses) {
+                            access(c, value, write);
+                        } else {
+                            accessBlock(c, value, 0, write);
+                        }
+                    }
+                }
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    // Reads one core's stream ahead of the bus into two recycled batches; an empty batch marks the end
+    private static final class Reader implements Runnable {
+        private final AccessSource source;
+        private final BlockingQueue<AccessBatch> full = new ArrayBlockingQueue<>(2);
+        private final BlockingQueue<AccessBatch> empty = new ArrayBlockingQueue<>(2);
+        private volatile IOException error;
+        private boolean done = false; // Bus side only
+
+        Reader(AccessSource source) {
+            this.source = source;
+            empty.add(new AccessBatch(BATCH_SIZE));
+            empty.add(new AccessBatch(BATCH_SIZE));
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    AccessBatch batch = empty.take();
+                    if (source.read(batch) == 0) {
+                        batch.size = 0;
+                        full.put(batch);
+                        return;
+                    }
+                    full.put(batch);
+                }
+            } catch (IOException e) {
+                error = e;
+                full.offer(new AccessBatch(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        AccessBatch take() throws IOException {
+            AccessBatch batch;
+            try {
+                batch = full.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a core's accesses");
+            }
+            if (error != null) {
+                throw error;
+            }
+            return batch;
+        }
+    }
+
+    public int cores() {
+        return cores;
+    }
+
+    public CacheConfig config() {
+        return config;
+    }
+
+    public CoherenceProtocol protocol() {
+        return protocol;
+    }
+
+    public Interconnect interconnect() {
+        return interconnect;
+    }
+
+    public CacheSimulator cache(int core) {
+        return caches[core];
+    }
+
+    // Coherence state of a block in a core's cache: one of "MOESI", I when absent
+    public char state(int core, long blockNumber) {
+        int line = caches[core].lineOf(blockNumber);
+        return STATES.charAt(line < 0 ? INVALID : states[core][line]);
+    }
+
+    public long accesses(int core) {
+        return coreAccesses[core];
+    }
+
+    public long misses(int core) {
+        return coreMisses[core];
+    }
+
+    public long coherenceMisses(int core) {
+        return coreCoherenceMisses[core];
+    }
+
+    public long invalidationsReceived(int core) {
+        return coreInvalidations[core];
+    }
+
+    public long accesses() {
+        return Arrays.stream(coreAccesses).sum();
+    }
+
+    public long misses() {
+        return Arrays.stream(coreMisses).sum();
+    }
+
+    public long busReads() {
+        return busReads;
+    }
+
+    public long busReadExclusives() {
+        return busReadExclusives;
+    }
+
+    public long busUpgrades() {
+        return busUpgrades;
+    }
+
+    public long writebacks() {
+        return writebacks;
+    }
+
+    public long cacheToCacheTransfers() {
+        return cacheToCache;
+    }
+
+    public long memoryReads() {
+        return memoryReads;
+    }
+
+    public long invalidations() {
+        return invalidations;
+    }
+
+    public long trueSharingMisses() {
+        return trueSharingMisses;
+    }
+
+    public long falseSharingMisses() {
+        return falseSharingMisses;
+    }
+
+    public long snoops() {
+        return snoops;
+    }
+
+    public long messages() {
+        return messages;
+    }
+
+    // Line data moved plus MESSAGE_BYTES per control message
+    public long trafficBytes() {
+        return dataBytes + messages * MESSAGE_BYTES;
+    }
+
+    // The blocks with the most false-sharing misses (most invalidations when there are none),
+    // as CSV with the first byte address of each line
+    public void writeHotLines(Appendable out, int limit) throws IOException {
+        LongIntHashMap ranking = falseSharingByBlock.size() > 0 ? falseSharingByBlock : invalidationsByBlock;
+        long[] blocks = ranking.keys();
+        Long[] order = new Long[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            order[i] = blocks[i];
+        }
+        Arrays.sort(order, (a, b) -> ranking.get(b) != ranking.get(a)
+                ? Integer.compare(ranking.get(b), ranking.get(a))
+                : Long.compare(a, b));
+        out.append("block,address,false_sharing_misses,invalidations\n");
+        for (int i = 0; i < Math.min(limit, order.length); i++) {
+            long block = order[i];
+            out.append(String.format(Locale.ROOT, "%d,0x%x,%d,%d\n", block, mapping.address(block),
+                    Math.max(falseSharingByBlock.get(block), 0), Math.max(invalidationsByBlock.get(block), 0)));
+        }
+    }
+
+    // One CSV row per core
+    public void writeCoreBreakdown(Appendable out) throws IOException {
+        out.append("core,accesses,hits,misses,miss_rate,coherence_misses,invalidations_received\n");
+        for (int c = 0; c < cores; c++) {
+            out.append(String.format(Locale.ROOT, "%d,%d,%d,%d,%.6f,%d,%d\n", c, coreAccesses[c],
+                    coreAccesses[c] - coreMisses[c], coreMisses[c],
+                    coreMisses[c] / (double) Math.max(coreAccesses[c], 1), coreCoherenceMisses[c], coreInvalidations[c]));
+        }
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "%d cores, %s over a %s, each with a %s cache", cores, protocol,
+                interconnect == Interconnect.DIRECTORY ? "directory" : "snooping bus", config.describe());
+    }
+}
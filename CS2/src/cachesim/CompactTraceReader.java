@@ -0,0 +1,312 @@
+package cachesim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Reads the compact trace format written by CompactTraceWriter:
+//   header   "CTRZ", version, flags (bit 0: chunks are deflated), 2 reserved bytes
+//   chunks   accesses, encoded bytes, stored bytes (3 little-endian ints), then the stored bytes
+//   index    per chunk: file offset and number of its first access (2 longs)
+//   trailer  index offset, total accesses (longs), chunk count (int), "CIDX"
+// A record is the varint of zigzag(delta) << 1 | write, where delta is the step from the previous
+// address of the same chunk modulo 2^63; each chunk starts from address 0, so it decodes on its
+// own and seek() only has to decode from the start of one chunk. Strided and local traces take
+// one or two bytes per access before deflate, against eight in the binary format.
+//
+// Chunks are read with positional reads into reused arrays and decoded straight into the batch.
+// A file whose writer never closed has no trailer; its chunk headers are walked instead.
+public final class CompactTraceReader implements TraceReader {
+    static final byte[] MAGIC = {'C', 'T', 'R', 'Z'};
+    static final byte[] INDEX_MAGIC = {'C', 'I', 'D', 'X'};
+    static final int VERSION = 1;
+    static final int FLAG_DEFLATE = 1;
+    static final int HEADER_BYTES = 8;
+    static final int CHUNK_HEADER_BYTES = 12;
+    static final int INDEX_ENTRY_BYTES = 16;
+    static final int TRAILER_BYTES = 24;
+    static final int MAX_CHUNK_ACCESSES = 1 << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final boolean deflated;
+    private final Inflater inflater;
+    private final long[] chunkOffsets;
+    private final long[] chunkFirsts;
+    private final long accesses;
+    private final ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] stored = new byte[0];
+    private byte[] raw = new byte[0];
+    private int chunk = -1; // Loaded chunk
+    private int rawPos = 0;
+    private int left = 0; // Records of the loaded chunk not yet decoded
+    private long previous = 0;
+    private long position = 0; // Accesses returned or skipped
+    private long bytesRead = HEADER_BYTES;
+
+    public CompactTraceReader(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(head, 0);
+            byte[] bytes = head.array();
+            if (!hasMagic(bytes)) {
+                throw new IOException("Not a compact trace: " + file);
+            }
+            if (bytes[4] != VERSION) {
+                throw new IOException("Unsupported compact trace version " + bytes[4] + ": " + file);
+            }
+            deflated = (bytes[5] & FLAG_DEFLATE) != 0;
+            inflater = deflated ? new Inflater() : null;
+
+            long[][] index = readIndex();
+            if (index == null) {
+                index = scanChunks();
+            }
+            chunkOffsets = index[0];
+            chunkFirsts = index[1];
+            accesses = index[2][0];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static boolean hasMagic(byte[] head) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Offsets, first accesses and {total accesses} from the trailer, or null if there is none
+    private long[][] readIndex() throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            return null;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(trailer, size - TRAILER_BYTES);
+        trailer.flip();
+        long indexOffset = trailer.getLong();
+        long total = trailer.getLong();
+        int chunks = trailer.getInt();
+        byte[] magic = new byte[INDEX_MAGIC.length];
+        trailer.get(magic);
+        if (!Arrays.equals(magic, INDEX_MAGIC)
+                || indexOffset + (long) chunks * INDEX_ENTRY_BYTES + TRAILER_BYTES != size) {
+            return null;
+        }
+        ByteBuffer entries = ByteBuffer.allocate(chunks * INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(entries, indexOffset);
+        entries.flip();
+        long[] offsets = new long[chunks];
+        long[] firsts = new long[chunks];
+        for (int c = 0; c < chunks; c++) {
+            offsets[c] = entries.getLong();
+            firsts[c] = entries.getLong();
+        }
+        return new long[][] {offsets, firsts, {total}};
+    }
+
+    // Rebuilds the index from the chunk headers of an unfinished file, dropping a torn last chunk
+    private long[][] scanChunks() throws IOException {
+        long size = channel.size();
+        long[] offsets = new long[64];
+        long[] firsts = new long[64];
+        int chunks = 0;
+        long total = 0;
+        long offset = HEADER_BYTES;
+        while (offset + CHUNK_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(header, offset);
+            header.flip();
+            int count = header.getInt();
+            int rawLength = header.getInt();
+            int storedLength = header.getInt();
+            if (count <= 0 || count > MAX_CHUNK_ACCESSES || rawLength < count || storedLength < 0
+                    || offset + CHUNK_HEADER_BYTES + storedLength > size) {
+                break;
+            }
+            if (chunks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, chunks * 2);
+                firsts = Arrays.copyOf(firsts, chunks * 2);
+            }
+            offsets[chunks] = offset;
+            firsts[chunks++] = total;
+            total += count;
+            offset += CHUNK_HEADER_BYTES + storedLength;
+        }
+        return new long[][] {Arrays.copyOf(offsets, chunks), Arrays.copyOf(firsts, chunks), {total}};
+    }
+
+    @Override
+    public int read(AccessBatch batch) throws IOException {
+        batch.size = 0;
+        batch.clearWrites();
+        long[] out = batch.addresses;
+        while (batch.size < out.length) {
+            if (left == 0 && !loadChunk(chunk + 1)) {
+                break;
+            }
+            int n = Math.min(left, out.length - batch.size);
+            decode(batch, batch.size, n);
+            batch.size += n;
+        }
+        return batch.size;
+    }
+
+    // Decodes n records of the loaded chunk into batch positions from..from+n-1; a null batch skips them
+    private void decode(AccessBatch batch, int from, int n) throws IOException {
+        byte[] in = raw;
+        int p = rawPos;
+        long address = previous;
+        long[] out = batch == null ? null : batch.addresses;
+        try {
+            for (int i = from, end = from + n; i < end; i++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = in[p++];
+                    value |= (b & 0x7FL) << shift;
+                    shift += 7;
+                } while (b < 0);
+                long zigzag = value >>> 1;
+                address = (address + ((zigzag >>> 1) ^ -(zigzag & 1))) & ~BinaryTraceReader.WRITE_FLAG;
+                if (out != null) {
+                    out[i] = address;
+                    if ((value & 1) != 0) {
+                        batch.setWrite(i);
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException(file + ": chunk " + chunk + " ends inside a record");
+        }
+        rawPos = p;
+        previous = address;
+        left -= n;
+        position += n;
+    }
+
+    private boolean loadChunk(int c) throws IOException {
+        if (c >= chunkOffsets.length) {
+            return false;
+        }
+        long offset = chunkOffsets[c];
+        header.clear();
+        readFully(header, offset);
+        header.flip();
+        int count = header.getInt();
+        int rawLength = header.getInt();
+        int storedLength = header.getInt();
+        if (count <= 0 || count > MAX_CHUNK_ACCESSES || rawLength < count || storedLength < 0) {
+            throw new IOException(file + ": corrupt header of chunk " + c);
+        }
+        if (raw.length < rawLength) {
+            raw = new byte[rawLength];
+        }
+        if (deflated) {
+            if (stored.length < storedLength) {
+                stored = new byte[storedLength];
+            }
+            readFully(ByteBuffer.wrap(stored, 0, storedLength), offset + CHUNK_HEADER_BYTES);
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLength);
+            try {
+                if (inflater.inflate(raw, 0, rawLength) != rawLength || !inflater.finished()) {
+                    throw new IOException(file + ": chunk " + c + " does not inflate to " + rawLength + " bytes");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(file + ": chunk " + c + " is not valid deflate data", e);
+            }
+        } else {
+            readFully(ByteBuffer.wrap(raw, 0, rawLength), offset + CHUNK_HEADER_BYTES);
+        }
+        chunk = c;
+        rawPos = 0;
+        left = count;
+        previous = 0;
+        position = chunkFirsts[c];
+        bytesRead = offset + CHUNK_HEADER_BYTES + storedLength;
+        return true;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset);
+            if (n < 0) {
+                throw new IOException(file + ": unexpected end of file at byte " + offset);
+            }
+            offset += n;
+        }
+    }
+
+    // Moves to the given access: finds its chunk in the index and decodes up to it
+    public void seek(long access) throws IOException {
+        if (access < 0 || access > accesses) {
+            throw new IllegalArgumentException("Position out of range: " + access);
+        }
+        int c = Arrays.binarySearch(chunkFirsts, access);
+        if (c < 0) {
+            c = -c - 2;
+        }
+        if (c < 0 || access == accesses) {
+            // Empty trace, or the very end
+            chunk = chunkOffsets.length - 1;
+            left = 0;
+            position = accesses;
+            return;
+        }
+        loadChunk(c);
+        decode(null, 0, (int) (access - chunkFirsts[c]));
+    }
+
+    @Override
+    public long skip(long accesses) throws IOException {
+        long target = Math.min(position + Math.max(accesses, 0), this.accesses);
+        long skipped = target - position;
+        seek(target);
+        return skipped;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    // Accesses in the whole trace
+    public long accesses() {
+        return accesses;
+    }
+
+    public int chunks() {
+        return chunkOffsets.length;
+    }
+
+    public boolean deflated() {
+        return deflated;
+    }
+
+    @Override
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+        }
+        channel.close();
+    }
+}
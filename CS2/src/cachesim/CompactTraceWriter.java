@@ -0,0 +1,162 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+// Writes the compact format read by CompactTraceReader. Accesses are buffered into chunks of
+// chunkAccesses; each chunk is encoded as varints of the zigzagged address delta (with the write
+// flag in the low bit), optionally deflated, and written with its own header. The chunk index
+// and the trailer go out on close(), so a trace is only complete once the writer is closed.
+public final class CompactTraceWriter implements Closeable {
+    public static final int DEFAULT_CHUNK_ACCESSES = 1 << 16;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final FileChannel channel;
+    private final int chunkAccesses;
+    private final Deflater deflater; // null when chunks are stored as encoded
+    private final byte[] raw; // Encoded records of the current chunk
+    private byte[] stored; // Deflate output
+    private final ByteBuffer header = ByteBuffer.allocate(CompactTraceReader.CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private long[] chunkOffsets = new long[64];
+    private long[] chunkFirsts = new long[64]; // Number of each chunk's first access
+    private int chunks = 0;
+    private int rawLength = 0;
+    private int chunkCount = 0; // Accesses in the current chunk
+    private long previous = 0; // Last address of the current chunk; every chunk starts from 0
+    private long written = 0;
+    private long fileOffset = CompactTraceReader.HEADER_BYTES;
+
+    public CompactTraceWriter(Path file) throws IOException {
+        this(file, DEFAULT_CHUNK_ACCESSES, true);
+    }
+
+    public CompactTraceWriter(Path file, int chunkAccesses, boolean deflate) throws IOException {
+        if (chunkAccesses < 1 || chunkAccesses > CompactTraceReader.MAX_CHUNK_ACCESSES) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and "
+                    + CompactTraceReader.MAX_CHUNK_ACCESSES + " accesses: " + chunkAccesses);
+        }
+        this.chunkAccesses = chunkAccesses;
+        this.raw = new byte[chunkAccesses * MAX_VARINT_BYTES];
+        this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.stored = deflate ? new byte[raw.length + raw.length / 1000 + 64] : raw;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer head = ByteBuffer.allocate(CompactTraceReader.HEADER_BYTES);
+        head.put(CompactTraceReader.MAGIC);
+        head.put((byte) CompactTraceReader.VERSION);
+        head.put((byte) (deflate ? CompactTraceReader.FLAG_DEFLATE : 0));
+        head.position(CompactTraceReader.HEADER_BYTES).flip();
+        writeFully(head);
+    }
+
+    // Records a read
+    public void write(long address) throws IOException {
+        write(address, false);
+    }
+
+    public void write(long address, boolean isWrite) throws IOException {
+        if ((address & BinaryTraceReader.WRITE_FLAG) != 0) {
+            throw new IllegalArgumentException("Address does not fit in 63 bits: " + address);
+        }
+        // The delta is taken modulo 2^63 and sign-extended, so its zigzag form leaves a bit for the flag
+        long delta = ((address - previous) << 1) >> 1;
+        long value = ((delta << 1) ^ (delta >> 63)) << 1 | (isWrite ? 1 : 0);
+        byte[] out = raw;
+        int p = rawLength;
+        while ((value & ~0x7FL) != 0) {
+            out[p++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        out[p++] = (byte) value;
+        rawLength = p;
+        previous = address;
+        written++;
+        if (++chunkCount == chunkAccesses) {
+            flushChunk();
+        }
+    }
+
+    public void write(AccessBatch batch) throws IOException {
+        long[] addresses = batch.addresses;
+        for (int i = 0; i < batch.size; i++) {
+            write(addresses[i], batch.anyWrites && batch.isWrite(i));
+        }
+    }
+
+    public long accessesWritten() {
+        return written;
+    }
+
+    // File size so far: header and completed chunks
+    public long bytesWritten() {
+        return fileOffset;
+    }
+
+    private void flushChunk() throws IOException {
+        if (chunkCount == 0) {
+            return;
+        }
+        int storedLength = rawLength;
+        byte[] data = raw;
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+            storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == stored.length) {
+                    stored = Arrays.copyOf(stored, stored.length * 2);
+                }
+                storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+            }
+            data = stored;
+        }
+        if (chunks == chunkOffsets.length) {
+            chunkOffsets = Arrays.copyOf(chunkOffsets, chunks * 2);
+            chunkFirsts = Arrays.copyOf(chunkFirsts, chunks * 2);
+        }
+        chunkOffsets[chunks] = fileOffset;
+        chunkFirsts[chunks++] = written - chunkCount;
+        header.clear();
+        header.putInt(chunkCount).putInt(rawLength).putInt(storedLength).flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(data, 0, storedLength));
+        fileOffset += CompactTraceReader.CHUNK_HEADER_BYTES + storedLength;
+        rawLength = 0;
+        chunkCount = 0;
+        previous = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Flushes the last chunk and appends the index (offset and first access of every chunk) and the trailer
+    @Override
+    public void close() throws IOException {
+        try {
+            flushChunk();
+            ByteBuffer index = ByteBuffer.allocate(chunks * CompactTraceReader.INDEX_ENTRY_BYTES
+                    + CompactTraceReader.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int c = 0; c < chunks; c++) {
+                index.putLong(chunkOffsets[c]).putLong(chunkFirsts[c]);
+            }
+            index.putLong(fileOffset).putLong(written).putInt(chunks).put(CompactTraceReader.INDEX_MAGIC).flip();
+            writeFully(index);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Runs one access stream against a grid of cache configurations in a single pass. The source
+// is read once; every batch is handed to all per-configuration simulators in parallel on a
+// ForkJoinPool while the next batch is being read.
+public final class ConfigSweep {
+    private static final int BATCH_SIZE = 1 << 16;
+
+    private final List<Point> points = new ArrayList<>();
+    private final ForkJoinPool pool;
+
+    // One grid point: a cache plus the block size used to turn trace addresses into block numbers
+    public static final class Point {
+        final CacheConfig config;
+        final int blockSize;
+        final int blockBits;
+        final CacheSimulator simulator;
+        long accesses;
+        long hits;
+
+        Point(CacheConfig config, int blockSize) {
+            if (Integer.bitCount(blockSize) != 1) {
+                throw new IllegalArgumentException("Block size must be a power of two: " + blockSize);
+            }
+            this.config = config;
+            this.blockSize = blockSize;
+            this.blockBits = Integer.numberOfTrailingZeros(blockSize);
+            this.simulator = new CacheSimulator(config);
+        }
+
+        // Grid points use write-allocate, where reads and writes hit and miss alike, so the
+        // batch's write flags do not change the counts and are not passed on
+        void run(AccessBatch batch) {
+            long[] addresses = batch.addresses;
+            int n = batch.size;
+            int batchHits = 0;
+            for (int i = 0; i < n; i++) {
+                if (simulator.access(addresses[i] >> blockBits)) {
+                    batchHits++;
+                }
+            }
+            accesses += n;
+            hits += batchHits;
+        }
+
+        public CacheConfig config() {
+            return config;
+        }
+
+        public int blockSize() {
+            return blockSize;
+        }
+
+        public long accesses() {
+            return accesses;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return accesses - hits;
+        }
+    }
+
+    public ConfigSweep(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ConfigSweep() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public void add(CacheConfig config, int blockSize) {
+        points.add(new Point(config, blockSize));
+    }
+
+    public List<Point> points() {
+        return points;
+    }
+
+    // Cross product of the given dimensions; combinations that are not valid caches (ways not
+    // dividing lines, PLRU on a non-power-of-two set) are skipped and returned as messages
+    public List<String> addGrid(int[] lines, int[] blockSizes, int[] ways, ReplacementPolicy[] policies) {
+        List<String> skipped = new ArrayList<>();
+        for (int l : lines) {
+            for (int b : blockSizes) {
+                for (int w : ways) {
+                    for (ReplacementPolicy p : policies) {
+                        if (w == 1 && p != policies[0]) {
+                            continue; // Direct-mapped caches have no replacement choice
+                        }
+                        try {
+                            CacheConfig config = CacheConfig.setAssociative(l, w, p);
+                            add(config, b);
+                        } catch (IllegalArgumentException e) {
+                            skipped.add(e.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+        return skipped;
+    }
+
+    // Streams the whole source through every grid point
+    public void run(AccessSource source) throws IOException {
+        AccessBatch current = new AccessBatch(BATCH_SIZE);
+        AccessBatch next = new AccessBatch(BATCH_SIZE);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(points.size());
+
+        source.read(current);
+        while (current.size > 0) {
+            tasks.clear();
+            AccessBatch batch = current;
+            for (Point point : points) {
+                tasks.add(pool.submit(() -> point.run(batch)));
+            }
+            // Overlap reading the next batch with simulating this one
+            source.read(next);
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+            AccessBatch swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("lines,block_size,ways,sets,policy,accesses,hits,misses,miss_ratio\n");
+        for (Point p : points) {
+            CacheConfig c = p.config;
+            out.append(String.format(Locale.ROOT, "%d,%d,%d,%d,%s,%d,%d,%d,%.6f%n",
+                    c.lines(), p.blockSize, c.ways(), c.sets(), policyName(c), p.accesses, p.hits, p.misses(),
+                    p.misses() / (double) Math.max(p.accesses, 1)));
+        }
+    }
+
+    public void writeJson(Appendable out) throws IOException {
+        out.append("[\n");
+        for (int i = 0; i < points.size(); i++) {
+            Point p = points.get(i);
+            CacheConfig c = p.config;
+            out.append(String.format(Locale.ROOT,
+                    "  {\"lines\": %d, \"block_size\": %d, \"ways\": %d, \"sets\": %d, \"policy\": \"%s\", "
+                            + "\"accesses\": %d, \"hits\": %d, \"misses\": %d, \"miss_ratio\": %.6f}%s%n",
+                    c.lines(), p.blockSize, c.ways(), c.sets(), policyName(c), p.accesses, p.hits, p.misses(),
+                    p.misses() / (double) Math.max(p.accesses, 1), i + 1 < points.size() ? "," : ""));
+        }
+        out.append("]\n");
+    }
+
+    private static String policyName(CacheConfig config) {
+        return config.isDirectMapped() ? "direct" : config.policy().name().toLowerCase(Locale.ROOT);
+    }
+}
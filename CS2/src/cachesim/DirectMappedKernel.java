@@ -0,0 +1,79 @@
+package cachesim;
+
+// Batch lookup for a direct-mapped cache with a power-of-two number of sets on the heap tag store
+// and nothing attached (no victim cache, prefetcher or listeners): CacheSimulator hands read-only
+// batches to it instead of calling access() per block. It works on the store's arrays directly
+// and leaves the counters to the caller: run() returns the hits and sets writebacks, evicted and
+// evictedDirty as the same accesses one by one would have. The tests check it against access()
+// on randomized batches (KernelCheck under CS2/test).
+//
+// There is only this scalar loop. A jdk.incubator.vector kernel was tried and measured slower on
+// JDK 17: the stored tags of each vector's sets still had to be loaded one by one, and a vector
+// with two accesses in one set had to be rerun by this loop, so it was dropped.
+final class DirectMappedKernel {
+    final long[] tags;
+    final long[] valid;
+    final long[] dirty;
+    final int setBits;
+    final long setMask;
+    long writebacks;
+    long evicted; // As CacheSimulator.lastEvicted() and hasEvicted(); in and out
+    boolean hasEvicted;
+    boolean evictedDirty;
+
+    DirectMappedKernel(HeapTagStore store, int setBits) {
+        this.tags = store.tags();
+        this.valid = store.validWords();
+        this.dirty = store.dirtyWords();
+        this.setBits = setBits;
+        this.setMask = (1L << setBits) - 1;
+    }
+
+    // Simulates blocks[off, off + len) as reads and returns the number of hits
+    int run(long[] blocks, int off, int len) {
+        long[] tags = this.tags;
+        long[] valid = this.valid;
+        long mask = setMask;
+        int shift = setBits;
+        int hits = 0;
+        for (int i = off, end = off + len; i < end; i++) {
+            long block = blocks[i];
+            int set = (int) (block & mask);
+            long tag = block >> shift;
+            if (tags[set] == tag && (valid[set >>> 6] & (1L << set)) != 0) {
+                hits++;
+                evicted = -1;
+                hasEvicted = false;
+            } else {
+                fill(set, tag);
+            }
+        }
+        return hits;
+    }
+
+    // A miss: the block replaces whatever the set held, which is written back if dirty
+    private void fill(int set, long tag) {
+        int word = set >>> 6;
+        long bit = 1L << set;
+        if ((valid[word] & bit) != 0) {
+            evicted = (tags[set] << setBits) | set;
+            hasEvicted = true;
+            evictedDirty = (dirty[word] & bit) != 0;
+            if (evictedDirty) {
+                writebacks++;
+                dirty[word] &= ~bit;
+            }
+        } else {
+            evicted = -1;
+            hasEvicted = false;
+            evictedDirty = false;
+            valid[word] |= bit;
+        }
+        tags[set] = tag;
+    }
+
+    // Shown by BatchRunner
+    String describe() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,90 @@
+package cachesim;
+
+import java.util.Arrays;
+
+// Struct-of-arrays tag store on the Java heap: valid and dirty bits packed 64 per long, tags in a long[]
+final class HeapTagStore implements TagStore {
+    static final int MAX_LINES = Integer.MAX_VALUE - 8; // Largest long[] most JVMs allocate
+    private final int lines;
+    private final long[] valid;
+    private final long[] dirty;
+    private final long[] tags;
+
+    HeapTagStore(int lines) {
+        if (lines <= 0 || lines > MAX_LINES) {
+            throw new IllegalArgumentException("Cache must have between 1 and " + MAX_LINES + " lines: " + lines);
+        }
+        this.lines = lines;
+        this.valid = new long[(lines + 63) >>> 6];
+        this.dirty = new long[valid.length];
+        this.tags = new long[lines];
+    }
+
+    @Override
+    public int size() {
+        return lines;
+    }
+
+    @Override
+    public boolean isValid(int line) {
+        return (valid[line >>> 6] & (1L << line)) != 0;
+    }
+
+    @Override
+    public long tag(int line) {
+        return tags[line];
+    }
+
+    @Override
+    public int find(int first, int count, long tag) {
+        long[] tags = this.tags;
+        for (int line = first, end = first + count; line < end; line++) {
+            if (tags[line] == tag && (valid[line >>> 6] & (1L << line)) != 0) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void fill(int line, long tag) {
+        valid[line >>> 6] |= 1L << line;
+        dirty[line >>> 6] &= ~(1L << line);
+        tags[line] = tag;
+    }
+
+    @Override
+    public void invalidate(int line) {
+        valid[line >>> 6] &= ~(1L << line);
+        dirty[line >>> 6] &= ~(1L << line);
+    }
+
+    @Override
+    public boolean isDirty(int line) {
+        return (dirty[line >>> 6] & (1L << line)) != 0;
+    }
+
+    @Override
+    public void setDirty(int line) {
+        dirty[line >>> 6] |= 1L << line;
+    }
+
+    // The backing arrays, for DirectMappedKernel
+    long[] tags() {
+        return tags;
+    }
+
+    long[] validWords() {
+        return valid;
+    }
+
+    long[] dirtyWords() {
+        return dirty;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(valid, 0L);
+        Arrays.fill(dirty, 0L);
+    }
+}
@@ -0,0 +1,13 @@
+package cachesim;
+
+// How the contents of a level relate to the levels above it in a CacheHierarchy
+public enum InclusionPolicy {
+    INCLUSIVE, // Every block above is also below; evicting below back-invalidates the levels above
+    EXCLUSIVE, // A block lives in one level only; fills go to L1 and victims move down a level
+    NINE;      // Non-inclusive non-exclusive: every level that missed is filled, evictions are independent
+
+    // Accepts names case-insensitively, e.g. "nine" or "exclusive"
+    public static InclusionPolicy parse(String name) {
+        return valueOf(name.trim().toUpperCase(java.util.Locale.ROOT));
+    }
+}
@@ -0,0 +1,406 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Simulates access streams sent by local clients over TCP loopback or a Unix domain socket, so an
+// instrumentation tool can feed the model directly instead of writing a trace file first.
+// A session:
+//   client  one line of cache options as BatchRunner takes them (e.g. "--lines 4096 --ways 8"),
+//           --report N for a progress line every N accesses, then a binary trace ("CTRC" header,
+//           8-byte little-endian records, see BinaryTraceReader) until it shuts down its output
+//   server  "ok <cache>" or "error <message>", progress lines while the stream runs and a final
+//           "done" line, then it closes the connection
+// Each session has a reader thread that decodes the socket into batches and a simulation thread,
+// joined by a bounded queue of recycled batches. When the cache falls behind, the reader blocks
+// waiting for a free batch and stops reading, the socket's receive window fills and the client's
+// writes block: the sender is held to the simulator's pace instead of being buffered without
+// limit. The time the reader spends blocked is reported as stall time. At most maxSessions run at
+// once; clients beyond that get an error and are disconnected.
+public final class IngestServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+    static final int BATCH_ACCESSES = 8192;
+    private static final int BUFFER_BYTES = BATCH_ACCESSES * BinaryTraceReader.RECORD_BYTES;
+    private static final int MAX_OPTION_BYTES = 4096;
+
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final int queueBatches;
+    private final Semaphore slots;
+    private final int maxSessions;
+    private final ExecutorService threads;
+    private final Appendable log;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final AtomicLong sessions = new AtomicLong();
+    private final AtomicLong accesses = new AtomicLong();
+
+    // queueBatches batches of BATCH_ACCESSES accesses may wait between a session's reader and its
+    // cache; log receives one line per session start and end
+    public IngestServer(SocketAddress address, int maxSessions, int queueBatches, Appendable log) throws IOException {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("Sessions must be positive: " + maxSessions);
+        }
+        if (queueBatches < 1) {
+            throw new IllegalArgumentException("Queue must hold at least one batch: " + queueBatches);
+        }
+        this.maxSessions = maxSessions;
+        this.queueBatches = queueBatches;
+        this.slots = new Semaphore(maxSessions);
+        this.log = log;
+        server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            this.address = server.getLocalAddress();
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        threads = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "ingest-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Port 0 picks a free port; see address()
+    public static SocketAddress loopback(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public static SocketAddress unixSocket(Path path) {
+        return UnixDomainSocketAddress.of(path);
+    }
+
+    // Accepts clients on a background thread until close()
+    public void start() {
+        Thread acceptor = new Thread(this::acceptLoop, "ingest-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    private void acceptLoop() {
+        while (server.isOpen()) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log("accept failed: " + e.getMessage());
+                continue;
+            }
+            if (!slots.tryAcquire()) {
+                try (client) {
+                    reply(client, "error server busy: " + maxSessions + " sessions running");
+                } catch (IOException ignored) {
+                    // The client is gone already
+                }
+                continue;
+            }
+            threads.execute(new Session(sessions.incrementAndGet(), client));
+        }
+    }
+
+    public SocketAddress address() {
+        return address;
+    }
+
+    public long sessionsAccepted() {
+        return sessions.get();
+    }
+
+    public int activeSessions() {
+        return maxSessions - slots.availablePermits();
+    }
+
+    // Accesses simulated over all sessions
+    public long accessesIngested() {
+        return accesses.get();
+    }
+
+    // Stops accepting and interrupts the running sessions, whose connections are closed
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+            threads.shutdownNow();
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        } finally {
+            closed.countDown();
+        }
+    }
+
+    private void log(String line) {
+        if (log == null) {
+            return;
+        }
+        synchronized (log) {
+            try {
+                log.append(line).append(System.lineSeparator());
+            } catch (IOException ignored) {
+                // Logging is best effort
+            }
+        }
+    }
+
+    private static void reply(SocketChannel channel, String line) throws IOException {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(line + "\n");
+        synchronized (channel) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    static String counts(CacheSimulator simulator) {
+        return String.format(Locale.ROOT, "accesses=%d hits=%d misses=%d hit_rate=%.6f", simulator.getAccessCount(),
+                simulator.getHitCount(), simulator.getMissCount(),
+                simulator.getHitCount() / (double) Math.max(simulator.getAccessCount(), 1));
+    }
+
+    private final class Session implements Runnable {
+        private final long id;
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        // One slot more than there are batches, so the end marker always fits
+        private final BlockingQueue<AccessBatch> full = new ArrayBlockingQueue<>(queueBatches + 1);
+        private final BlockingQueue<AccessBatch> empty = new ArrayBlockingQueue<>(queueBatches);
+        private long stalls = 0; // Batches the reader had to wait for
+        private long stallNanos = 0;
+        private volatile String simulationFailure;
+
+        Session(long id, SocketChannel channel) {
+            this.id = id;
+            this.channel = channel;
+            in.flip();
+            for (int i = 0; i < queueBatches; i++) {
+                empty.add(new AccessBatch(BATCH_ACCESSES));
+            }
+        }
+
+        @Override
+        public void run() {
+            try (channel) {
+                serve();
+            } catch (IOException e) {
+                log("session " + id + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                slots.release();
+            }
+        }
+
+        private void serve() throws IOException, InterruptedException {
+            BatchRunner.Options options;
+            CacheSimulator simulator;
+            try {
+                String line = readOptionLine();
+                options = new BatchRunner.Options(line.isEmpty() ? new String[0] : line.split("\\s+"), 0);
+                if (!options.files.isEmpty()) {
+                    throw new IllegalArgumentException("Unexpected argument: " + options.files.get(0));
+                }
+                simulator = new CacheSimulator(options.config());
+                options.attachPrefetcher(simulator);
+            } catch (IllegalArgumentException e) {
+                refuse(e.getMessage());
+                return;
+            }
+            reply(channel, "ok " + simulator.getConfig().describe());
+            log("session " + id + ": " + simulator.getConfig().describe());
+
+            boolean flagged;
+            try {
+                flagged = readTraceHeader();
+            } catch (IllegalArgumentException e) {
+                refuse(e.getMessage());
+                return;
+            }
+            long start = System.nanoTime();
+            Future<?> simulation = threads.submit(() -> {
+                simulate(simulator, options);
+                return null;
+            });
+            String failure = null;
+            try {
+                readBatches(flagged);
+            } catch (IOException e) {
+                failure = e.getMessage();
+            } finally {
+                AccessBatch end = new AccessBatch(1);
+                end.size = 0;
+                full.put(end);
+            }
+            try {
+                simulation.get();
+            } catch (ExecutionException e) {
+                failure = String.valueOf(e.getCause());
+            }
+            if (failure == null) {
+                failure = simulationFailure;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long n = simulator.getAccessCount();
+            accesses.addAndGet(n);
+            if (failure != null) {
+                log("session " + id + ": failed after " + n + " accesses: " + failure);
+                try {
+                    reply(channel, "error " + failure);
+                } catch (IOException ignored) {
+                    // The connection is what failed
+                }
+                return;
+            }
+            String summary = String.format(Locale.ROOT, "%s writebacks=%d bytes_read=%d bytes_written=%d "
+                            + "seconds=%.3f accesses_per_s=%.0f stalls=%d stall_seconds=%.3f", counts(simulator),
+                    simulator.getWritebackCount(), simulator.getBytesRead(), simulator.getBytesWritten(), seconds,
+                    n / Math.max(seconds, 1e-9), stalls, stallNanos / 1e9);
+            reply(channel, "done " + summary);
+            log("session " + id + ": done " + summary);
+        }
+
+        private void refuse(String message) throws IOException {
+            log("session " + id + ": refused: " + message);
+            reply(channel, "error " + message);
+        }
+
+        // Hands the socket's records to the simulation thread one read at a time, so a slow live
+        // feed is simulated as it arrives rather than once a batch fills up
+        private void readBatches(boolean flagged) throws IOException, InterruptedException {
+            while (true) {
+                AccessBatch batch = empty.poll();
+                if (batch == null) {
+                    long waited = System.nanoTime();
+                    batch = empty.take();
+                    stalls++;
+                    stallNanos += System.nanoTime() - waited;
+                }
+                batch.size = 0;
+                batch.clearWrites();
+                if (!fill(BinaryTraceReader.RECORD_BYTES)) {
+                    if (in.hasRemaining()) {
+                        throw new IOException("Stream ends inside a record");
+                    }
+                    empty.put(batch);
+                    return;
+                }
+                int n = Math.min(in.remaining() / BinaryTraceReader.RECORD_BYTES, batch.addresses.length);
+                in.asLongBuffer().get(batch.addresses, 0, n);
+                in.position(in.position() + n * BinaryTraceReader.RECORD_BYTES);
+                batch.size = n;
+                if (flagged) {
+                    BinaryTraceReader.decodeFlags(batch, 0);
+                }
+                full.put(batch);
+            }
+        }
+
+        // Runs until the end marker. After a failure it keeps handing batches back unsimulated,
+        // so the reader never waits for a batch that will not come.
+        private void simulate(CacheSimulator simulator, BatchRunner.Options options) throws InterruptedException {
+            AddressMapping mapping = options.lineSize > 0 ? AddressMapping.of(simulator.getConfig()) : null;
+            long next = options.report > 0 ? options.report : Long.MAX_VALUE;
+            while (true) {
+                AccessBatch batch = full.take();
+                if (batch.size == 0) {
+                    return;
+                }
+                if (simulationFailure == null) {
+                    try {
+                        if (mapping != null) {
+                            mapping.toBlocks(batch);
+                        }
+                        simulator.accessAll(batch);
+                        if (simulator.getAccessCount() >= next) {
+                            reply(channel, "progress " + counts(simulator));
+                            next = simulator.getAccessCount() + options.report;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        simulationFailure = String.valueOf(e);
+                    }
+                }
+                empty.put(batch);
+            }
+        }
+
+        // Reads until at least `bytes` are buffered; false if the client ends its stream first
+        private boolean fill(int bytes) throws IOException {
+            while (in.remaining() < bytes) {
+                in.compact();
+                int n = channel.read(in);
+                in.flip();
+                if (n < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String readOptionLine() throws IOException {
+            byte[] line = new byte[MAX_OPTION_BYTES];
+            int length = 0;
+            while (true) {
+                if (!fill(1)) {
+                    throw new IOException("Connection closed before the option line");
+                }
+                while (in.hasRemaining()) {
+                    byte b = in.get();
+                    if (b == '\n') {
+                        return new String(line, 0, length, StandardCharsets.UTF_8).trim();
+                    }
+                    if (length == line.length) {
+                        throw new IllegalArgumentException("Option line longer than " + MAX_OPTION_BYTES + " bytes");
+                    }
+                    line[length++] = b;
+                }
+            }
+        }
+
+        // True for version 2 streams, whose records carry the write flag
+        private boolean readTraceHeader() throws IOException {
+            if (!fill(BinaryTraceReader.HEADER_BYTES)) {
+                throw new IllegalArgumentException("Stream ends before the trace header");
+            }
+            byte[] head = new byte[BinaryTraceReader.HEADER_BYTES];
+            in.get(head);
+            if (!BinaryTraceReader.hasMagic(head)) {
+                throw new IllegalArgumentException("Not a binary trace stream");
+            }
+            if (head[4] != 1 && head[4] != BinaryTraceReader.VERSION) {
+                throw new IllegalArgumentException("Unsupported binary trace version " + head[4]);
+            }
+            return head[4] == BinaryTraceReader.VERSION;
+        }
+    }
+}
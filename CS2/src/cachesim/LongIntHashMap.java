@@ -0,0 +1,154 @@
+package cachesim;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+// Open-addressing long -> int map with linear probing and backward-shift deletion.
+// Sized for an expected population up front; it doubles only if that estimate is exceeded,
+// so a map sized for a known maximum never rehashes on the hot path.
+final class LongIntHashMap {
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int size = 0;
+
+    LongIntHashMap(int expectedEntries) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedEntries) * 2 - 1) << 1; // load factor <= 0.5
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key) {
+        for (int slot = slot(key); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return MISSING;
+    }
+
+    // Returns the previous value, or MISSING
+    int put(long key, int value) {
+        int slot = slot(key);
+        for (; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > used.length) {
+            rehash(used.length << 1);
+        }
+        return MISSING;
+    }
+
+    // Returns the removed value, or MISSING
+    int remove(long key) {
+        int slot = slot(key);
+        for (; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                int removed = values[slot];
+                shiftBack(slot);
+                size--;
+                return removed;
+            }
+        }
+        return MISSING;
+    }
+
+    // Copies the current values, in no particular order
+    int[] values() {
+        int[] out = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                out[n++] = values[slot];
+            }
+        }
+        return out;
+    }
+
+    // Copies the current keys, in no particular order
+    long[] keys() {
+        long[] out = new long[size];
+        int n = 0;
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                out[n++] = keys[slot];
+            }
+        }
+        return out;
+    }
+
+    void replaceValues(IntUnaryOperator mapping) {
+        for (int slot = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                values[slot] = mapping.applyAsInt(values[slot]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slot(oldKeys[i]);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Refills the hole at gap with later entries of the same probe run
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (!used[slot]) {
+                used[gap] = false;
+                return;
+            }
+            int home = slot(keys[slot]);
+            // Move the entry back unless its home lies cyclically in (gap, slot]
+            boolean stays = gap <= slot ? (gap < home && home <= slot) : (gap < home || home <= slot);
+            if (!stays) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
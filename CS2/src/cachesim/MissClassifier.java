@@ -0,0 +1,180 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Classifies every miss of the cache it listens to with the three Cs:
+//   compulsory - the block was never accessed before,
+//   capacity   - a fully-associative LRU cache of the same size would also have missed,
+//   conflict   - it would have hit, so the miss is down to the mapping and replacement policy.
+// One primitive map does both jobs: it holds the shadow LRU's node for resident blocks and
+// NOT_RESIDENT for blocks seen before but since evicted. The shadow LRU is a doubly linked list
+// in int arrays, so every access costs one map probe and O(1) list updates.
+public final class MissClassifier implements AccessListener {
+    private static final int NOT_RESIDENT = -2;
+    private static final int NONE = -1;
+
+    private final CacheSimulator cache;
+    private final int capacity;
+    private final LongIntHashMap seen; // Block -> shadow node, or NOT_RESIDENT
+    private final long[] nodeBlock;
+    private final int[] prev;
+    private final int[] next;
+    private int head = NONE; // Most recently used
+    private int tail = NONE; // Least recently used
+    private int used = 0; // Shadow nodes handed out
+    private final long[] compulsory; // Per cache index (set)
+    private final long[] capacityMisses;
+    private final long[] conflict;
+    private long compulsoryTotal = 0;
+    private long capacityTotal = 0;
+    private long conflictTotal = 0;
+
+    public MissClassifier(CacheSimulator cache) {
+        this.cache = cache;
+        this.capacity = cache.getLines();
+        this.seen = new LongIntHashMap(capacity);
+        this.nodeBlock = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        int sets = cache.getSets();
+        this.compulsory = new long[sets];
+        this.capacityMisses = new long[sets];
+        this.conflict = new long[sets];
+    }
+
+    @Override
+    public void onAccess(long blockNumber, int line, boolean hit) {
+        int node = seen.get(blockNumber);
+        if (!hit) {
+            int set = cache.setIndex(blockNumber);
+            if (node == LongIntHashMap.MISSING) {
+                compulsory[set]++;
+                compulsoryTotal++;
+            } else if (node == NOT_RESIDENT) {
+                capacityMisses[set]++;
+                capacityTotal++;
+            } else {
+                conflict[set]++;
+                conflictTotal++;
+            }
+        }
+        if (node >= 0) {
+            moveToFront(node);
+        } else {
+            insert(blockNumber);
+        }
+    }
+
+    @Override
+    public void onReset() {
+        seen.clear();
+        head = NONE;
+        tail = NONE;
+        used = 0;
+        Arrays.fill(compulsory, 0L);
+        Arrays.fill(capacityMisses, 0L);
+        Arrays.fill(conflict, 0L);
+        compulsoryTotal = 0;
+        capacityTotal = 0;
+        conflictTotal = 0;
+    }
+
+    private void moveToFront(int node) {
+        if (node == head) {
+            return;
+        }
+        unlink(node);
+        linkFront(node);
+    }
+
+    // Makes the block the shadow's most recent entry, evicting the least recent one when full
+    private void insert(long blockNumber) {
+        int node;
+        if (used < capacity) {
+            node = used++;
+        } else {
+            node = tail;
+            unlink(node);
+            seen.put(nodeBlock[node], NOT_RESIDENT);
+        }
+        nodeBlock[node] = blockNumber;
+        seen.put(blockNumber, node);
+        linkFront(node);
+    }
+
+    private void unlink(int node) {
+        int before = prev[node];
+        int after = next[node];
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+
+    private void linkFront(int node) {
+        prev[node] = NONE;
+        next[node] = head;
+        if (head != NONE) {
+            prev[head] = node;
+        }
+        head = node;
+        if (tail == NONE) {
+            tail = node;
+        }
+    }
+
+    public long compulsory() {
+        return compulsoryTotal;
+    }
+
+    public long capacity() {
+        return capacityTotal;
+    }
+
+    public long conflict() {
+        return conflictTotal;
+    }
+
+    public long misses() {
+        return compulsoryTotal + capacityTotal + conflictTotal;
+    }
+
+    // Distinct blocks accessed so far
+    public long distinctBlocks() {
+        return seen.size();
+    }
+
+    public int sets() {
+        return compulsory.length;
+    }
+
+    public long compulsoryAt(int set) {
+        return compulsory[set];
+    }
+
+    public long capacityAt(int set) {
+        return capacityMisses[set];
+    }
+
+    public long conflictAt(int set) {
+        return conflict[set];
+    }
+
+    // CSV: one row per cache index with its compulsory, capacity and conflict misses
+    public void writeSetBreakdown(Appendable out) throws IOException {
+        out.append("set,compulsory,capacity,conflict\n");
+        for (int set = 0; set < compulsory.length; set++) {
+            out.append(Integer.toString(set)).append(',')
+                    .append(Long.toString(compulsory[set])).append(',')
+                    .append(Long.toString(capacityMisses[set])).append(',')
+                    .append(Long.toString(conflict[set])).append('\n');
+        }
+    }
+}
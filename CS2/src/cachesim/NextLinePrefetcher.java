@@ -0,0 +1,41 @@
+package cachesim;
+
+// Tagged next-line prefetcher: a miss, or the first hit on a prefetched line, fetches the next
+// depth blocks. The tag keeps a sequential run going one step ahead of the demand stream.
+public final class NextLinePrefetcher implements Prefetcher {
+    private final int depth;
+
+    public NextLinePrefetcher(int depth) {
+        this.depth = Prefetcher.checkDepth(depth);
+    }
+
+    @Override
+    public int onAccess(long blockNumber, boolean hit, boolean prefetchHit, long[] out) {
+        if (hit && !prefetchHit) {
+            return 0;
+        }
+        for (int i = 0; i < depth; i++) {
+            out[i] = blockNumber + 1 + i;
+        }
+        return depth;
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public String name() {
+        return "next-line";
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public String describe() {
+        return "next-line, depth " + depth;
+    }
+}
@@ -0,0 +1,85 @@
+package cachesim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Tag store backed by direct memory so very large caches stay out of the GC's way.
+// Layout: the valid bitset (one long per 64 lines), the dirty bitset of the same size, then
+// one 8-byte tag per line.
+final class OffHeapTagStore implements TagStore {
+    // Direct buffers are int-indexed, so the store is capped at 2^27 lines (1 GiB of tags)
+    static final int MAX_LINES = 1 << 27;
+
+    private final int lines;
+    private final int dirtyBase;
+    private final int tagBase;
+    private final ByteBuffer memory;
+
+    OffHeapTagStore(int lines) {
+        if (lines <= 0 || lines > MAX_LINES) {
+            throw new IllegalArgumentException("Off-heap cache must have between 1 and " + MAX_LINES + " lines: " + lines);
+        }
+        this.lines = lines;
+        this.dirtyBase = ((lines + 63) >>> 6) << 3;
+        this.tagBase = dirtyBase << 1;
+        this.memory = ByteBuffer.allocateDirect(tagBase + (lines << 3)).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int size() {
+        return lines;
+    }
+
+    @Override
+    public boolean isValid(int line) {
+        return (memory.getLong((line >>> 6) << 3) & (1L << line)) != 0;
+    }
+
+    @Override
+    public long tag(int line) {
+        return memory.getLong(tagBase + (line << 3));
+    }
+
+    @Override
+    public int find(int first, int count, long tag) {
+        for (int line = first, end = first + count; line < end; line++) {
+            if (memory.getLong(tagBase + (line << 3)) == tag && isValid(line)) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void fill(int line, long tag) {
+        int word = (line >>> 6) << 3;
+        memory.putLong(word, memory.getLong(word) | (1L << line));
+        memory.putLong(dirtyBase + word, memory.getLong(dirtyBase + word) & ~(1L << line));
+        memory.putLong(tagBase + (line << 3), tag);
+    }
+
+    @Override
+    public void invalidate(int line) {
+        int word = (line >>> 6) << 3;
+        memory.putLong(word, memory.getLong(word) & ~(1L << line));
+        memory.putLong(dirtyBase + word, memory.getLong(dirtyBase + word) & ~(1L << line));
+    }
+
+    @Override
+    public boolean isDirty(int line) {
+        return (memory.getLong(dirtyBase + ((line >>> 6) << 3)) & (1L << line)) != 0;
+    }
+
+    @Override
+    public void setDirty(int line) {
+        int word = dirtyBase + ((line >>> 6) << 3);
+        memory.putLong(word, memory.getLong(word) | (1L << line));
+    }
+
+    @Override
+    public void clear() {
+        for (int word = 0; word < tagBase; word += 8) {
+            memory.putLong(word, 0L);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Simulates one large trace on several cores with exactly the sequential result. Sets never
+// interact, so the sets are dealt round-robin to P partitions (set s belongs to partition
+// s mod P) and each partition runs its own smaller simulator over the accesses of its sets,
+// in their original order.
+//
+// Every batch goes through two parallel phases with no locks: P scatter tasks each split one
+// slice of the batch into P private buckets, then P simulate tasks each replay their column of
+// buckets slice by slice. The next batch is read while the current one is processed.
+// The RANDOM policy draws from one stream per partition, so only its exact victims differ
+// from a single-threaded run. Write flags go in a bitset beside each bucket, as in AccessBatch,
+// since any bit of a block number can be set.
+// A victim cache is shared by every set, so a configuration with one runs as a single partition.
+public final class PartitionedSimulator {
+    private static final int BATCH_SIZE = 1 << 18;
+
+    private final CacheConfig config;
+    private final ForkJoinPool pool;
+    private final int partitions;
+    private final int sets;
+    private final int setBits; // log2(sets) when sets is a power of two, otherwise -1, as in CacheSimulator
+    private final CacheSimulator[] shards;
+    private final long[][] shardSetMisses; // [partition][local set]
+    private final long[][] shardSetAccesses;
+    private final long[][][] buckets; // [slice][partition][i], local block numbers
+    private final long[][][] bucketWrites; // [slice][partition][i / 64], one bit per access
+    private final int[][] bucketSizes; // [slice][partition]
+    private final boolean[] sliceWrites; // Whether a slice's batch had any writes
+
+    // The partition count is the largest divisor of the number of sets not above parallelism
+    public PartitionedSimulator(CacheConfig config, ForkJoinPool pool, int parallelism) {
+        this.config = config;
+        this.pool = pool;
+        this.partitions = config.victimEntries() > 0 ? 1 : largestDivisorAtMost(config.sets(), Math.max(1, parallelism));
+        this.sets = config.sets();
+        this.setBits = Integer.bitCount(sets) == 1 ? Integer.numberOfTrailingZeros(sets) : -1;
+        CacheConfig shardConfig = CacheConfig.setAssociative(config.lines() / partitions, config.ways(), config.policy())
+                .withOffHeap(config.offHeap())
+                .withWritePolicy(config.writePolicy())
+                .withWriteAllocate(config.writeAllocate())
+                .withBlockBytes(config.blockBytes())
+                .withVictimEntries(config.victimEntries());
+        int localSets = config.sets() / partitions;
+        this.shards = new CacheSimulator[partitions];
+        this.shardSetMisses = new long[partitions][localSets];
+        this.shardSetAccesses = new long[partitions][localSets];
+        for (int p = 0; p < partitions; p++) {
+            shards[p] = new CacheSimulator(shardConfig.withSeed(config.seed() + p));
+        }
+        int slice = (BATCH_SIZE + partitions - 1) / partitions;
+        this.buckets = new long[partitions][partitions][slice];
+        this.bucketWrites = new long[partitions][partitions][(slice + 63) >>> 6];
+        this.bucketSizes = new int[partitions][partitions];
+        this.sliceWrites = new boolean[partitions];
+    }
+
+    public void run(AccessSource source) throws IOException {
+        AccessBatch current = new AccessBatch(BATCH_SIZE);
+        AccessBatch next = new AccessBatch(BATCH_SIZE);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+
+        source.read(current);
+        while (current.size > 0) {
+            AccessBatch batch = current;
+            ForkJoinTask<?> work = pool.submit(() -> process(batch, tasks));
+            source.read(next);
+            work.join();
+            AccessBatch swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    private void process(AccessBatch batch, List<ForkJoinTask<?>> tasks) {
+        int slice = buckets[0][0].length;
+        tasks.clear();
+        for (int s = 0; s < partitions; s++) {
+            int from = Math.min(s * slice, batch.size);
+            int to = Math.min(from + slice, batch.size);
+            int sliceIndex = s;
+            tasks.add(ForkJoinTask.adapt(() -> scatter(batch, from, to, sliceIndex)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        tasks.clear();
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            tasks.add(ForkJoinTask.adapt(() -> simulate(partition)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    // Splits batch[from, to) into this slice's buckets, rewriting each block number for the
+    // partition's simulator: same tag, local set = set / partitions. Set and tag are decoded for
+    // the full geometry the way CacheSimulator.setIndex and tagOf do.
+    private void scatter(AccessBatch batch, int from, int to, int slice) {
+        long[] blocks = batch.addresses;
+        long[][] out = buckets[slice];
+        long[][] writes = bucketWrites[slice];
+        int[] sizes = bucketSizes[slice];
+        Arrays.fill(sizes, 0);
+        boolean anyWrites = batch.anyWrites;
+        sliceWrites[slice] = anyWrites;
+        if (anyWrites) {
+            for (long[] words : writes) {
+                Arrays.fill(words, 0L);
+            }
+        }
+        int localSets = config.sets() / partitions;
+        for (int i = from; i < to; i++) {
+            long block = blocks[i];
+            int set;
+            long tag;
+            if (setBits >= 0) {
+                set = (int) (block & (sets - 1));
+                tag = block >> setBits;
+            } else {
+                set = (int) Math.floorMod(block, (long) sets);
+                tag = Math.floorDiv(block, (long) sets);
+            }
+            int partition = set % partitions;
+            int k = sizes[partition]++;
+            out[partition][k] = tag * localSets + set / partitions;
+            if (anyWrites && batch.isWrite(i)) {
+                writes[partition][k >>> 6] |= 1L << k;
+            }
+        }
+    }
+
+    private void simulate(int partition) {
+        CacheSimulator shard = shards[partition];
+        long[] setMisses = shardSetMisses[partition];
+        long[] setAccesses = shardSetAccesses[partition];
+        for (int slice = 0; slice < partitions; slice++) {
+            long[] blocks = buckets[slice][partition];
+            long[] writes = bucketWrites[slice][partition];
+            boolean anyWrites = sliceWrites[slice];
+            int n = bucketSizes[slice][partition];
+            for (int i = 0; i < n; i++) {
+                long block = blocks[i];
+                int localSet = shard.setIndex(block);
+                setAccesses[localSet]++;
+                if (!shard.access(block, anyWrites && (writes[i >>> 6] & (1L << i)) != 0)) {
+                    setMisses[localSet]++;
+                }
+            }
+        }
+    }
+
+    public CacheConfig config() {
+        return config;
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public long accesses() {
+        long total = 0;
+        for (CacheSimulator shard : shards) {
+            total += shard.getAccessCount();
+        }
+        return total;
+    }
+
+    public long hits() {
+        long total = 0;
+        for (CacheSimulator shard : shards) {
+            total += shard.getHitCount();
+        }
+        return total;
+    }
+
+    public long misses() {
+        return accesses() - hits();
+    }
+
+    public long setAccesses(int set) {
+        return shardSetAccesses[set % partitions][set / partitions];
+    }
+
+    public long setMisses(int set) {
+        return shardSetMisses[set % partitions][set / partitions];
+    }
+
+    // Per-set counts as CSV, in set order
+    public void writeSetStats(Appendable out) throws IOException {
+        out.append("set,accesses,misses,miss_ratio\n");
+        for (int set = 0; set < config.sets(); set++) {
+            long accesses = setAccesses(set);
+            long misses = setMisses(set);
+            out.append(String.format(Locale.ROOT, "%d,%d,%d,%.6f\n", set, accesses, misses, misses / (double) Math.max(accesses, 1)));
+        }
+    }
+
+    static int largestDivisorAtMost(int n, int limit) {
+        for (int d = Math.min(n, limit); d > 1; d--) {
+            if (n % d == 0) {
+                return d;
+            }
+        }
+        return 1;
+    }
+}
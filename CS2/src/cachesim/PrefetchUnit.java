@@ -0,0 +1,192 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// A prefetcher attached to one CacheSimulator, plus the bookkeeping that judges it. Lines filled
+// by a prefetch are tagged until their first demand hit (useful) or their eviction (useless).
+//   accuracy    = useful / issued
+//   coverage    = useful / (useful + demand misses), the share of would-be misses removed
+//   timeliness  = share of useful prefetches that had arrived when demand hit them; a prefetch
+//                 arrives latency accesses after it is issued (0 = immediately)
+//   pollution   = demand misses on blocks a prefetch fill had evicted, tracked in a direct-mapped
+//                 filter of recent prefetch victims (a collision can drop one, so it is a floor)
+public final class PrefetchUnit {
+    private final Prefetcher prefetcher;
+    private final int latency;
+    private final long[] tagged; // Lines holding a prefetched block not yet used
+    private final long[] readyAt; // Access count at which each prefetched line arrives
+    private final long[] victims; // Pollution filter: blocks evicted by prefetch fills, or -1
+    private final int victimMask;
+    private final long[] candidates = new long[Prefetcher.MAX_DEPTH];
+    private long issued = 0;
+    private long redundant = 0; // Candidates already in the cache
+    private long useful = 0;
+    private long late = 0;
+    private long unused = 0; // Prefetched lines evicted or invalidated before any use
+    private long demandMisses = 0;
+    private long pollution = 0;
+
+    PrefetchUnit(Prefetcher prefetcher, int lines, int latency) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("Prefetch latency must not be negative: " + latency);
+        }
+        this.prefetcher = prefetcher;
+        this.latency = latency;
+        this.tagged = new long[(lines + 63) >>> 6];
+        this.readyAt = new long[lines];
+        this.victims = new long[Integer.highestOneBit(lines * 2 - 1)];
+        this.victimMask = victims.length - 1;
+        Arrays.fill(victims, -1L);
+    }
+
+    // Scores the demand access, then lets the prefetcher issue its candidates through the cache
+    void afterDemand(CacheSimulator cache, long blockNumber, int line, boolean hit, long now) {
+        boolean prefetchHit = false;
+        if (hit) {
+            if ((tagged[line >>> 6] & (1L << line)) != 0) {
+                tagged[line >>> 6] &= ~(1L << line);
+                useful++;
+                if (now < readyAt[line]) {
+                    late++;
+                }
+                prefetchHit = true;
+            }
+        } else {
+            demandMisses++;
+            int slot = victimSlot(blockNumber);
+            if (victims[slot] == blockNumber) {
+                pollution++;
+                victims[slot] = -1;
+            }
+        }
+        int n = prefetcher.onAccess(blockNumber, hit, prefetchHit, candidates);
+        for (int i = 0; i < n; i++) {
+            if (candidates[i] >= 0) {
+                cache.prefetch(candidates[i]);
+            }
+        }
+    }
+
+    // A line is about to be refilled or invalidated
+    void replaced(int line) {
+        if ((tagged[line >>> 6] & (1L << line)) != 0) {
+            tagged[line >>> 6] &= ~(1L << line);
+            unused++;
+        }
+    }
+
+    void alreadyCached() {
+        redundant++;
+    }
+
+    // The cache filled blockNumber into line for a prefetch, displacing victim if displaced
+    void filled(long blockNumber, int line, boolean displaced, long victim, long now) {
+        issued++;
+        tagged[line >>> 6] |= 1L << line;
+        readyAt[line] = now + latency;
+        int slot = victimSlot(blockNumber);
+        if (victims[slot] == blockNumber) {
+            victims[slot] = -1;
+        }
+        if (displaced) {
+            victims[victimSlot(victim)] = victim;
+        }
+    }
+
+    void reset() {
+        prefetcher.reset();
+        Arrays.fill(tagged, 0L);
+        Arrays.fill(victims, -1L);
+        clearCounters();
+    }
+
+    void clearCounters() {
+        issued = 0;
+        redundant = 0;
+        useful = 0;
+        late = 0;
+        unused = 0;
+        demandMisses = 0;
+        pollution = 0;
+    }
+
+    void save(DataOutput out) throws IOException {
+        Checkpoint.writeLongs(out, tagged);
+        Checkpoint.writeLongs(out, readyAt);
+        Checkpoint.writeLongs(out, victims);
+        for (long counter : new long[] {issued, redundant, useful, late, unused, demandMisses, pollution}) {
+            out.writeLong(counter);
+        }
+        prefetcher.saveState(out);
+    }
+
+    void restore(DataInput in) throws IOException {
+        Checkpoint.readLongs(in, tagged);
+        Checkpoint.readLongs(in, readyAt);
+        Checkpoint.readLongs(in, victims);
+        issued = in.readLong();
+        redundant = in.readLong();
+        useful = in.readLong();
+        late = in.readLong();
+        unused = in.readLong();
+        demandMisses = in.readLong();
+        pollution = in.readLong();
+        prefetcher.restoreState(in);
+    }
+
+    private int victimSlot(long blockNumber) {
+        long h = blockNumber * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & victimMask;
+    }
+
+    public Prefetcher prefetcher() {
+        return prefetcher;
+    }
+
+    public int latency() {
+        return latency;
+    }
+
+    public long issued() {
+        return issued;
+    }
+
+    public long redundant() {
+        return redundant;
+    }
+
+    public long useful() {
+        return useful;
+    }
+
+    public long late() {
+        return late;
+    }
+
+    public long unused() {
+        return unused;
+    }
+
+    public long pollution() {
+        return pollution;
+    }
+
+    public double accuracy() {
+        return (double) useful / Math.max(issued, 1);
+    }
+
+    public double coverage() {
+        return (double) useful / Math.max(useful + demandMisses, 1);
+    }
+
+    public double timeliness() {
+        return (double) (useful - late) / Math.max(useful, 1);
+    }
+
+    public String describe() {
+        return prefetcher.describe() + (latency > 0 ? ", latency " + latency + " accesses" : "");
+    }
+}
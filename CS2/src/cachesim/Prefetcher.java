@@ -0,0 +1,63 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+// Hardware prefetcher plug-in for CacheSimulator. It sees every demand access after the cache
+// has handled it and names the blocks to bring in; the simulator fills them, tags the lines and
+// keeps the accuracy / coverage / timeliness / pollution counts in its PrefetchUnit.
+public interface Prefetcher {
+    // Upper bound on the prefetch depth, and on the candidates one access may return
+    int MAX_DEPTH = 64;
+
+    // Writes the blocks to prefetch into out (MAX_DEPTH long) and returns how many there are.
+    // prefetchHit is a hit on a prefetched line that had not been used yet.
+    int onAccess(long blockNumber, boolean hit, boolean prefetchHit, long[] out);
+
+    // Forgets everything learned so far
+    void reset();
+
+    String describe();
+
+    // Name and depth create() rebuilds it from when a checkpoint is restored; prefetchers
+    // create() does not know return null and cannot be checkpointed
+    default String name() {
+        return null;
+    }
+
+    default int depth() {
+        return 1;
+    }
+
+    // What it has learned, for checkpoints; stateless prefetchers keep these no-ops
+    default void saveState(DataOutput out) throws IOException {
+    }
+
+    default void restoreState(DataInput in) throws IOException {
+    }
+
+    // Built-ins by name: next-line, stride or stream
+    static Prefetcher create(String name, int depth) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "next-line":
+            case "nextline":
+                return new NextLinePrefetcher(depth);
+            case "stride":
+            case "rpt":
+                return new StridePrefetcher(depth);
+            case "stream":
+                return new StreamPrefetcher(depth);
+            default:
+                throw new IllegalArgumentException("Unknown prefetcher: " + name);
+        }
+    }
+
+    static int checkDepth(int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Prefetch depth must be between 1 and " + MAX_DEPTH + ": " + depth);
+        }
+        return depth;
+    }
+}
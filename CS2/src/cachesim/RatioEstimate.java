@@ -0,0 +1,104 @@
+package cachesim;
+
+// Miss ratio estimated from a sample of clusters, each contributing its own access and miss
+// counts: a cache set under set sampling, a measurement unit under time sampling. The standard
+// error is the usual ratio-estimator one,
+//   s^2 = sum (m_i - r a_i)^2 / (n - 1),   SE = sqrt((1 - n / N) s^2 / n) / mean(a_i)
+// with the finite population correction for n of N clusters (N = 0 leaves it out). Intervals
+// are normal-theory, so they mean little with fewer than a few dozen clusters.
+public final class RatioEstimate {
+    private long clusters = 0;
+    private long accesses = 0;
+    private long misses = 0;
+    private double sumAccessesSquared = 0;
+    private double sumMissesSquared = 0;
+    private double sumProducts = 0;
+    private long population = 0; // Clusters the sample was drawn from, 0 = unknown
+
+    public void add(long clusterAccesses, long clusterMisses) {
+        clusters++;
+        accesses += clusterAccesses;
+        misses += clusterMisses;
+        sumAccessesSquared += (double) clusterAccesses * clusterAccesses;
+        sumMissesSquared += (double) clusterMisses * clusterMisses;
+        sumProducts += (double) clusterAccesses * clusterMisses;
+    }
+
+    void setPopulation(long population) {
+        this.population = population;
+    }
+
+    public long clusters() {
+        return clusters;
+    }
+
+    public long population() {
+        return population;
+    }
+
+    public long accesses() {
+        return accesses;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public double missRatio() {
+        return (double) misses / Math.max(accesses, 1);
+    }
+
+    public double hitRatio() {
+        return 1 - missRatio();
+    }
+
+    // Standard error of the miss ratio (and so of the hit ratio); 0 with fewer than two clusters
+    public double standardError() {
+        if (clusters < 2 || accesses == 0) {
+            return 0;
+        }
+        double r = missRatio();
+        double residuals = sumMissesSquared - 2 * r * sumProducts + r * r * sumAccessesSquared;
+        double variance = Math.max(residuals, 0) / (clusters - 1);
+        double correction = population > 0 ? Math.max(1 - (double) clusters / population, 0) : 1;
+        double meanAccesses = (double) accesses / clusters;
+        return Math.sqrt(correction * variance / clusters) / meanAccesses;
+    }
+
+    // Half the width of the two-sided interval at the given confidence, e.g. 0.95
+    public double halfWidth(double confidence) {
+        return z(confidence) * standardError();
+    }
+
+    static double z(double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1: " + confidence);
+        }
+        return normalQuantile(0.5 + confidence / 2);
+    }
+
+    // Inverse of the standard normal CDF (Acklam's rational approximation, relative error < 1.2e-9)
+    static double normalQuantile(double p) {
+        double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
@@ -0,0 +1,34 @@
+package cachesim;
+
+// Victim selection within a set. Recency state is packed per set in primitive arrays.
+public enum ReplacementPolicy {
+    LRU,    // Least recently used (exact)
+    PLRU,   // Tree pseudo-LRU, ways - 1 bits per set; ways must be a power of two
+    FIFO,   // Evicts in fill order
+    RANDOM, // Seeded xorshift choice
+    SRRIP;  // Static re-reference interval prediction with 2-bit RRPVs
+
+    ReplacementState create(int sets, int ways, long seed) {
+        switch (this) {
+            case LRU:
+                return ways <= ReplacementState.PackedLru.MAX_WAYS
+                        ? new ReplacementState.PackedLru(sets, ways)
+                        : new ReplacementState.ListLru(sets, ways);
+            case PLRU:
+                return new ReplacementState.TreePlru(sets, ways);
+            case FIFO:
+                return new ReplacementState.Fifo(sets, ways);
+            case RANDOM:
+                return new ReplacementState.RandomChoice(ways, seed);
+            case SRRIP:
+                return new ReplacementState.Srrip(sets, ways);
+            default:
+                throw new AssertionError(this);
+        }
+    }
+
+    // Accepts names case-insensitively, e.g. "lru" or "srrip"
+    public static ReplacementPolicy parse(String name) {
+        return valueOf(name.trim().toUpperCase(java.util.Locale.ROOT));
+    }
+}
@@ -0,0 +1,382 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Per-set replacement bookkeeping. Ways are numbered 0 .. ways-1 within a set; victim() is
+// only asked once every way of the set is valid, free ways are filled first by the simulator.
+abstract class ReplacementState {
+    abstract void onHit(int set, int way);
+
+    abstract void onFill(int set, int way);
+
+    abstract int victim(int set);
+
+    abstract void reset();
+
+    // Checkpoint support: restore() reads what save() wrote into a state of the same geometry
+    abstract void save(DataOutput out) throws IOException;
+
+    abstract void restore(DataInput in) throws IOException;
+
+    // Exact LRU for up to 16 ways: one long per set holding the ways as 4-bit lanes in
+    // recency order, lane 0 most recent. A touch is a SWAR search plus one shift.
+    static final class PackedLru extends ReplacementState {
+        static final int MAX_WAYS = 16;
+        private static final long ONES = 0x1111111111111111L;
+        private static final long HIGHS = 0x8888888888888888L;
+
+        private final int ways;
+        private final long identity;
+        private final long[] order;
+
+        PackedLru(int sets, int ways) {
+            this.ways = ways;
+            long id = 0;
+            for (int w = ways - 1; w >= 0; w--) {
+                id = (id << 4) | w;
+            }
+            this.identity = id;
+            this.order = new long[sets];
+            reset();
+        }
+
+        @Override
+        void onHit(int set, int way) {
+            long o = order[set];
+            long x = o ^ (ONES * way);
+            // The lowest zero lane is exact; borrows can only produce false matches above it
+            long zero = (x - ONES) & ~x & HIGHS;
+            int shift = Long.numberOfTrailingZeros(zero) & ~3;
+            long below = o & ((1L << shift) - 1);
+            long above = o & ((-1L << shift) << 4);
+            order[set] = above | (below << 4) | way;
+        }
+
+        @Override
+        void onFill(int set, int way) {
+            onHit(set, way);
+        }
+
+        @Override
+        int victim(int set) {
+            return (int) (order[set] >>> ((ways - 1) << 2)) & 0xF;
+        }
+
+        @Override
+        void reset() {
+            Arrays.fill(order, identity);
+        }
+
+        @Override
+        void save(DataOutput out) throws IOException {
+            Checkpoint.writeLongs(out, order);
+        }
+
+        @Override
+        void restore(DataInput in) throws IOException {
+            Checkpoint.readLongs(in, order);
+        }
+    }
+
+    // Exact LRU for wide sets (fully associative caches): an intrusive doubly linked list per
+    // set kept in int arrays indexed by line, so touches and victims are O(1)
+    static final class ListLru extends ReplacementState {
+        private final int ways;
+        private final int[] prev;
+        private final int[] next;
+        private final int[] head; // Most recent way of each set
+        private final int[] tail; // Least recent way of each set
+
+        ListLru(int sets, int ways) {
+            this.ways = ways;
+            this.prev = new int[sets * ways];
+            this.next = new int[sets * ways];
+            this.head = new int[sets];
+            this.tail = new int[sets];
+            reset();
+        }
+
+        @Override
+        void onHit(int set, int way) {
+            if (head[set] == way) {
+                return;
+            }
+            int base = set * ways;
+            int p = prev[base + way];
+            int n = next[base + way];
+            next[base + p] = n;
+            if (n >= 0) {
+                prev[base + n] = p;
+            } else {
+                tail[set] = p;
+            }
+            prev[base + way] = -1;
+            next[base + way] = head[set];
+            prev[base + head[set]] = way;
+            head[set] = way;
+        }
+
+        @Override
+        void onFill(int set, int way) {
+            onHit(set, way);
+        }
+
+        @Override
+        int victim(int set) {
+            return tail[set];
+        }
+
+        @Override
+        void reset() {
+            for (int set = 0; set < head.length; set++) {
+                int base = set * ways;
+                for (int w = 0; w < ways; w++) {
+                    prev[base + w] = w - 1;
+                    next[base + w] = w + 1 < ways ? w + 1 : -1;
+                }
+                head[set] = 0;
+                tail[set] = ways - 1;
+            }
+        }
+
+        @Override
+        void save(DataOutput out) throws IOException {
+            Checkpoint.writeInts(out, prev);
+            Checkpoint.writeInts(out, next);
+            Checkpoint.writeInts(out, head);
+            Checkpoint.writeInts(out, tail);
+        }
+
+        @Override
+        void restore(DataInput in) throws IOException {
+            Checkpoint.readInts(in, prev);
+            Checkpoint.readInts(in, next);
+            Checkpoint.readInts(in, head);
+            Checkpoint.readInts(in, tail);
+        }
+    }
+
+    // Tree pseudo-LRU: node n (1 .. ways-1) of a set's binary tree is bit n of the set's words
+    // (a single long for up to 64 ways) and points towards the half holding the next victim
+    static final class TreePlru extends ReplacementState {
+        private final int levels;
+        private final int wordsPerSet;
+        private final long[] bits;
+
+        TreePlru(int sets, int ways) {
+            if (Integer.bitCount(ways) != 1) {
+                throw new IllegalArgumentException("Tree PLRU needs a power-of-two number of ways: " + ways);
+            }
+            this.levels = Integer.numberOfTrailingZeros(ways);
+            this.wordsPerSet = Math.max(1, ways >>> 6);
+            this.bits = new long[sets * wordsPerSet];
+        }
+
+        @Override
+        void onHit(int set, int way) {
+            int base = set * wordsPerSet;
+            int node = 1;
+            for (int level = levels - 1; level >= 0; level--) {
+                int right = (way >>> level) & 1;
+                int word = base + (node >>> 6);
+                // Point away from the way just used
+                bits[word] = (bits[word] & ~(1L << node)) | ((long) (right ^ 1) << node);
+                node = (node << 1) | right;
+            }
+        }
+
+        @Override
+        void onFill(int set, int way) {
+            onHit(set, way);
+        }
+
+        @Override
+        int victim(int set) {
+            int base = set * wordsPerSet;
+            int node = 1;
+            for (int level = 0; level < levels; level++) {
+                node = (node << 1) | (int) ((bits[base + (node >>> 6)] >>> node) & 1);
+            }
+            return node - (1 << levels);
+        }
+
+        @Override
+        void reset() {
+            Arrays.fill(bits, 0L);
+        }
+
+        @Override
+        void save(DataOutput out) throws IOException {
+            Checkpoint.writeLongs(out, bits);
+        }
+
+        @Override
+        void restore(DataInput in) throws IOException {
+            Checkpoint.readLongs(in, bits);
+        }
+    }
+
+    // Fill order per set, kept as an LRU order that hits do not touch. A pointer stepping through
+    // the ways would only be FIFO while fills come in way order, which an invalidate() breaks.
+    static final class Fifo extends ReplacementState {
+        private final ReplacementState order;
+
+        Fifo(int sets, int ways) {
+            this.order = ways <= PackedLru.MAX_WAYS ? new PackedLru(sets, ways) : new ListLru(sets, ways);
+        }
+
+        @Override
+        void onHit(int set, int way) {
+        }
+
+        @Override
+        void onFill(int set, int way) {
+            order.onFill(set, way);
+        }
+
+        @Override
+        int victim(int set) {
+            return order.victim(set);
+        }
+
+        @Override
+        void reset() {
+            order.reset();
+        }
+
+        @Override
+        void save(DataOutput out) throws IOException {
+            order.save(out);
+        }
+
+        @Override
+        void restore(DataInput in) throws IOException {
+            order.restore(in);
+        }
+    }
+
+    // Seeded xorshift64 choice, reproducible for a given seed
+    static final class RandomChoice extends ReplacementState {
+        private final int ways;
+        private final long seed;
+        private long state;
+
+        RandomChoice(int ways, long seed) {
+            this.ways = ways;
+            this.seed = seed;
+            reset();
+        }
+
+        @Override
+        void onHit(int set, int way) {
+        }
+
+        @Override
+        void onFill(int set, int way) {
+        }
+
+        @Override
+        int victim(int set) {
+            long x = state;
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            state = x;
+            return (int) Workload.bounded(x, ways);
+        }
+
+        @Override
+        void reset() {
+            state = Workload.mix(seed, 0) | 1;
+        }
+
+        // The generator's position, so a restored cache draws the victims the original would have
+        @Override
+        void save(DataOutput out) throws IOException {
+            out.writeLong(state);
+        }
+
+        @Override
+        void restore(DataInput in) throws IOException {
+            state = in.readLong();
+        }
+    }
+
+    // SRRIP-HP: 2-bit re-reference prediction values packed 32 per long by line. Fills insert
+    // with a long re-reference interval (2), hits promote to 0, victims are the first way at 3
+    // after ageing the whole set as needed.
+    static final class Srrip extends ReplacementState {
+        private static final int MAX_RRPV = 3;
+        private static final int INSERT_RRPV = 2;
+
+        private final int ways;
+        private final long[] rrpv;
+
+        Srrip(int sets, int ways) {
+            this.ways = ways;
+            this.rrpv = new long[(int) (((long) sets * ways + 31) >>> 5)];
+            reset();
+        }
+
+        @Override
+        void onHit(int set, int way) {
+            set(set * ways + way, 0);
+        }
+
+        @Override
+        void onFill(int set, int way) {
+            set(set * ways + way, INSERT_RRPV);
+        }
+
+        @Override
+        int victim(int set) {
+            int base = set * ways;
+            int oldest = 0;
+            int oldestWay = 0;
+            for (int w = 0; w < ways; w++) {
+                int value = get(base + w);
+                if (value == MAX_RRPV) {
+                    return w;
+                }
+                if (value > oldest) {
+                    oldest = value;
+                    oldestWay = w;
+                }
+            }
+            // Age every way by the distance that brings the oldest one to MAX_RRPV
+            int age = MAX_RRPV - oldest;
+            for (int w = 0; w < ways; w++) {
+                set(base + w, get(base + w) + age);
+            }
+            return oldestWay;
+        }
+
+        private int get(int line) {
+            return (int) (rrpv[line >>> 5] >>> ((line & 31) << 1)) & 3;
+        }
+
+        private void set(int line, int value) {
+            int shift = (line & 31) << 1;
+            long word = rrpv[line >>> 5];
+            rrpv[line >>> 5] = (word & ~(3L << shift)) | ((long) value << shift);
+        }
+
+        @Override
+        void reset() {
+            Arrays.fill(rrpv, -1L); // Every way starts at MAX_RRPV
+        }
+
+        @Override
+        void save(DataOutput out) throws IOException {
+            Checkpoint.writeLongs(out, rrpv);
+        }
+
+        @Override
+        void restore(DataInput in) throws IOException {
+            Checkpoint.readLongs(in, rrpv);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Set sampling: only a random subset of the cache's sets is simulated. Sets never interact, so
+// the sampled sets are packed into one smaller simulator (same tag, set renumbered, as in
+// PartitionedSimulator) and behave exactly as they would in the full cache; accesses to other
+// sets are dropped after decoding their index. The sampled sets are drawn at random rather than
+// every k-th one so strided traces cannot line up with the sample. Each sampled set is one
+// cluster of the miss-ratio estimate. A victim cache is shared by all sets, so it is rejected.
+public final class SetSampler {
+    private final CacheConfig config;
+    private final int sets;
+    private final int setBits; // log2(sets) when sets is a power of two, otherwise -1
+    private final int[] sampleIndex; // Full set -> sampled set, or -1 when not sampled
+    private final int sampledSets;
+    private final CacheSimulator sample;
+    private final long[] setAccesses; // Per sampled set
+    private final long[] setMisses;
+    private long accesses = 0; // Every access seen, sampled or not
+
+    public SetSampler(CacheConfig config, int sampledSets) {
+        if (config.victimEntries() > 0) {
+            throw new IllegalArgumentException("Set sampling cannot model a victim cache, which every set shares");
+        }
+        if (sampledSets < 1 || sampledSets > config.sets()) {
+            throw new IllegalArgumentException("Sampled sets must be between 1 and " + config.sets() + ": " + sampledSets);
+        }
+        this.config = config;
+        this.sets = config.sets();
+        this.setBits = Integer.bitCount(sets) == 1 ? Integer.numberOfTrailingZeros(sets) : -1;
+        this.sampledSets = sampledSets;
+        this.sampleIndex = new int[sets];
+
+        // Partial Fisher-Yates shuffle: the first sampledSets entries become the sample, in set order
+        int[] order = new int[sets];
+        for (int s = 0; s < sets; s++) {
+            order[s] = s;
+        }
+        SplittableRandom random = new SplittableRandom(config.seed());
+        for (int i = 0; i < sampledSets; i++) {
+            int j = i + random.nextInt(sets - i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        Arrays.fill(sampleIndex, -1);
+        for (int i = 0; i < sampledSets; i++) {
+            sampleIndex[order[i]] = 0;
+        }
+        for (int s = 0, next = 0; s < sets; s++) {
+            if (sampleIndex[s] == 0) {
+                sampleIndex[s] = next++;
+            }
+        }
+
+        this.sample = new CacheSimulator(CacheConfig.setAssociative(sampledSets * config.ways(), config.ways(), config.policy())
+                .withOffHeap(config.offHeap())
+                .withSeed(config.seed())
+                .withWritePolicy(config.writePolicy())
+                .withWriteAllocate(config.writeAllocate())
+                .withBlockBytes(config.blockBytes()));
+        this.setAccesses = new long[sampledSets];
+        this.setMisses = new long[sampledSets];
+    }
+
+    public void accessAll(AccessBatch batch) {
+        long[] blocks = batch.addresses;
+        boolean anyWrites = batch.anyWrites;
+        for (int i = 0; i < batch.size; i++) {
+            long block = blocks[i];
+            int set;
+            long tag;
+            if (setBits >= 0) {
+                set = (int) (block & (sets - 1));
+                tag = block >> setBits;
+            } else {
+                set = (int) Math.floorMod(block, (long) sets);
+                tag = Math.floorDiv(block, (long) sets);
+            }
+            int local = sampleIndex[set];
+            if (local < 0) {
+                continue;
+            }
+            setAccesses[local]++;
+            if (!sample.access(tag * sampledSets + local, anyWrites && batch.isWrite(i))) {
+                setMisses[local]++;
+            }
+        }
+        accesses += batch.size;
+    }
+
+    public void run(AccessSource source) throws IOException {
+        AccessBatch batch = new AccessBatch();
+        while (source.read(batch) > 0) {
+            accessAll(batch);
+        }
+    }
+
+    // One cluster per sampled set; sets that saw no access add nothing but still count
+    public RatioEstimate estimate() {
+        RatioEstimate estimate = new RatioEstimate();
+        for (int i = 0; i < sampledSets; i++) {
+            estimate.add(setAccesses[i], setMisses[i]);
+        }
+        estimate.setPopulation(sets);
+        return estimate;
+    }
+
+    public CacheConfig config() {
+        return config;
+    }
+
+    public int sampledSets() {
+        return sampledSets;
+    }
+
+    public long accesses() {
+        return accesses;
+    }
+
+    // Accesses that fell in a sampled set
+    public long simulated() {
+        return sample.getAccessCount();
+    }
+
+    // The simulator holding the sampled sets, for its write and traffic counters
+    public CacheSimulator sample() {
+        return sample;
+    }
+}
@@ -0,0 +1,231 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+// One pass over a trace yields the LRU stack distance of every access (the number of distinct
+// blocks touched since the previous access to the same block). Its histogram gives the miss
+// ratio of a fully associative LRU cache of every size at once: an access of distance d hits
+// exactly in caches with more than d lines.
+//
+// Distances come from a Fenwick tree over access times holding a 1 at the latest access of
+// every live block; the tree is compacted to the live blocks whenever time runs off its end,
+// so memory follows the number of distinct blocks rather than the trace length.
+// Direct-mapped sizes cannot be derived from stack distances, so they are simulated side by
+// side with ordinary per-size counters.
+public final class StackDistanceAnalyzer {
+    public static final int COLD = -1;
+
+    private final int maxDistance;
+    private final long[] histogram; // histogram[d] = accesses at distance d, d < maxDistance
+    private long beyond = 0; // Reuses at distance >= maxDistance
+    private long cold = 0; // First touches
+    private long accesses = 0;
+
+    private final LongIntHashMap lastAccess = new LongIntHashMap(1 << 16); // block -> time
+    private int[] tree; // Fenwick tree, 1-based
+    private int now = 0;
+    private int live = 0;
+
+    // Direct-mapped caches of each requested size: block numbers per line, EMPTY when invalid
+    private static final long EMPTY = Long.MIN_VALUE;
+    private final int[] directMappedSizes;
+    private final long[][] directMappedBlocks;
+    private final long[] directMappedMisses;
+
+    // Tracks distances exactly up to maxDistance lines; directMappedSizes may be empty
+    public StackDistanceAnalyzer(int maxDistance, int... directMappedSizes) {
+        if (maxDistance <= 0) {
+            throw new IllegalArgumentException("maxDistance must be positive: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        this.histogram = new long[maxDistance];
+        this.tree = new int[(1 << 16) + 1];
+        this.directMappedSizes = directMappedSizes.clone();
+        this.directMappedBlocks = new long[directMappedSizes.length][];
+        this.directMappedMisses = new long[directMappedSizes.length];
+        for (int i = 0; i < directMappedSizes.length; i++) {
+            if (directMappedSizes[i] <= 0) {
+                throw new IllegalArgumentException("Cache must have at least one block: " + directMappedSizes[i]);
+            }
+            directMappedBlocks[i] = new long[directMappedSizes[i]];
+            Arrays.fill(directMappedBlocks[i], EMPTY);
+        }
+    }
+
+    // Returns the access's stack distance, or COLD for the first touch of the block
+    public int access(long blockNumber) {
+        accesses++;
+        for (int i = 0; i < directMappedBlocks.length; i++) {
+            long[] blocks = directMappedBlocks[i];
+            int line = (int) Math.floorMod(blockNumber, (long) blocks.length);
+            if (blocks[line] != blockNumber) {
+                blocks[line] = blockNumber;
+                directMappedMisses[i]++;
+            }
+        }
+
+        if (now + 1 >= tree.length) {
+            compact();
+        }
+        int last = lastAccess.put(blockNumber, now);
+        int distance = COLD;
+        if (last == LongIntHashMap.MISSING) {
+            cold++;
+            live++;
+        } else {
+            distance = live - prefix(last + 1);
+            if (distance < maxDistance) {
+                histogram[distance]++;
+            } else {
+                beyond++;
+            }
+            add(last + 1, -1);
+        }
+        add(now + 1, 1);
+        now++;
+        return distance;
+    }
+
+    public void accessAll(AccessBatch batch) {
+        long[] blocks = batch.addresses;
+        for (int i = 0; i < batch.size; i++) {
+            access(blocks[i]);
+        }
+    }
+
+    // Renumbers the live blocks' last-access times to 0 .. live-1 and rebuilds the tree,
+    // growing it so that at least three quarters stay free for the accesses to come
+    private void compact() {
+        int capacity = tree.length - 1;
+        // Times are distinct tree positions, so ranks come from marking them in a flag array
+        int[] rank = new int[capacity];
+        Arrays.fill(rank, -1);
+        for (int time : lastAccess.values()) {
+            rank[time] = 0;
+        }
+        int next = 0;
+        for (int time = 0; time < capacity; time++) {
+            if (rank[time] == 0) {
+                rank[time] = next++;
+            }
+        }
+        lastAccess.replaceValues(time -> rank[time]);
+
+        while (live * 4 > capacity) {
+            capacity <<= 1;
+        }
+        tree = new int[capacity + 1];
+        // Linear-time build of a tree whose first `live` positions hold a 1
+        for (int i = 1; i <= capacity; i++) {
+            if (i <= live) {
+                tree[i] += 1;
+            }
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                tree[parent] += tree[i];
+            }
+        }
+        now = live;
+    }
+
+    private void add(int i, int delta) {
+        int[] t = tree;
+        for (; i < t.length; i += i & -i) {
+            t[i] += delta;
+        }
+    }
+
+    // Sum of positions 1 .. i
+    private int prefix(int i) {
+        int[] t = tree;
+        int sum = 0;
+        for (; i > 0; i -= i & -i) {
+            sum += t[i];
+        }
+        return sum;
+    }
+
+    public long accesses() {
+        return accesses;
+    }
+
+    public long coldMisses() {
+        return cold;
+    }
+
+    public long distinctBlocks() {
+        return live;
+    }
+
+    // Accesses whose stack distance is exactly d (d < maxDistance)
+    public long accessesAtDistance(int d) {
+        return histogram[d];
+    }
+
+    // Misses of a fully associative LRU cache with the given number of lines (<= maxDistance)
+    public long lruMisses(int lines) {
+        if (lines > maxDistance) {
+            throw new IllegalArgumentException("Distances are only tracked up to " + maxDistance + " lines");
+        }
+        long misses = cold + beyond;
+        for (int d = lines; d < maxDistance; d++) {
+            misses += histogram[d];
+        }
+        return misses;
+    }
+
+    // Misses of a direct-mapped cache of the given size, or -1 if that size was not simulated
+    public long directMappedMisses(int lines) {
+        for (int i = 0; i < directMappedSizes.length; i++) {
+            if (directMappedSizes[i] == lines) {
+                return directMappedMisses[i];
+            }
+        }
+        return -1;
+    }
+
+    // Miss-ratio curve as CSV: one row per power-of-two size up to maxDistance for step 0, else
+    // one per multiple of step (step 1 gives every size), with the direct-mapped column filled in
+    // for the sizes that were simulated
+    public void writeMissRatioCurve(Appendable out, int step) throws IOException {
+        if (step < 0) {
+            throw new IllegalArgumentException("Step must not be negative: " + step);
+        }
+        out.append("lines,lru_misses,lru_miss_ratio,direct_mapped_misses,direct_mapped_miss_ratio\n");
+        // Suffix sums so each row costs O(1)
+        long[] missesAtLeast = new long[maxDistance + 1];
+        missesAtLeast[maxDistance] = cold + beyond;
+        for (int d = maxDistance - 1; d >= 0; d--) {
+            missesAtLeast[d] = missesAtLeast[d + 1] + histogram[d];
+        }
+        double total = Math.max(accesses, 1);
+        for (long lines = step == 0 ? 1 : step; lines <= maxDistance; lines = step == 0 ? lines << 1 : lines + step) {
+            long misses = missesAtLeast[(int) lines];
+            out.append(String.format(Locale.ROOT, "%d,%d,%.6f", lines, misses, misses / total));
+            long dmMisses = directMappedMisses((int) lines);
+            if (dmMisses >= 0) {
+                out.append(String.format(Locale.ROOT, ",%d,%.6f\n", dmMisses, dmMisses / total));
+            } else {
+                out.append(",,\n");
+            }
+        }
+    }
+
+    // Reuse-distance histogram as CSV in power-of-two buckets [lo, hi); cold misses and
+    // distances beyond the tracked range get their own rows
+    public void writeReuseHistogram(Appendable out) throws IOException {
+        out.append("distance_from,distance_to,accesses,fraction\n");
+        double total = Math.max(accesses, 1);
+        for (long lo = 0, hi = 1; lo < maxDistance; lo = hi, hi <<= 1) {
+            long count = 0;
+            for (long d = lo; d < Math.min(hi, maxDistance); d++) {
+                count += histogram[(int) d];
+            }
+            out.append(String.format(Locale.ROOT, "%d,%d,%d,%.6f\n", lo, Math.min(hi, maxDistance), count, count / total));
+        }
+        out.append(String.format(Locale.ROOT, "%d,inf,%d,%.6f\n", maxDistance, beyond, beyond / total));
+        out.append(String.format(Locale.ROOT, "cold,cold,%d,%.6f\n", cold, cold / total));
+    }
+}
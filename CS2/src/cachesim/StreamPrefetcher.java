@@ -0,0 +1,125 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Stream prefetcher: a miss starts a candidate stream, a second miss within WINDOW blocks fixes
+// its direction, and from then on every access inside the stream's window keeps the prefetched
+// head depth blocks ahead of demand. Streams are replaced least recently used first.
+public final class StreamPrefetcher implements Prefetcher {
+    static final int STREAMS = 16;
+    static final int WINDOW = 16; // Blocks beyond the last access that still belong to a stream
+
+    private final int depth;
+    private final long[] last = new long[STREAMS]; // Latest demand block in the stream
+    private final long[] head = new long[STREAMS]; // Furthest block prefetched
+    private final int[] direction = new int[STREAMS]; // +1 / -1 once trained, 0 while training
+    private final long[] lastUse = new long[STREAMS];
+    private final boolean[] used = new boolean[STREAMS];
+    private long clock = 0;
+
+    public StreamPrefetcher(int depth) {
+        this.depth = Prefetcher.checkDepth(depth);
+    }
+
+    @Override
+    public int onAccess(long blockNumber, boolean hit, boolean prefetchHit, long[] out) {
+        clock++;
+        for (int s = 0; s < STREAMS; s++) {
+            if (!used[s]) {
+                continue;
+            }
+            int dir = direction[s];
+            long ahead = (blockNumber - last[s]) * (dir == 0 ? 1 : dir);
+            if (dir != 0 && ahead >= 0 && ahead <= WINDOW) {
+                return advance(s, blockNumber, out);
+            }
+            if (dir == 0 && !hit && blockNumber != last[s] && Math.abs(blockNumber - last[s]) <= WINDOW) {
+                direction[s] = blockNumber > last[s] ? 1 : -1;
+                head[s] = blockNumber;
+                return advance(s, blockNumber, out);
+            }
+        }
+        if (!hit) {
+            int victim = 0;
+            for (int s = 0; s < STREAMS; s++) {
+                if (!used[s]) {
+                    victim = s;
+                    break;
+                }
+                if (lastUse[s] < lastUse[victim]) {
+                    victim = s;
+                }
+            }
+            used[victim] = true;
+            last[victim] = blockNumber;
+            direction[victim] = 0;
+            lastUse[victim] = clock;
+        }
+        return 0;
+    }
+
+    // Moves the stream to blockNumber and prefetches up to depth blocks past it
+    private int advance(int s, long blockNumber, long[] out) {
+        int dir = direction[s];
+        last[s] = blockNumber;
+        lastUse[s] = clock;
+        long target = blockNumber + (long) dir * depth;
+        long next = (head[s] - blockNumber) * dir > 0 ? head[s] + dir : blockNumber + dir;
+        int n = 0;
+        for (; (target - next) * dir >= 0; next += dir) {
+            out[n++] = next;
+        }
+        if (n > 0) {
+            head[s] = target;
+        }
+        return n;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(used, false);
+        clock = 0;
+    }
+
+    @Override
+    public String name() {
+        return "stream";
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        Checkpoint.writeLongs(out, last);
+        Checkpoint.writeLongs(out, head);
+        Checkpoint.writeInts(out, direction);
+        Checkpoint.writeLongs(out, lastUse);
+        for (boolean u : used) {
+            out.writeBoolean(u);
+        }
+        out.writeLong(clock);
+    }
+
+    @Override
+    public void restoreState(DataInput in) throws IOException {
+        Checkpoint.readLongs(in, last);
+        Checkpoint.readLongs(in, head);
+        Checkpoint.readInts(in, direction);
+        Checkpoint.readLongs(in, lastUse);
+        for (int s = 0; s < STREAMS; s++) {
+            used[s] = in.readBoolean();
+        }
+        clock = in.readLong();
+    }
+
+    @Override
+    public String describe() {
+        return "stream (" + STREAMS + " streams), depth " + depth;
+    }
+}
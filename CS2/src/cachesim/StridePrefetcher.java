@@ -0,0 +1,191 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Reference prediction table (Chen and Baer): each entry remembers the last block and stride of
+// one access stream and moves through initial / transient / steady / no-prediction states; only
+// steady entries prefetch, depth strides ahead. Traces carry no program counter, so entries are
+// keyed by memory region (REGION_BITS of block number) instead of by load instruction. A stride
+// longer than a region lands every access in a fresh entry, so an access to an unseen region first
+// takes over the entry that predicted it, and otherwise looks for a stride among the last HISTORY
+// blocks (x - s and x - 2s both recent), which also catches a long stride interleaved with others.
+public final class StridePrefetcher implements Prefetcher {
+    static final int ENTRIES = 64;
+    static final int REGION_BITS = 6; // 64 blocks, a 4 KiB page with 64-byte blocks
+    static final int HISTORY = 8;
+
+    private static final byte INITIAL = 0;
+    private static final byte TRANSIENT = 1;
+    private static final byte STEADY = 2;
+    private static final byte NO_PREDICTION = 3;
+
+    private final int depth;
+    private final long[] regions = new long[ENTRIES];
+    private final long[] last = new long[ENTRIES];
+    private final long[] stride = new long[ENTRIES];
+    private final byte[] state = new byte[ENTRIES];
+    private final boolean[] used = new boolean[ENTRIES];
+    private final long[] recent = new long[HISTORY]; // Ring of the latest blocks accessed
+    private int recentCount = 0;
+    private int recentNext = 0;
+
+    public StridePrefetcher(int depth) {
+        this.depth = Prefetcher.checkDepth(depth);
+    }
+
+    @Override
+    public int onAccess(long blockNumber, boolean hit, boolean prefetchHit, long[] out) {
+        long region = blockNumber >>> REGION_BITS;
+        long h = region * 0x9E3779B97F4A7C15L;
+        int entry = (int) (h >>> 58) & (ENTRIES - 1);
+        if (!used[entry] || regions[entry] != region) {
+            int predicted = predicting(blockNumber);
+            used[entry] = true;
+            regions[entry] = region;
+            if (predicted >= 0) {
+                // Move the stream's entry into the region it has stepped into
+                used[predicted] = predicted == entry;
+                last[entry] = last[predicted];
+                stride[entry] = stride[predicted];
+                state[entry] = state[predicted];
+            } else {
+                long found = recentStride(blockNumber);
+                remember(blockNumber);
+                last[entry] = blockNumber;
+                stride[entry] = found;
+                state[entry] = found == 0 ? INITIAL : STEADY;
+                return found == 0 ? 0 : prefetch(blockNumber, found, out);
+            }
+        }
+        remember(blockNumber);
+        long delta = blockNumber - last[entry];
+        boolean correct = delta == stride[entry];
+        switch (state[entry]) {
+            case INITIAL:
+                if (correct) {
+                    state[entry] = STEADY;
+                } else {
+                    stride[entry] = delta;
+                    state[entry] = TRANSIENT;
+                }
+                break;
+            case TRANSIENT:
+                if (correct) {
+                    state[entry] = STEADY;
+                } else {
+                    stride[entry] = delta;
+                    state[entry] = NO_PREDICTION;
+                }
+                break;
+            case STEADY:
+                if (!correct) {
+                    state[entry] = INITIAL;
+                }
+                break;
+            default:
+                if (correct) {
+                    state[entry] = TRANSIENT;
+                } else {
+                    stride[entry] = delta;
+                }
+        }
+        last[entry] = blockNumber;
+        if (state[entry] != STEADY || stride[entry] == 0) {
+            return 0;
+        }
+        return prefetch(blockNumber, stride[entry], out);
+    }
+
+    private int prefetch(long blockNumber, long stride, long[] out) {
+        for (int i = 0; i < depth; i++) {
+            out[i] = blockNumber + stride * (i + 1);
+        }
+        return depth;
+    }
+
+    // The entry whose next predicted block is blockNumber, or -1
+    private int predicting(long blockNumber) {
+        for (int e = 0; e < ENTRIES; e++) {
+            if (used[e] && stride[e] != 0 && last[e] + stride[e] == blockNumber) {
+                return e;
+            }
+        }
+        return -1;
+    }
+
+    // A stride s, newest first, with blockNumber - s and blockNumber - 2s both in the history, or 0
+    private long recentStride(long blockNumber) {
+        for (int i = 1; i <= recentCount; i++) {
+            long before = recent[(recentNext - i + HISTORY) % HISTORY];
+            long s = blockNumber - before;
+            if (s == 0) {
+                continue;
+            }
+            for (int j = i + 1; j <= recentCount; j++) {
+                if (recent[(recentNext - j + HISTORY) % HISTORY] == before - s) {
+                    return s;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void remember(long blockNumber) {
+        recent[recentNext] = blockNumber;
+        recentNext = (recentNext + 1) % HISTORY;
+        recentCount = Math.min(recentCount + 1, HISTORY);
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(used, false);
+        recentCount = 0;
+        recentNext = 0;
+    }
+
+    @Override
+    public String name() {
+        return "stride";
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        Checkpoint.writeLongs(out, regions);
+        Checkpoint.writeLongs(out, last);
+        Checkpoint.writeLongs(out, stride);
+        out.write(state);
+        for (boolean u : used) {
+            out.writeBoolean(u);
+        }
+        Checkpoint.writeLongs(out, recent);
+        out.writeInt(recentCount);
+        out.writeInt(recentNext);
+    }
+
+    @Override
+    public void restoreState(DataInput in) throws IOException {
+        Checkpoint.readLongs(in, regions);
+        Checkpoint.readLongs(in, last);
+        Checkpoint.readLongs(in, stride);
+        in.readFully(state);
+        for (int i = 0; i < ENTRIES; i++) {
+            used[i] = in.readBoolean();
+        }
+        Checkpoint.readLongs(in, recent);
+        recentCount = in.readInt();
+        recentNext = in.readInt();
+    }
+
+    @Override
+    public String describe() {
+        return "stride (" + ENTRIES + "-entry RPT), depth " + depth;
+    }
+}
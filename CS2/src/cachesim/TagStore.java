@@ -0,0 +1,31 @@
+package cachesim;
+
+// Primitive storage for the per-line state of a cache: a valid bit, a dirty bit and a tag per line.
+// Lines are addressed by a dense index so implementations can keep everything in flat arrays.
+public interface TagStore {
+    int size();
+
+    boolean isValid(int line);
+
+    long tag(int line);
+
+    // First valid line in [first, first + count) holding the tag, or -1
+    int find(int first, int count, long tag);
+
+    // Marks the line valid and clean and stores the tag
+    void fill(int line, long tag);
+
+    // Invalidates the line and clears its dirty bit
+    void invalidate(int line);
+
+    boolean isDirty(int line);
+
+    void setDirty(int line);
+
+    // Invalidates and cleans every line
+    void clear();
+
+    static TagStore create(int lines, boolean offHeap) {
+        return offHeap ? new OffHeapTagStore(lines) : new HeapTagStore(lines);
+    }
+}
@@ -0,0 +1,170 @@
+package cachesim;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Parses text traces directly from a mapped window of bytes, without building Strings.
+// Accepted line forms:
+//   Dinero "din" records  "<type> <hex address>"  (types 0 read, 1 write, 2 instruction fetch)
+//   letter records        "R <hex address>" or "W <hex address>"
+//   plain addresses       "<hex address>"         (optional 0x prefix, read)
+// Blank lines and lines starting with '#' are skipped; other Dinero types are ignored.
+public final class TextTraceReader implements TraceReader {
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private long windowStart = 0;
+    private MappedByteBuffer window;
+    private int pos = 0;
+    private long lineNumber = 0;
+
+    public TextTraceReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    @Override
+    public int read(AccessBatch batch) throws IOException {
+        batch.size = 0;
+        batch.clearWrites();
+        while (batch.size < batch.addresses.length) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                break;
+            }
+            lineNumber++;
+            parseLine(pos, lineEnd, batch);
+            pos = lineEnd + 1;
+        }
+        return batch.size;
+    }
+
+    // Index of the '\n' ending the current line (or the window limit for a final unterminated
+    // line), remapping the window when the line crosses its end; -1 at end of file
+    private int findLineEnd() throws IOException {
+        while (true) {
+            if (window != null) {
+                int limit = window.limit();
+                for (int i = pos; i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        return i;
+                    }
+                }
+                boolean lastWindow = windowStart + limit >= fileSize;
+                if (lastWindow) {
+                    return pos < limit ? limit : -1;
+                }
+                if (pos == 0) {
+                    throw new IOException(file + ": line " + (lineNumber + 1) + " is longer than " + WINDOW_BYTES + " bytes");
+                }
+            }
+            if (!remap()) {
+                return -1;
+            }
+        }
+    }
+
+    // Maps the next window starting at the current (unfinished) line
+    private boolean remap() throws IOException {
+        if (window != null) {
+            windowStart += pos;
+        }
+        long length = Math.min(WINDOW_BYTES, fileSize - windowStart);
+        if (length <= 0) {
+            window = null;
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        pos = 0;
+        return true;
+    }
+
+    private void parseLine(int from, int to, AccessBatch batch) throws IOException {
+        int i = skipBlanks(from, to);
+        if (i == to || window.get(i) == '#') {
+            return;
+        }
+        int firstStart = i;
+        int firstEnd = skipToken(i, to);
+        int second = skipBlanks(firstEnd, to);
+        if (second == to) {
+            batch.addresses[batch.size++] = parseHex(firstStart, firstEnd);
+            return;
+        }
+        long address = parseHex(second, skipToken(second, to));
+        int letter = firstEnd - firstStart == 1 ? window.get(firstStart) | 0x20 : 0;
+        long type = letter == 'r' ? 0 : letter == 'w' ? 1 : parseHex(firstStart, firstEnd);
+        if (type >= 0 && type <= 2) { // A 16-digit type can have bit 63 set
+            if (type == 1) {
+                batch.setWrite(batch.size);
+            }
+            batch.addresses[batch.size++] = address;
+        }
+    }
+
+    private int skipBlanks(int i, int to) {
+        while (i < to) {
+            byte b = window.get(i);
+            if (b != ' ' && b != '\t' && b != '\r' && b != ',') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int skipToken(int i, int to) {
+        while (i < to) {
+            byte b = window.get(i);
+            if (b == ' ' || b == '\t' || b == '\r' || b == ',') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private long parseHex(int from, int to) throws IOException {
+        if (to - from > 2 && window.get(from) == '0' && (window.get(from + 1) | 0x20) == 'x') {
+            from += 2;
+        }
+        if (from == to || to - from > 16) {
+            throw malformed();
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int c = window.get(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if ((c | 0x20) >= 'a' && (c | 0x20) <= 'f') {
+                digit = (c | 0x20) - 'a' + 10;
+            } else {
+                throw malformed();
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private IOException malformed() {
+        return new IOException(file + ": malformed trace record on line " + lineNumber);
+    }
+
+    @Override
+    public long bytesRead() {
+        return window == null ? fileSize : Math.min(windowStart + pos, fileSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
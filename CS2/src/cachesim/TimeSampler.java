@@ -0,0 +1,163 @@
+package cachesim;
+
+import java.io.IOException;
+
+// Time sampling in the style of SMARTS: the access stream is cut into periods, and the last
+// `unit` accesses of every period form a measurement unit whose misses are counted. The warmup
+// accesses just before each unit go through the cache uncounted so the unit starts from a warm
+// state; everything earlier in the period is skipped. A warmup of the whole gap
+// (FUNCTIONAL_WARMING) is SMARTS's functional warming: every access updates the cache, so the
+// units see exactly the state a full run would and only their counting is sampled. Shorter
+// warmups trade a small cold-start bias for skipping most of the simulation. Each unit is one
+// cluster of the miss-ratio estimate; a partial unit at the end of the stream is dropped.
+public final class TimeSampler {
+    public static final long FUNCTIONAL_WARMING = Long.MAX_VALUE;
+    static final int DEFAULT_WARMUP_PER_LINE = 4;
+
+    private final CacheSimulator simulator;
+    private final long unit;
+    private final long period;
+    private final long warmup;
+    private final long skipEnd; // Period position where warming starts
+    private final long unitStart; // Period position where the unit starts
+    private final RatioEstimate estimate = new RatioEstimate();
+    private long position = 0; // Accesses seen
+    private long simulated = 0; // Accesses that went through the cache, warming included
+    private long missesAtUnitStart;
+
+    public TimeSampler(CacheSimulator simulator, long unit, long period, long warmup) {
+        if (unit < 1 || period < unit) {
+            throw new IllegalArgumentException("Need 1 <= unit <= period: unit " + unit + ", period " + period);
+        }
+        if (warmup < 0) {
+            throw new IllegalArgumentException("Warmup must not be negative: " + warmup);
+        }
+        this.simulator = simulator;
+        this.unit = unit;
+        this.period = period;
+        this.warmup = Math.min(warmup, period - unit);
+        this.unitStart = period - unit;
+        this.skipEnd = unitStart - this.warmup;
+    }
+
+    // Warmup used when none is given: DEFAULT_WARMUP_PER_LINE accesses per cache line, enough for
+    // most lines to be refilled before the unit while the gap in between is still skipped
+    public static long defaultWarmup(CacheConfig config) {
+        return (long) DEFAULT_WARMUP_PER_LINE * config.lines();
+    }
+
+    public void accessAll(AccessBatch batch) {
+        int i = 0;
+        while (i < batch.size) {
+            long phase = position % period;
+            int n;
+            if (phase < skipEnd) {
+                n = (int) Math.min(skipEnd - phase, batch.size - i);
+            } else {
+                if (phase == unitStart) {
+                    missesAtUnitStart = simulator.getMissCount();
+                }
+                long end = phase < unitStart ? unitStart : period;
+                n = (int) Math.min(end - phase, batch.size - i);
+                simulate(batch, i, n);
+                if (phase + n == period) {
+                    estimate.add(unit, simulator.getMissCount() - missesAtUnitStart);
+                }
+            }
+            i += n;
+            position += n;
+        }
+    }
+
+    private void simulate(AccessBatch batch, int from, int n) {
+        long[] blocks = batch.addresses;
+        if (!batch.anyWrites) {
+            simulator.accessAll(blocks, from, n, null);
+        } else {
+            for (int i = from, end = from + n; i < end; i++) {
+                simulator.access(blocks[i], batch.isWrite(i));
+            }
+        }
+        simulated += n;
+    }
+
+    // Binary and compact traces and workloads skip the gap before each warmup without reading it,
+    // so the run time follows the sample rather than the trace; other sources are read in full
+    public void run(AccessSource source) throws IOException {
+        AccessBatch batch = new AccessBatch();
+        if (!(source instanceof BinaryTraceReader || source instanceof CompactTraceReader || source instanceof Workload)) {
+            while (source.read(batch) > 0) {
+                accessAll(batch);
+            }
+            return;
+        }
+        AccessBatch tail = null; // Sized to the rest of the period, so no read runs into the next gap
+        while (true) {
+            long phase = position % period;
+            if (phase < skipEnd) {
+                long skipped = skip(source, skipEnd - phase);
+                position += skipped;
+                if (skipped < skipEnd - phase) {
+                    return;
+                }
+                continue;
+            }
+            AccessBatch into = batch;
+            long left = period - phase;
+            if (left < batch.capacity()) {
+                if (tail == null || tail.capacity() != left) {
+                    tail = new AccessBatch((int) left);
+                }
+                into = tail;
+            }
+            if (source.read(into) == 0) {
+                return;
+            }
+            accessAll(into);
+        }
+    }
+
+    private static long skip(AccessSource source, long accesses) throws IOException {
+        if (source instanceof TraceReader) {
+            return ((TraceReader) source).skip(accesses);
+        }
+        Workload workload = (Workload) source;
+        long skipped = Math.min(accesses, workload.length() - workload.position());
+        workload.seek(workload.position() + skipped);
+        return skipped;
+    }
+
+    // One cluster per completed unit, drawn from every unit-sized slice of the stream
+    public RatioEstimate estimate() {
+        estimate.setPopulation(position / unit);
+        return estimate;
+    }
+
+    public long unit() {
+        return unit;
+    }
+
+    public long period() {
+        return period;
+    }
+
+    public long warmup() {
+        return warmup;
+    }
+
+    public boolean functionalWarming() {
+        return warmup == period - unit;
+    }
+
+    public long accesses() {
+        return position;
+    }
+
+    public long simulated() {
+        return simulated;
+    }
+
+    public CacheSimulator simulator() {
+        return simulator;
+    }
+}
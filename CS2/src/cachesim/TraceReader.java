@@ -0,0 +1,50 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Streaming source of recorded accesses. Readers decode straight into an AccessBatch
+// so nothing is boxed and only the mapped window of the file is resident.
+public interface TraceReader extends AccessSource, Closeable {
+    // Bytes of the underlying file consumed so far
+    long bytesRead();
+
+    // Discards the next accesses, e.g. to resume from a checkpoint; returns how many were skipped,
+    // fewer only at the end of the trace. Readers that can seek override the read-and-drop default.
+    default long skip(long accesses) throws IOException {
+        long skipped = 0;
+        AccessBatch batch = null;
+        while (skipped < accesses) {
+            int n = (int) Math.min(accesses - skipped, AccessBatch.DEFAULT_CAPACITY);
+            if (batch == null || batch.addresses.length != n) {
+                batch = new AccessBatch(n);
+            }
+            int read = read(batch);
+            if (read == 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    // Picks the reader from the file header: binary traces start with BinaryTraceReader.MAGIC,
+    // compact ones with CompactTraceReader.MAGIC, everything else is parsed as text
+    static TraceReader open(Path file) throws IOException {
+        byte[] head = new byte[4];
+        int n;
+        try (InputStream in = Files.newInputStream(file)) {
+            n = in.readNBytes(head, 0, head.length);
+        }
+        if (n == head.length && BinaryTraceReader.hasMagic(head)) {
+            return new BinaryTraceReader(file);
+        }
+        if (n == head.length && CompactTraceReader.hasMagic(head)) {
+            return new CompactTraceReader(file);
+        }
+        return new TextTraceReader(file);
+    }
+}
@@ -0,0 +1,53 @@
+package cachesim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Tees an access stream into a compact trace as it is consumed: wrap a workload or an imported
+// trace, read from the recorder instead, and every batch handed out is also written. close()
+// completes the trace and closes the source when it is Closeable.
+public final class TraceRecorder implements AccessSource, Closeable {
+    private final AccessSource source;
+    private final CompactTraceWriter writer;
+
+    public TraceRecorder(AccessSource source, CompactTraceWriter writer) {
+        this.source = source;
+        this.writer = writer;
+    }
+
+    @Override
+    public int read(AccessBatch batch) throws IOException {
+        int n = source.read(batch);
+        if (n > 0) {
+            writer.write(batch);
+        }
+        return n;
+    }
+
+    public long accessesRecorded() {
+        return writer.accessesWritten();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            if (source instanceof Closeable) {
+                ((Closeable) source).close();
+            }
+        }
+    }
+
+    // Drains the source into a new compact trace; returns the accesses written
+    public static long record(AccessSource source, Path file) throws IOException {
+        try (CompactTraceWriter writer = new CompactTraceWriter(file)) {
+            AccessBatch batch = new AccessBatch();
+            while (source.read(batch) > 0) {
+                writer.write(batch);
+            }
+            return writer.accessesWritten();
+        }
+    }
+}
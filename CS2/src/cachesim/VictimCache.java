@@ -0,0 +1,139 @@
+package cachesim;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Small fully-associative LRU buffer behind a cache array (Jouppi's victim cache). Lines the
+// array evicts land here; a miss in the array that finds its block here swaps the two instead
+// of going to memory. Dirty bits travel with the blocks. At most 16 entries, so lookups are a
+// linear scan.
+public final class VictimCache {
+    public static final int MAX_ENTRIES = 16;
+
+    private final long[] blocks;
+    private final boolean[] dirty;
+    private final long[] lastUse;
+    private int size = 0;
+    private long clock = 0;
+    private boolean removedDirty = false;
+    private long displaced;
+    private boolean displacedDirty = false;
+
+    VictimCache(int entries) {
+        if (entries < 1 || entries > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Victim cache must have between 1 and " + MAX_ENTRIES + " entries: " + entries);
+        }
+        blocks = new long[entries];
+        dirty = new boolean[entries];
+        lastUse = new long[entries];
+    }
+
+    // Takes the block out if present; removedDirty() then tells whether it was dirty
+    boolean remove(long blockNumber) {
+        int i = indexOf(blockNumber);
+        if (i < 0) {
+            return false;
+        }
+        removedDirty = dirty[i];
+        size--;
+        blocks[i] = blocks[size];
+        dirty[i] = dirty[size];
+        lastUse[i] = lastUse[size];
+        return true;
+    }
+
+    boolean removedDirty() {
+        return removedDirty;
+    }
+
+    // Adds a block evicted from the array; returns whether it pushed out the least recently
+    // inserted block, which displaced() and displacedDirty() then describe. A flag rather than a
+    // -1 block, since block numbers can be negative.
+    boolean insert(long blockNumber, boolean isDirty) {
+        boolean full = size == blocks.length;
+        int slot = size;
+        if (full) {
+            slot = 0;
+            for (int i = 1; i < size; i++) {
+                if (lastUse[i] < lastUse[slot]) {
+                    slot = i;
+                }
+            }
+            displaced = blocks[slot];
+            displacedDirty = dirty[slot];
+        } else {
+            size++;
+        }
+        blocks[slot] = blockNumber;
+        dirty[slot] = isDirty;
+        lastUse[slot] = ++clock;
+        return full;
+    }
+
+    long displaced() {
+        return displaced;
+    }
+
+    boolean displacedDirty() {
+        return displacedDirty;
+    }
+
+    public boolean contains(long blockNumber) {
+        return indexOf(blockNumber) >= 0;
+    }
+
+    private int indexOf(long blockNumber) {
+        for (int i = 0; i < size; i++) {
+            if (blocks[i] == blockNumber) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void clear() {
+        size = 0;
+        clock = 0;
+        Arrays.fill(dirty, false);
+    }
+
+    void save(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeLong(clock);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(blocks[i]);
+            out.writeBoolean(dirty[i]);
+            out.writeLong(lastUse[i]);
+        }
+    }
+
+    void restore(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > blocks.length) {
+            throw new IOException("Checkpoint holds " + n + " victim entries, this victim cache has " + blocks.length);
+        }
+        clear();
+        size = n;
+        clock = in.readLong();
+        for (int i = 0; i < n; i++) {
+            blocks[i] = in.readLong();
+            dirty[i] = in.readBoolean();
+            lastUse[i] = in.readLong();
+        }
+    }
+
+    public int capacity() {
+        return blocks.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Held blocks, in no particular order
+    public long blockAt(int i) {
+        return blocks[i];
+    }
+}
@@ -0,0 +1,249 @@
+package cachesim;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Time series of the cache it listens to, one sample per window of `window` accesses: hits,
+// misses, per-set misses and reuse-distance percentiles. The latest `capacity` windows live in
+// rings of primitives allocated up front, so recording costs a few array increments per access
+// and never allocates. Per-set misses are kept for caches of up to MAX_TRACKED_SETS sets, and
+// only while the ring of them stays within MAX_SET_CELLS counters.
+//
+// Reuse distances are LRU stack distances from a StackDistanceAnalyzer (a map probe and a
+// Fenwick tree update per access), so they are optional. Each window histograms them in
+// power-of-two buckets and reports the upper end of the bucket holding the 50th, 90th and 99th
+// percentile; COLD marks a percentile that falls on first touches.
+public final class WindowedMetrics implements AccessListener {
+    public static final int MAX_TRACKED_SETS = 4096;
+    public static final int MAX_SET_CELLS = 1 << 24; // 64 MB of per-set counters
+    public static final int COLD = -1;
+    static final int[] PERCENTILES = {50, 90, 99};
+    private static final int COLD_BUCKET = 33; // Buckets 0..32 hold distances 0, 1, 2-3, 4-7, ...
+
+    private final CacheSimulator cache;
+    private final int window;
+    private final int capacity;
+    private final int slots; // capacity + 1: the window being filled has its own slot
+    private final int sets; // Columns in setMisses, 0 when not tracked
+    private final int[] hits; // Ring slots, one per window
+    private final int[] misses;
+    private final int[] setMisses; // One row of sets columns per slot, or null
+    private final long[] reuse; // One row of PERCENTILES.length columns per slot, or null
+    private final int[] histogram = new int[COLD_BUCKET + 1]; // Current window's distances
+    private StackDistanceAnalyzer distances; // null when reuse distances are off
+    private long windows = 0; // Completed windows
+    private int slot = 0; // Ring slot of the current window
+    private int filled = 0; // Accesses so far in the current window
+
+    public WindowedMetrics(CacheSimulator cache, int window, int capacity, boolean reuseDistances) {
+        if (window < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Window and capacity must be positive: " + window + ", " + capacity);
+        }
+        this.cache = cache;
+        this.window = window;
+        this.capacity = capacity;
+        this.slots = capacity + 1;
+        this.sets = cache.getSets() <= MAX_TRACKED_SETS && (long) slots * cache.getSets() <= MAX_SET_CELLS
+                ? cache.getSets()
+                : 0;
+        this.hits = new int[slots];
+        this.misses = new int[slots];
+        this.setMisses = sets > 0 ? new int[slots * sets] : null;
+        this.reuse = reuseDistances ? new long[slots * PERCENTILES.length] : null;
+        this.distances = reuseDistances ? newAnalyzer() : null;
+    }
+
+    @Override
+    public void onAccess(long blockNumber, int line, boolean hit) {
+        if (hit) {
+            hits[slot]++;
+        } else {
+            misses[slot]++;
+            if (setMisses != null) {
+                setMisses[slot * sets + cache.setIndex(blockNumber)]++;
+            }
+        }
+        if (distances != null) {
+            int d = distances.access(blockNumber);
+            histogram[d < 0 ? COLD_BUCKET : 32 - Integer.numberOfLeadingZeros(d)]++;
+        }
+        if (++filled == window) {
+            closeWindow();
+        }
+    }
+
+    private void closeWindow() {
+        if (reuse != null) {
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                reuse[slot * PERCENTILES.length + p] = percentile(PERCENTILES[p]);
+            }
+            Arrays.fill(histogram, 0);
+        }
+        windows++;
+        slot = (int) (windows % slots);
+        filled = 0;
+        hits[slot] = 0;
+        misses[slot] = 0;
+        if (setMisses != null) {
+            Arrays.fill(setMisses, slot * sets, (slot + 1) * sets, 0);
+        }
+    }
+
+    // Upper end of the bucket holding the given percentile of this window's distances
+    private long percentile(int percent) {
+        long rank = ((long) window * percent + 99) / 100;
+        long seen = 0;
+        for (int b = 0; b < COLD_BUCKET; b++) {
+            seen += histogram[b];
+            if (seen >= rank) {
+                return b == 0 ? 0 : (1L << b) - 1;
+            }
+        }
+        return COLD;
+    }
+
+    @Override
+    public void onReset() {
+        windows = 0;
+        slot = 0;
+        filled = 0;
+        hits[0] = 0;
+        misses[0] = 0;
+        if (setMisses != null) {
+            Arrays.fill(setMisses, 0, sets, 0);
+        }
+        if (distances != null) {
+            Arrays.fill(histogram, 0);
+            distances = newAnalyzer();
+        }
+    }
+
+    // Only the distances it returns are used, so its own histogram is kept to one entry
+    private static StackDistanceAnalyzer newAnalyzer() {
+        return new StackDistanceAnalyzer(1);
+    }
+
+    public int window() {
+        return window;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Windows completed since the start; only the last capacity() of them are retained
+    public long windows() {
+        return windows;
+    }
+
+    // Number of the oldest retained window
+    public long firstRetained() {
+        return Math.max(windows - capacity, 0);
+    }
+
+    public boolean tracksSets() {
+        return setMisses != null;
+    }
+
+    public boolean tracksReuse() {
+        return reuse != null;
+    }
+
+    public int hits(long w) {
+        return hits[slotOf(w)];
+    }
+
+    public int misses(long w) {
+        return misses[slotOf(w)];
+    }
+
+    public double hitRatio(long w) {
+        return hits(w) / (double) window;
+    }
+
+    public double missRatio(long w) {
+        return misses(w) / (double) window;
+    }
+
+    public int setMisses(long w, int set) {
+        if (setMisses == null) {
+            throw new IllegalStateException("Per-set misses are not tracked for this cache and window count");
+        }
+        return setMisses[slotOf(w) * sets + set];
+    }
+
+    // Reuse-distance percentile p (an index into 50 / 90 / 99) of window w, or COLD
+    public long reusePercentile(long w, int p) {
+        if (reuse == null) {
+            throw new IllegalStateException("Reuse distances are not tracked");
+        }
+        return reuse[slotOf(w) * PERCENTILES.length + p];
+    }
+
+    private int slotOf(long w) {
+        if (w < firstRetained() || w >= windows) {
+            throw new IllegalArgumentException("Window " + w + " is not retained: " + firstRetained() + " to " + (windows - 1));
+        }
+        return (int) (w % slots);
+    }
+
+    // One row per retained window; the reuse columns are empty when not tracked, "cold" for COLD
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("window,first_access,hits,misses,hit_ratio,miss_ratio,reuse_p50,reuse_p90,reuse_p99\n");
+        for (long w = firstRetained(); w < windows; w++) {
+            out.append(String.format(Locale.ROOT, "%d,%d,%d,%d,%.6f,%.6f", w, w * window, hits(w), misses(w),
+                    hitRatio(w), missRatio(w)));
+            for (int p = 0; p < PERCENTILES.length; p++) {
+                out.append(',');
+                if (reuse != null) {
+                    long d = reusePercentile(w, p);
+                    out.append(d == COLD ? "cold" : String.valueOf(d));
+                }
+            }
+            out.append('\n');
+        }
+    }
+
+    // Per-set misses in long form, one row per retained window and set with at least one miss
+    public void writeSetCsv(Appendable out) throws IOException {
+        out.append("window,set,misses\n");
+        if (setMisses == null) {
+            return;
+        }
+        for (long w = firstRetained(); w < windows; w++) {
+            for (int set = 0; set < sets; set++) {
+                int n = setMisses(w, set);
+                if (n > 0) {
+                    out.append(String.format(Locale.ROOT, "%d,%d,%d\n", w, set, n));
+                }
+            }
+        }
+    }
+
+    // Everything in one document; cold percentiles are null and untracked fields are left out
+    public void writeJson(Appendable out) throws IOException {
+        out.append(String.format(Locale.ROOT, "{\"window\": %d, \"windows\": [\n", window));
+        for (long w = firstRetained(); w < windows; w++) {
+            out.append(String.format(Locale.ROOT,
+                    "  {\"window\": %d, \"first_access\": %d, \"hits\": %d, \"misses\": %d, \"hit_ratio\": %.6f, "
+                            + "\"miss_ratio\": %.6f", w, w * window, hits(w), misses(w), hitRatio(w), missRatio(w)));
+            if (reuse != null) {
+                for (int p = 0; p < PERCENTILES.length; p++) {
+                    long d = reusePercentile(w, p);
+                    out.append(String.format(Locale.ROOT, ", \"reuse_p%d\": %s", PERCENTILES[p],
+                            d == COLD ? "null" : String.valueOf(d)));
+                }
+            }
+            if (setMisses != null) {
+                out.append(", \"set_misses\": [");
+                for (int set = 0; set < sets; set++) {
+                    out.append(set > 0 ? ", " : "").append(String.valueOf(setMisses(w, set)));
+                }
+                out.append(']');
+            }
+            out.append(w + 1 < windows ? "},\n" : "}\n");
+        }
+        out.append("]}\n");
+    }
+}
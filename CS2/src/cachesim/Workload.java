@@ -0,0 +1,369 @@
+package cachesim;
+
+import java.util.NoSuchElementException;
+
+// Lazy, seeded generator of synthetic access patterns. Every address is a pure function of
+// its position in the stream (random draws use a counter-based mixer of seed and position),
+// so a workload of any length runs in constant memory, can seek, and replays exactly.
+public abstract class Workload implements AccessSource {
+    private final String name;
+    private final long length;
+    private long position = 0;
+
+    protected Workload(String name, long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Access count must not be negative: " + length);
+        }
+        this.name = name;
+        this.length = length;
+    }
+
+    // Address of the i-th access, 0 <= i < length()
+    protected abstract long addressAt(long i);
+
+    // Whether the i-th access is a write; patterns are read-only unless they say otherwise
+    protected boolean isWriteAt(long i) {
+        return false;
+    }
+
+    // False when no access can be a write, so read() can skip the flags
+    protected boolean hasWrites() {
+        return false;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public void seek(long position) {
+        if (position < 0 || position > length) {
+            throw new IllegalArgumentException("Position out of range: " + position);
+        }
+        this.position = position;
+    }
+
+    public boolean hasNext() {
+        return position < length;
+    }
+
+    public long next() {
+        if (position >= length) {
+            throw new NoSuchElementException(name + " is exhausted");
+        }
+        return addressAt(position++);
+    }
+
+    // Whether the access next() returns is a write
+    public boolean peekWrite() {
+        return position < length && isWriteAt(position);
+    }
+
+    @Override
+    public int read(AccessBatch batch) {
+        int n = (int) Math.min(batch.addresses.length, length - position);
+        long[] out = batch.addresses;
+        for (int i = 0; i < n; i++) {
+            out[i] = addressAt(position + i);
+        }
+        batch.clearWrites();
+        if (hasWrites()) {
+            for (int i = 0; i < n; i++) {
+                if (isWriteAt(position + i)) {
+                    batch.setWrite(i);
+                }
+            }
+        }
+        position += n;
+        batch.size = n;
+        return n;
+    }
+
+    // The same addresses with each access also made a write with probability fraction, drawn
+    // from its own seeded stream so the addresses are unchanged
+    public Workload withWrites(double fraction, long seed) {
+        if (fraction < 0 || fraction > 1) {
+            throw new IllegalArgumentException("Write fraction must be between 0 and 1: " + fraction);
+        }
+        Workload base = this;
+        return new Workload(name, length) {
+            @Override
+            protected long addressAt(long i) {
+                return base.addressAt(i);
+            }
+
+            @Override
+            protected boolean isWriteAt(long i) {
+                return base.isWriteAt(i) || (mix(~seed, i) >>> 11) * 0x1.0p-53 < fraction;
+            }
+
+            @Override
+            protected boolean hasWrites() {
+                return fraction > 0 || base.hasWrites();
+            }
+        };
+    }
+
+    // ---- Patterns from the original GUI tests ----
+
+    // Blocks 0 .. blocks-1 in order, repeated (the GUI uses 2N blocks, 4 times)
+    public static Workload sequential(int blocks, int repeats) {
+        return new Loop("Sequential Test", blocks, (long) blocks * repeats);
+    }
+
+    // Uniformly random blocks in [0, memoryBlocks)
+    public static Workload random(int memoryBlocks, long count, long seed) {
+        requirePositive(memoryBlocks, "memoryBlocks");
+        return new Workload("Random Test", count) {
+            @Override
+            protected long addressAt(long i) {
+                return bounded(mix(seed, i), memoryBlocks);
+            }
+        };
+    }
+
+    // Per repeat: 0..N-1, then 1..N-1 twice, then N..2N-1
+    public static Workload midRepeat(int cacheBlocks, int repeats) {
+        requirePositive(cacheBlocks, "cacheBlocks");
+        long middle = 2L * (cacheBlocks - 1);
+        long period = cacheBlocks + middle + cacheBlocks;
+        return new Workload("Mid-Repeat Test", period * repeats) {
+            @Override
+            protected long addressAt(long i) {
+                long j = i % period;
+                if (j < cacheBlocks) {
+                    return j;
+                }
+                j -= cacheBlocks;
+                if (j < middle) {
+                    return 1 + j % (cacheBlocks - 1);
+                }
+                return cacheBlocks + (j - middle);
+            }
+        };
+    }
+
+    // ---- Additional patterns ----
+
+    // Walks a footprint with a fixed stride, wrapping around: (i * stride) mod footprint
+    public static Workload strided(long stride, long footprintBlocks, long count) {
+        requirePositive(footprintBlocks, "footprintBlocks");
+        long step = Math.floorMod(stride, footprintBlocks);
+        return new Workload("Strided Test", count) {
+            @Override
+            protected long addressAt(long i) {
+                return mulMod(i % footprintBlocks, step, footprintBlocks);
+            }
+        };
+    }
+
+    // Cycles over a working set of blocks
+    public static Workload loop(long workingSetBlocks, long count) {
+        return new Loop("Looping Test", workingSetBlocks, count);
+    }
+
+    // Zipf-distributed popularity over a hot set: rank r is drawn with weight 1 / r^exponent.
+    // Ranks are scattered over the hot set by a fixed bijection so popular blocks do not all
+    // share neighbouring indices.
+    // Uses the continuous inverse CDF, which is O(1) per draw and needs no table.
+    public static Workload zipf(long hotSetBlocks, double exponent, long count, long seed) {
+        requirePositive(hotSetBlocks, "hotSetBlocks");
+        if (exponent <= 0) {
+            throw new IllegalArgumentException("Zipf exponent must be positive: " + exponent);
+        }
+        double n = hotSetBlocks;
+        double oneMinusS = 1.0 - exponent;
+        double span = Math.abs(oneMinusS) < 1e-9 ? Math.log(n + 1) : Math.pow(n + 1, oneMinusS) - 1;
+        long scatter = coprimeStep(hotSetBlocks);
+        return new Workload("Zipf Test", count) {
+            @Override
+            protected long addressAt(long i) {
+                double u = (mix(seed, i) >>> 11) * 0x1.0p-53;
+                double x = Math.abs(oneMinusS) < 1e-9
+                        ? Math.exp(u * span)
+                        : Math.pow(u * span + 1, 1 / oneMinusS);
+                long rank = Math.max(Math.min((long) x, hotSetBlocks) - 1, 0);
+                return mulMod(rank, scatter, hotSetBlocks);
+            }
+        };
+    }
+
+    // Naive i-j-k product of two n x n matrices laid out row-major one element per block:
+    // A at 0, B at n^2, C at 2n^2. Each (i, j) reads A[i][k] and B[k][j] for every k, then writes C[i][j].
+    public static Workload matrixMultiply(int n) {
+        requirePositive(n, "n");
+        long size = (long) n * n;
+        long perElement = 2L * n + 1;
+        return new Workload("Matrix Multiply Test", size * perElement) {
+            @Override
+            protected long addressAt(long t) {
+                long ij = t / perElement;
+                long r = t - ij * perElement;
+                long i = ij / n;
+                long j = ij - i * n;
+                if (r == 2L * n) {
+                    return 2 * size + ij;
+                }
+                long k = r >>> 1;
+                return (r & 1) == 0 ? i * n + k : size + k * n + j;
+            }
+
+            @Override
+            protected boolean isWriteAt(long t) {
+                return t % perElement == 2L * n;
+            }
+
+            @Override
+            protected boolean hasWrites() {
+                return true;
+            }
+        };
+    }
+
+    // Five-point Jacobi stencil over a rows x cols grid, ping-ponging between two grids each
+    // sweep: every interior point reads its four neighbours and itself, then writes the other grid
+    public static Workload stencil(int rows, int cols, int sweeps) {
+        if (rows < 3 || cols < 3) {
+            throw new IllegalArgumentException("Stencil grid must be at least 3 x 3: " + rows + " x " + cols);
+        }
+        long grid = (long) rows * cols;
+        long interiorCols = cols - 2;
+        long perSweep = (long) (rows - 2) * interiorCols * 6;
+        return new Workload("Stencil Test", perSweep * sweeps) {
+            @Override
+            protected long addressAt(long t) {
+                long sweep = t / perSweep;
+                long u = t - sweep * perSweep;
+                long point = u / 6;
+                int r = (int) (u - point * 6);
+                long i = 1 + point / interiorCols;
+                long j = 1 + point % interiorCols;
+                long src = (sweep & 1) == 0 ? 0 : grid;
+                long dst = grid - src;
+                switch (r) {
+                    case 0: return src + (i - 1) * cols + j;
+                    case 1: return src + i * cols + j - 1;
+                    case 2: return src + i * cols + j;
+                    case 3: return src + i * cols + j + 1;
+                    case 4: return src + (i + 1) * cols + j;
+                    default: return dst + i * cols + j;
+                }
+            }
+
+            @Override
+            protected boolean isWriteAt(long t) {
+                return t % 6 == 5; // perSweep is a multiple of 6
+            }
+
+            @Override
+            protected boolean hasWrites() {
+                return true;
+            }
+        };
+    }
+
+    // ---- Multi-core patterns (byte addresses) ----
+
+    // One core's counter at byte address core * spacingBytes: read, then write back, over and
+    // over. A spacing of 0 gives all cores one shared counter (true sharing); cores whose counters
+    // are apart but on one line falsely share it; a line or more apart nothing is shared.
+    public static Workload counters(int core, long spacingBytes, long count) {
+        if (spacingBytes < 0) {
+            throw new IllegalArgumentException("spacingBytes must not be negative: " + spacingBytes);
+        }
+        long address = core * spacingBytes;
+        return new Workload("Counters Test (core " + core + ")", count) {
+            @Override
+            protected long addressAt(long i) {
+                return address;
+            }
+
+            @Override
+            protected boolean isWriteAt(long i) {
+                return (i & 1) == 1;
+            }
+
+            @Override
+            protected boolean hasWrites() {
+                return true;
+            }
+        };
+    }
+
+    private static final class Loop extends Workload {
+        private final long blocks;
+
+        Loop(String name, long blocks, long count) {
+            super(name, count);
+            requirePositive(blocks, "blocks");
+            this.blocks = blocks;
+        }
+
+        @Override
+        protected long addressAt(long i) {
+            return i % blocks;
+        }
+    }
+
+    // SplitMix64 finalizer over seed and position: a stateless, well-distributed random stream
+    static long mix(long seed, long i) {
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Maps a random 64-bit value onto [0, bound) without division
+    static long bounded(long random, int bound) {
+        return ((random >>> 32) * bound) >>> 32;
+    }
+
+    // (a * b) mod m for 0 <= a, b < m. Past 31 bits the 128-bit product is reduced one bit of its
+    // low half at a time, which allocates nothing; its high half is already below m.
+    private static long mulMod(long a, long b, long m) {
+        if (((a | b) >>> 31) == 0) {
+            return a * b % m;
+        }
+        long r = Math.multiplyHigh(a, b);
+        long low = a * b;
+        for (int bit = 63; bit >= 0; bit--) {
+            // r < m < 2^63, so doubling it cannot overflow unsigned
+            r = (r << 1) | ((low >>> bit) & 1);
+            if (Long.compareUnsigned(r, m) >= 0) {
+                r -= m;
+            }
+        }
+        return r;
+    }
+
+    // Odd multiplier near n / golden ratio that is coprime with n, so i -> i * step mod n is a bijection
+    private static long coprimeStep(long n) {
+        long step = Math.max(1, (long) (n * 0.6180339887498949)) | 1;
+        while (gcd(step, n) != 1) {
+            step += 2;
+        }
+        return step % n;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static void requirePositive(long value, String what) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(what + " must be positive: " + value);
+        }
+    }
+}
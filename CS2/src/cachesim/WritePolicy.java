@@ -0,0 +1,25 @@
+package cachesim;
+
+import java.util.Locale;
+
+// What a cache does with the data of a write hit
+public enum WritePolicy {
+    WRITE_BACK,    // Marks the line dirty; memory is updated when the line is evicted
+    WRITE_THROUGH; // Passes every write straight to the level below; lines are never dirty
+
+    // Accepts "write-back" / "wb" and "write-through" / "wt", case-insensitively
+    public static WritePolicy parse(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "write-back":
+            case "writeback":
+            case "wb":
+                return WRITE_BACK;
+            case "write-through":
+            case "writethrough":
+            case "wt":
+                return WRITE_THROUGH;
+            default:
+                throw new IllegalArgumentException("Unknown write policy: " + name);
+        }
+    }
+}
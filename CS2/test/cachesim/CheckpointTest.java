@@ -0,0 +1,166 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CheckpointTest {
+    private static final int ACCESSES = 30000;
+    private static final int BATCH = 1000;
+    private static final int[] STOPS = {0, 1000, 12000, ACCESSES}; // Where interrupted runs checkpoint
+
+    @TempDir
+    Path dir;
+
+    // Every policy with and without a victim cache, write-through, no-write-allocate, off-heap tags
+    // and each prefetcher with and without latency
+    private static List<Setup> setups() {
+        List<Setup> setups = new ArrayList<>();
+        setups.add(new Setup(CacheConfig.directMapped(256), null, 0));
+        setups.add(new Setup(CacheConfig.directMapped(256).withVictimEntries(4), null, 0));
+        setups.add(new Setup(CacheConfig.directMapped(256).withOffHeap(true), "next-line", 0));
+        for (ReplacementPolicy policy : ReplacementPolicy.values()) {
+            CacheConfig config = CacheConfig.setAssociative(256, 4, policy).withSeed(11);
+            setups.add(new Setup(config, null, 0));
+            setups.add(new Setup(config.withVictimEntries(8), null, 0));
+            setups.add(new Setup(config.withWritePolicy(WritePolicy.WRITE_THROUGH).withWriteAllocate(false), null, 0));
+            setups.add(new Setup(config, "stride", 3));
+        }
+        setups.add(new Setup(CacheConfig.fullyAssociative(64, ReplacementPolicy.RANDOM).withSeed(5), "stream", 2));
+        setups.add(new Setup(CacheConfig.setAssociative(1024, 32, ReplacementPolicy.SRRIP), "next-line", 4));
+        setups.add(new Setup(CacheConfig.setAssociative(256, 8, ReplacementPolicy.PLRU).withVictimEntries(2), "stream", 1));
+        return setups;
+    }
+
+    @Test
+    void resumedRunsMatchUninterruptedRuns() throws IOException {
+        for (Setup setup : setups()) {
+            CacheSimulator reference = setup.create();
+            run(reference, workload(1), 0, ACCESSES);
+            String expected = state(reference);
+
+            for (int stop : STOPS) {
+                CacheSimulator first = setup.create();
+                run(first, workload(1), 0, stop);
+                Path file = dir.resolve("run.ckp");
+                Checkpoint.capture(first, stop, "zipf").write(file);
+
+                Checkpoint checkpoint = Checkpoint.read(file);
+                assertEquals(stop, checkpoint.position());
+                assertEquals("zipf", checkpoint.source());
+                CacheSimulator resumed = checkpoint.restore();
+                run(resumed, workload(1), stop, ACCESSES);
+                assertEquals(expected, state(resumed), setup + " resumed at " + stop);
+            }
+        }
+    }
+
+    @Test
+    void forksContinueLikeTheWarmedCacheWithZeroedCounters() throws IOException {
+        for (Setup setup : setups()) {
+            CacheSimulator warm = setup.create();
+            run(warm, workload(1), 0, ACCESSES / 2);
+            Path file = dir.resolve("warm.ckp");
+            Checkpoint.capture(warm, ACCESSES / 2, "zipf").write(file);
+            Checkpoint checkpoint = Checkpoint.read(file);
+
+            // Two forks on different inputs share nothing with each other or the original
+            CacheSimulator forkA = checkpoint.restore();
+            CacheSimulator forkB = checkpoint.restore();
+            forkA.clearCounters();
+            forkB.clearCounters();
+            run(forkA, workload(2), 0, ACCESSES);
+            run(forkB, workload(3), 0, ACCESSES);
+
+            warm.clearCounters();
+            run(warm, workload(2), 0, ACCESSES);
+            assertEquals(state(warm), state(forkA), setup + " fork");
+            assertEquals(ACCESSES, forkB.getAccessCount());
+            assertNotEquals(state(forkA), state(forkB), setup + " forks on different inputs");
+        }
+    }
+
+    @Test
+    void restoreIntoAnotherGeometryIsRejected() {
+        CacheSimulator simulator = new CacheSimulator(CacheConfig.setAssociative(256, 4, ReplacementPolicy.LRU));
+        run(simulator, workload(1), 0, BATCH);
+        Checkpoint checkpoint = Checkpoint.capture(simulator, BATCH, "zipf");
+        assertThrows(IllegalArgumentException.class, () -> checkpoint.restoreInto(
+                new CacheSimulator(CacheConfig.setAssociative(256, 8, ReplacementPolicy.LRU))));
+        assertThrows(IllegalArgumentException.class, () -> checkpoint.restoreInto(
+                new CacheSimulator(CacheConfig.setAssociative(256, 4, ReplacementPolicy.FIFO))));
+
+        CacheSimulator same = new CacheSimulator(CacheConfig.setAssociative(256, 4, ReplacementPolicy.LRU));
+        checkpoint.restoreInto(same);
+        assertEquals(state(simulator), state(same));
+    }
+
+    // A zipf stream with writes over more blocks than the caches hold
+    private static Workload workload(long seed) {
+        return Workload.zipf(4096, 0.9, ACCESSES, seed).withWrites(0.25, seed);
+    }
+
+    // Accesses [from, to) of the workload, in batches so direct-mapped caches use the batch kernel
+    private static void run(CacheSimulator simulator, Workload workload, int from, int to) {
+        workload.seek(from);
+        AccessBatch batch = new AccessBatch(BATCH);
+        for (int done = from; done < to; done += batch.size()) {
+            workload.read(batch);
+            simulator.accessAll(batch);
+        }
+    }
+
+    // Counters, prefetch metrics, the last eviction and the block in every line
+    private static String state(CacheSimulator simulator) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("accesses %d, hits %d, misses %d, victim hits %d, writes %d, write misses %d, "
+                        + "fetches %d, writebacks %d, write-throughs %d, last evicted %d%s",
+                simulator.getAccessCount(), simulator.getHitCount(), simulator.getMissCount(),
+                simulator.getVictimHitCount(), simulator.getWriteCount(), simulator.getWriteMissCount(),
+                simulator.getFetchCount(), simulator.getWritebackCount(), simulator.getWriteThroughCount(),
+                simulator.lastEvicted(), simulator.lastEvictedDirty() ? " (dirty)" : ""));
+        PrefetchUnit prefetch = simulator.getPrefetchUnit();
+        if (prefetch != null) {
+            out.append(String.format(", prefetches issued %d, redundant %d, useful %d, late %d, unused %d, pollution %d",
+                    prefetch.issued(), prefetch.redundant(), prefetch.useful(), prefetch.late(),
+                    prefetch.unused(), prefetch.pollution()));
+        }
+        long contents = 0;
+        for (int line = 0; line < simulator.getConfig().lines(); line++) {
+            contents = contents * 31 + simulator.blockAt(line);
+        }
+        return out.append(String.format(", contents %x", contents)).toString();
+    }
+
+    private static final class Setup {
+        final CacheConfig config;
+        final String prefetcher; // null for none
+        final int latency;
+
+        Setup(CacheConfig config, String prefetcher, int latency) {
+            this.config = config;
+            this.prefetcher = prefetcher;
+            this.latency = latency;
+        }
+
+        CacheSimulator create() {
+            CacheSimulator simulator = new CacheSimulator(config);
+            if (prefetcher != null) {
+                simulator.setPrefetcher(Prefetcher.create(prefetcher, 2), latency);
+            }
+            return simulator;
+        }
+
+        @Override
+        public String toString() {
+            return config.describe() + (prefetcher == null ? "" : ", " + prefetcher + " prefetch, latency " + latency);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Small hand-traced scenarios on 64-byte lines (4-byte words). With two cores and quantum 1 the
+// counters pattern runs as c0 R, c1 R, c0 W, c1 W, c0 R, c1 R, c0 W, c1 W.
+class CoherenceSimulatorTest {
+    private static final CacheConfig CONFIG = CacheConfig.directMapped(64);
+
+    @Test
+    void countersOnOneLineFalselyShareIt() throws IOException {
+        CoherenceSimulator mesi = counters(8, CoherenceProtocol.MESI, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+        // Misses: both first reads, then c1's write, c0's read and c1's write after invalidations
+        assertEquals(5, mesi.misses());
+        assertEquals(2, mesi.misses(0));
+        assertEquals(3, mesi.misses(1));
+        assertEquals(0, mesi.trueSharingMisses());
+        assertEquals(3, mesi.falseSharingMisses());
+        assertEquals(1, mesi.coherenceMisses(0));
+        assertEquals(2, mesi.coherenceMisses(1));
+        assertEquals(3, mesi.busReads());
+        assertEquals(2, mesi.busReadExclusives());
+        assertEquals(2, mesi.busUpgrades()); // c0's writes hit its Shared copy
+        assertEquals(4, mesi.invalidations());
+        assertEquals(2, mesi.invalidationsReceived(0));
+        assertEquals(2, mesi.invalidationsReceived(1));
+        assertEquals(3, mesi.cacheToCacheTransfers());
+        assertEquals(2, mesi.memoryReads());
+        assertEquals(1, mesi.writebacks()); // c0's read of c1's Modified line
+
+        StringBuilder hot = new StringBuilder();
+        mesi.writeHotLines(hot, 4);
+        assertEquals("block,address,false_sharing_misses,invalidations\n0,0x0,3,4\n", hot.toString());
+        StringBuilder cores = new StringBuilder();
+        mesi.writeCoreBreakdown(cores);
+        assertEquals("core,accesses,hits,misses,miss_rate,coherence_misses,invalidations_received\n"
+                + "0,4,2,2,0.500000,1,2\n1,4,1,3,0.750000,2,2\n", cores.toString());
+    }
+
+    @Test
+    void countersOnOneWordTrulyShareIt() throws IOException {
+        CoherenceSimulator mesi = counters(0, CoherenceProtocol.MESI, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+        assertEquals(5, mesi.misses());
+        assertEquals(3, mesi.trueSharingMisses());
+        assertEquals(0, mesi.falseSharingMisses());
+    }
+
+    @Test
+    void countersOnTheirOwnLinesShareNothing() throws IOException {
+        for (int spacing : new int[] {64, 128}) {
+            CoherenceSimulator mesi = counters(spacing, CoherenceProtocol.MESI, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+            // Each core: read miss to Exclusive, then a silent upgrade to Modified and hits
+            assertEquals(2, mesi.misses());
+            assertEquals(0, mesi.coherenceMisses(0) + mesi.coherenceMisses(1));
+            assertEquals(2, mesi.busReads());
+            assertEquals(0, mesi.busReadExclusives());
+            assertEquals(0, mesi.busUpgrades());
+            assertEquals(0, mesi.invalidations());
+            assertEquals(0, mesi.cacheToCacheTransfers());
+            assertEquals(2, mesi.memoryReads());
+            assertEquals('M', mesi.state(0, 0));
+            assertEquals('M', mesi.state(1, spacing / 64));
+        }
+    }
+
+    @Test
+    void moesiKeepsTheDirtyLineOwnedInsteadOfWritingItBack() throws IOException {
+        CoherenceSimulator moesi = counters(8, CoherenceProtocol.MOESI, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+        CoherenceSimulator mesi = counters(8, CoherenceProtocol.MESI, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+        assertEquals(mesi.misses(), moesi.misses());
+        assertEquals(mesi.busUpgrades(), moesi.busUpgrades());
+        assertEquals(mesi.cacheToCacheTransfers(), moesi.cacheToCacheTransfers());
+        assertEquals(1, mesi.writebacks());
+        assertEquals(0, moesi.writebacks());
+
+        for (CoherenceProtocol protocol : CoherenceProtocol.values()) {
+            CoherenceSimulator simulator = twoCores(protocol, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+            simulator.access(0, 0, true);
+            assertEquals('M', simulator.state(0, 0));
+            simulator.access(1, 4, false);
+            assertEquals(protocol == CoherenceProtocol.MOESI ? 'O' : 'S', simulator.state(0, 0));
+            assertEquals('S', simulator.state(1, 0));
+            assertEquals(1, simulator.cacheToCacheTransfers());
+            assertEquals(1, simulator.memoryReads()); // Only c0's write miss went to memory
+            assertEquals(protocol == CoherenceProtocol.MOESI ? 0 : 1, simulator.writebacks());
+
+            // A third reader is served by the Owned copy under MOESI, by memory under MESI
+            CoherenceSimulator three = new CoherenceSimulator(CONFIG, 3, protocol, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+            three.access(0, 0, true);
+            three.access(1, 0, false);
+            three.access(2, 0, false);
+            assertEquals(protocol == CoherenceProtocol.MOESI ? 2 : 1, three.cacheToCacheTransfers());
+            assertEquals(protocol == CoherenceProtocol.MOESI ? 1 : 2, three.memoryReads());
+        }
+    }
+
+    @Test
+    void writeHitsOnSharedOrOwnedLinesUpgrade() {
+        CoherenceSimulator simulator = twoCores(CoherenceProtocol.MOESI, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+        simulator.access(0, 0, true); // BusRdX: c0 M
+        simulator.access(1, 0, false); // BusRd: c0 O, c1 S
+        assertTrue(simulator.access(0, 0, true)); // Hit on Owned: BusUpgr
+        assertEquals(1, simulator.busUpgrades());
+        assertEquals('M', simulator.state(0, 0));
+        assertEquals('I', simulator.state(1, 0));
+        assertTrue(simulator.access(0, 0, true)); // Hit on Modified: silent
+        assertEquals(1, simulator.busUpgrades());
+
+        simulator.access(1, 0, false); // c0 O, c1 S again
+        assertTrue(simulator.access(1, 0, true)); // Hit on Shared: BusUpgr
+        assertEquals(2, simulator.busUpgrades());
+        assertEquals('I', simulator.state(0, 0));
+        assertEquals('M', simulator.state(1, 0));
+        assertEquals(2, simulator.invalidations());
+
+        // A read miss with no other holder is Exclusive, and writing it needs no bus transaction
+        assertFalse(simulator.access(0, 4096, false));
+        assertEquals('E', simulator.state(0, 64));
+        assertTrue(simulator.access(0, 4096, true));
+        assertEquals('M', simulator.state(0, 64));
+        assertEquals(2, simulator.busUpgrades());
+    }
+
+    @Test
+    void snoopingAndDirectoryDifferOnlyInTraffic() throws IOException {
+        for (CoherenceProtocol protocol : CoherenceProtocol.values()) {
+            CoherenceSimulator bus = counters(8, protocol, CoherenceSimulator.Interconnect.SNOOPING_BUS);
+            CoherenceSimulator directory = counters(8, protocol, CoherenceSimulator.Interconnect.DIRECTORY);
+            for (int core = 0; core < 2; core++) {
+                assertEquals(bus.misses(core), directory.misses(core));
+                assertEquals(bus.state(core, 0), directory.state(core, 0));
+            }
+            assertEquals(bus.invalidations(), directory.invalidations());
+            assertEquals(bus.writebacks(), directory.writebacks());
+
+            // 5 misses and 2 upgrades are 7 requests, each snooped by the other cache
+            assertEquals(7, bus.messages());
+            assertEquals(7, bus.snoops());
+            // Directory: 7 requests, 2 forwards to a holder on BusRd, an invalidation and an
+            // acknowledgement for each of 4 invalidations, 2 upgrade grants and 5 data replies
+            assertEquals(24, directory.messages());
+            assertEquals(0, directory.snoops());
+            long lineBytes = 64L * (5 + bus.writebacks());
+            assertEquals(lineBytes + 7 * 8, bus.trafficBytes());
+            assertEquals(lineBytes + 24 * 8, directory.trafficBytes());
+        }
+    }
+
+    @Test
+    void dirtyEvictionsAreWrittenBack() {
+        CoherenceSimulator simulator = new CoherenceSimulator(CacheConfig.directMapped(1), 2, CoherenceProtocol.MESI,
+                CoherenceSimulator.Interconnect.DIRECTORY);
+        simulator.access(0, 0, true);
+        simulator.access(0, 64, false); // Evicts the Modified line
+        assertEquals(1, simulator.writebacks());
+        simulator.access(0, 128, false); // Evicts an Exclusive line: nothing to write
+        assertEquals(1, simulator.writebacks());
+        // 3 requests, 3 data replies and the writeback's message
+        assertEquals(7, simulator.messages());
+    }
+
+    private static CoherenceSimulator twoCores(CoherenceProtocol protocol, CoherenceSimulator.Interconnect interconnect) {
+        return new CoherenceSimulator(CONFIG, 2, protocol, interconnect);
+    }
+
+    // Two cores running the counters pattern, 4 accesses each, spacing bytes apart
+    private static CoherenceSimulator counters(int spacing, CoherenceProtocol protocol,
+            CoherenceSimulator.Interconnect interconnect) throws IOException {
+        CoherenceSimulator simulator = twoCores(protocol, interconnect);
+        List<AccessSource> streams = new ArrayList<>();
+        for (int core = 0; core < 2; core++) {
+            streams.add(Workload.counters(core, spacing, 4));
+        }
+        simulator.run(streams, true);
+        assertEquals(8, simulator.accesses());
+        return simulator;
+    }
+}
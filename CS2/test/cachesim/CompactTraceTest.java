@@ -0,0 +1,274 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompactTraceTest {
+    private static final long MAX_ADDRESS = Long.MAX_VALUE; // 63 bits; bit 63 is the write flag
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void extremeDeltasRoundTrip() throws IOException {
+        long[] addresses = {0, MAX_ADDRESS, 0, MAX_ADDRESS, MAX_ADDRESS - 1, 1, 1L << 62, (1L << 62) - 1,
+                5, 3, 0, 0x7FL, 0x80L, 0x3FFFL, 0x4000L, MAX_ADDRESS / 2, MAX_ADDRESS / 2 + 1, 12345678901234L, 2};
+        boolean[] writes = new boolean[addresses.length];
+        for (int i = 0; i < writes.length; i += 3) {
+            writes[i] = true;
+        }
+        for (boolean deflate : new boolean[] {true, false}) {
+            for (int chunk : new int[] {1, 4, 1000}) {
+                Path file = write(addresses, writes, chunk, deflate);
+                assertTrace(file, addresses, writes);
+                try (CompactTraceReader reader = new CompactTraceReader(file)) {
+                    assertEquals(deflate, reader.deflated());
+                    assertEquals((addresses.length + chunk - 1) / chunk, reader.chunks());
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomTracesRoundTrip() throws IOException {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 6; trial++) {
+            int n = 1 + random.nextInt(20000);
+            long[] addresses = new long[n];
+            boolean[] writes = new boolean[n];
+            long address = random.nextLong() >>> 1;
+            for (int i = 0; i < n; i++) {
+                // Mostly small strides either way, with occasional jumps anywhere in 63 bits
+                address = random.nextInt(8) == 0 ? random.nextLong() >>> 1
+                        : Math.max(0, address + random.nextInt(513) - 256);
+                addresses[i] = address;
+                writes[i] = random.nextInt(4) == 0;
+            }
+            Path file = write(addresses, writes, 1 + random.nextInt(3000), trial % 2 == 0);
+            assertTrace(file, addresses, writes);
+        }
+    }
+
+    @Test
+    void rejectsAddressesWithTheTopBitSet() throws IOException {
+        try (CompactTraceWriter writer = new CompactTraceWriter(dir.resolve("top.ctz"))) {
+            assertThrows(IllegalArgumentException.class, () -> writer.write(-1L));
+            assertThrows(IllegalArgumentException.class, () -> writer.write(Long.MIN_VALUE));
+        }
+    }
+
+    @Test
+    void seeksToEveryPositionAroundChunkBoundaries() throws IOException {
+        int chunk = 7;
+        long[] addresses = new long[5 * chunk + 3];
+        boolean[] writes = new boolean[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = (i * 977L) % 101 * 64;
+            writes[i] = i % 5 == 0;
+        }
+        for (boolean deflate : new boolean[] {true, false}) {
+            Path file = write(addresses, writes, chunk, deflate);
+            try (CompactTraceReader reader = new CompactTraceReader(file)) {
+                // Backwards as well as forwards, so each seek reloads its chunk
+                for (int target = addresses.length; target >= 0; target--) {
+                    reader.seek(target);
+                    assertEquals(target, reader.position());
+                    assertRest(reader, addresses, writes, target);
+                }
+                assertThrows(IllegalArgumentException.class, () -> reader.seek(addresses.length + 1));
+                assertThrows(IllegalArgumentException.class, () -> reader.seek(-1));
+            }
+            try (CompactTraceReader reader = new CompactTraceReader(file)) {
+                assertEquals(chunk, reader.skip(chunk));
+                assertEquals(2 * chunk - 1, reader.skip(2 * chunk - 1));
+                assertRest(reader, addresses, writes, 3 * chunk - 1);
+                assertEquals(0, reader.skip(10));
+            }
+        }
+    }
+
+    @Test
+    void emptyTrace() throws IOException {
+        Path file = write(new long[0], new boolean[0], 16, true);
+        try (CompactTraceReader reader = new CompactTraceReader(file)) {
+            assertEquals(0, reader.accesses());
+            assertEquals(0, reader.chunks());
+            reader.seek(0);
+            assertEquals(0, reader.read(new AccessBatch()));
+        }
+    }
+
+    @Test
+    void unfinishedTraceKeepsItsCompleteChunks() throws IOException {
+        int chunk = 100;
+        long[] addresses = new long[1000];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = i * 3L;
+        }
+        boolean[] writes = new boolean[addresses.length];
+        for (boolean deflate : new boolean[] {true, false}) {
+            Path file = write(addresses, writes, chunk, deflate);
+            long fifthChunk;
+            try (CompactTraceReader reader = new CompactTraceReader(file)) {
+                reader.seek(3 * chunk);
+                fifthChunk = reader.bytesRead(); // End of the fourth chunk
+            }
+            // Cut inside the fifth chunk: the trailer is gone and the torn chunk is dropped
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(fifthChunk + 5);
+            }
+            assertTrace(file, Arrays.copyOf(addresses, 4 * chunk), Arrays.copyOf(writes, 4 * chunk));
+        }
+    }
+
+    @Test
+    void corruptFilesAreReported() throws IOException {
+        long[] addresses = new long[500];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = i * 64L;
+        }
+        boolean[] writes = new boolean[addresses.length];
+
+        Path badMagic = write(addresses, writes, 100, true);
+        patch(badMagic, 0, (byte) 'X');
+        assertThrows(IOException.class, () -> new CompactTraceReader(badMagic).close());
+
+        Path badVersion = write(addresses, writes, 100, true);
+        patch(badVersion, 4, (byte) 99);
+        assertThrows(IOException.class, () -> new CompactTraceReader(badVersion).close());
+
+        // Garbage in the deflate stream of the first chunk
+        Path badDeflate = write(addresses, writes, 100, true);
+        for (int i = 0; i < 8; i++) {
+            patch(badDeflate, CompactTraceReader.HEADER_BYTES + CompactTraceReader.CHUNK_HEADER_BYTES + i, (byte) 0xFF);
+        }
+        assertThrows(IOException.class, () -> readAll(badDeflate));
+
+        // A stored chunk whose last record never ends
+        Path badRecord = write(addresses, writes, 100, false);
+        int rawLength;
+        try (RandomAccessFile raf = new RandomAccessFile(badRecord.toFile(), "r")) {
+            raf.seek(CompactTraceReader.HEADER_BYTES + 4);
+            rawLength = Integer.reverseBytes(raf.readInt());
+        }
+        patch(badRecord, CompactTraceReader.HEADER_BYTES + CompactTraceReader.CHUNK_HEADER_BYTES + rawLength - 1, (byte) 0x80);
+        assertThrows(IOException.class, () -> readAll(badRecord));
+
+        // A chunk header with a negative access count
+        Path badHeader = write(addresses, writes, 100, false);
+        patch(badHeader, CompactTraceReader.HEADER_BYTES + 3, (byte) 0x80);
+        assertThrows(IOException.class, () -> readAll(badHeader));
+    }
+
+    @Test
+    void convertMatchesTheTextTrace() throws IOException {
+        Path text = dir.resolve("trace.txt");
+        Files.writeString(text, "# Dinero, letter and plain records\n"
+                + "0 1a\n1 ff\n2 40\nR 10\nW 7fffffffffffffff\n0x20\n\n3 99\n0 0\n1 ffff\n");
+        Path compact = dir.resolve("trace.ctz");
+        BatchRunner.main(new String[] {"convert", "--chunk", "2", text.toString(), compact.toString()});
+
+        long[] expected;
+        boolean[] expectedWrites;
+        try (TraceReader reader = new TextTraceReader(text)) {
+            AccessBatch batch = new AccessBatch();
+            reader.read(batch);
+            expected = Arrays.copyOf(batch.addresses, batch.size);
+            expectedWrites = new boolean[batch.size];
+            for (int i = 0; i < batch.size; i++) {
+                expectedWrites[i] = batch.isWrite(i);
+            }
+        }
+        assertArrayEquals(new long[] {0x1a, 0xff, 0x40, 0x10, MAX_ADDRESS, 0x20, 0, 0xffff}, expected);
+        assertTrue(expectedWrites[1] && expectedWrites[4] && expectedWrites[7]);
+        assertFalse(expectedWrites[0] || expectedWrites[3] || expectedWrites[5]);
+        assertTrace(compact, expected, expectedWrites);
+    }
+
+    @Test
+    void replayOfAConvertedTraceMatchesTheRun() throws IOException {
+        Workload workload = Workload.zipf(5000, 1.0, 20000, 3).withWrites(0.2, 3);
+        Path file = dir.resolve("zipf.ctz");
+        assertEquals(20000, TraceRecorder.record(workload, file));
+        workload.seek(0);
+
+        CacheConfig config = CacheConfig.setAssociative(256, 4, ReplacementPolicy.LRU);
+        CacheSimulator run = new CacheSimulator(config);
+        CacheSimulator replay = new CacheSimulator(config);
+        AccessBatch batch = new AccessBatch();
+        while (workload.read(batch) > 0) {
+            run.accessAll(batch);
+        }
+        try (TraceReader reader = TraceReader.open(file)) {
+            assertTrue(reader instanceof CompactTraceReader);
+            while (reader.read(batch) > 0) {
+                replay.accessAll(batch);
+            }
+        }
+        assertEquals(run.getAccessCount(), replay.getAccessCount());
+        assertEquals(run.getHitCount(), replay.getHitCount());
+        assertEquals(run.getWriteCount(), replay.getWriteCount());
+        assertEquals(run.getWritebackCount(), replay.getWritebackCount());
+    }
+
+    private Path write(long[] addresses, boolean[] writes, int chunk, boolean deflate) throws IOException {
+        Path file = Files.createTempFile(dir, "trace", ".ctz");
+        try (CompactTraceWriter writer = new CompactTraceWriter(file, chunk, deflate)) {
+            for (int i = 0; i < addresses.length; i++) {
+                writer.write(addresses[i], writes[i]);
+            }
+            assertEquals(addresses.length, writer.accessesWritten());
+        }
+        return file;
+    }
+
+    // Reads the whole file in odd-sized batches and compares every access and write flag
+    private static void assertTrace(Path file, long[] addresses, boolean[] writes) throws IOException {
+        try (CompactTraceReader reader = new CompactTraceReader(file)) {
+            assertEquals(addresses.length, reader.accesses());
+            assertRest(reader, addresses, writes, 0);
+        }
+    }
+
+    private static void assertRest(CompactTraceReader reader, long[] addresses, boolean[] writes, int from)
+            throws IOException {
+        AccessBatch batch = new AccessBatch(5);
+        int i = from;
+        while (reader.read(batch) > 0) {
+            for (int j = 0; j < batch.size(); j++, i++) {
+                assertEquals(addresses[i], batch.address(j), "address " + i);
+                assertEquals(writes[i], batch.isWrite(j), "write flag " + i);
+            }
+        }
+        assertEquals(addresses.length, i);
+        assertEquals(addresses.length, reader.position());
+    }
+
+    private static void readAll(Path file) throws IOException {
+        try (CompactTraceReader reader = new CompactTraceReader(file)) {
+            AccessBatch batch = new AccessBatch();
+            while (reader.read(batch) > 0) {
+                // Decode everything
+            }
+        }
+    }
+
+    private static void patch(Path file, long offset, byte value) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(offset);
+            raf.write(value);
+        }
+    }
+}
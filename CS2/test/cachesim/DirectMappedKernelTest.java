@@ -0,0 +1,26 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class DirectMappedKernelTest {
+    @Test
+    void scalarKernelMatchesAccess() {
+        assertEquals("scalar", new CacheSimulator(CacheConfig.directMapped(64)).batchKernel());
+        for (long seed = 1; seed <= 3; seed++) {
+            assertTrue(KernelCheck.run(seed, 40) > 0);
+        }
+    }
+
+    @Test
+    void listenersAndAssociativityBypassTheKernel() {
+        CacheSimulator listened = new CacheSimulator(CacheConfig.directMapped(64));
+        listened.addListener((block, line, hit) -> { });
+        assertNull(listened.batchKernel());
+        assertNull(new CacheSimulator(CacheConfig.setAssociative(64, 4, ReplacementPolicy.LRU)).batchKernel());
+        assertNull(new CacheSimulator(CacheConfig.directMapped(64).withVictimEntries(4)).batchKernel());
+    }
+}
@@ -0,0 +1,95 @@
+package cachesim;
+
+import java.util.Random;
+
+// Exactness check for DirectMappedKernel, run by DirectMappedKernelTest. Pairs of identical
+// direct-mapped caches get the same randomized read batches, one through the kernel and one
+// through access() per block (asking for per-access results forces that path), with writes in
+// between to leave dirty lines behind. After every batch the hits, counters, last eviction and
+// the cached block of every line must agree. Batch shapes cover uniform misses, runs, accesses that
+// collide in one set, full 63-bit block numbers and strided conflicts, at offsets into the array.
+final class KernelCheck {
+    static final int[] LINES = {1, 2, 4, 8, 64, 1024, 65536};
+    static final int ROUNDS = 20; // Batches per cache
+    static final int MAX_BATCH = 3000;
+
+    private KernelCheck() {
+    }
+
+    // Checks trials caches of each size in LINES and returns the number of batches compared;
+    // throws IllegalStateException at the first difference
+    static long run(long seed, int trials) {
+        Random random = new Random(seed);
+        long batches = 0;
+        for (int lines : LINES) {
+            for (int trial = 0; trial < trials; trial++) {
+                CacheConfig config = CacheConfig.directMapped(lines).withWritePolicy(
+                        trial % 3 == 0 ? WritePolicy.WRITE_THROUGH : WritePolicy.WRITE_BACK);
+                CacheSimulator kernel = new CacheSimulator(config);
+                CacheSimulator reference = new CacheSimulator(config);
+                if (!kernel.usesBatchKernel()) {
+                    throw new IllegalStateException(config.describe() + " does not use the batch kernel");
+                }
+                for (int round = 0; round < ROUNDS; round++) {
+                    int length = random.nextInt(MAX_BATCH);
+                    int offset = random.nextInt(5);
+                    long[] blocks = blocks(random, random.nextInt(5), lines, trial, round, offset + length);
+                    int hits = kernel.accessAll(blocks, offset, length, null);
+                    int expected = reference.accessAll(blocks, offset, length, new boolean[length]);
+                    String got = state(kernel, hits);
+                    String want = state(reference, expected);
+                    if (!got.equals(want)) {
+                        throw new IllegalStateException(String.format("Batch kernel differs from access() for %s, "
+                                + "batch %d of trial %d (seed %d): %s, expected %s",
+                                config.describe(), round, trial, seed, got, want));
+                    }
+                    batches++;
+                    for (int w = 0; w < 50; w++) {
+                        long block = random.nextInt(3 * lines);
+                        kernel.access(block, true);
+                        reference.access(block, true);
+                    }
+                }
+            }
+        }
+        return batches;
+    }
+
+    private static long[] blocks(Random random, int shape, int lines, int trial, int round, int count) {
+        long[] blocks = new long[count];
+        for (int i = 0; i < count; i++) {
+            switch (shape) {
+                case 0:
+                    blocks[i] = random.nextInt(3 * lines);
+                    break;
+                case 1:
+                    blocks[i] = i / (1 + trial % 4) + round * 7L;
+                    break;
+                case 2:
+                    // A few tags on two sets, so neighbours keep evicting each other
+                    blocks[i] = random.nextInt(8) * (long) lines + random.nextInt(2);
+                    break;
+                case 3:
+                    blocks[i] = random.nextLong() >>> 1;
+                    break;
+                default:
+                    blocks[i] = (i % 16) * 5L * lines + i % 3;
+                    break;
+            }
+        }
+        return blocks;
+    }
+
+    // Everything the batch may change: counters, the last eviction and every line's block
+    private static String state(CacheSimulator simulator, int hits) {
+        long contents = 0;
+        for (int line = 0; line < simulator.getConfig().lines(); line++) {
+            contents = contents * 31 + simulator.blockAt(line);
+        }
+        return String.format("hits %d, accesses %d, hits total %d, misses %d, fetches %d, writebacks %d, "
+                        + "last evicted %d%s, contents %x", hits, simulator.getAccessCount(),
+                simulator.getHitCount(), simulator.getMissCount(), simulator.getFetchCount(),
+                simulator.getWritebackCount(), simulator.lastEvicted(),
+                simulator.lastEvictedDirty() ? " (dirty)" : "", contents);
+    }
+}
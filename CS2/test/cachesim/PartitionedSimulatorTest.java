@@ -0,0 +1,59 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class PartitionedSimulatorTest {
+    // Blocks of both signs with writes, on a no-write-allocate cache so a read taken for a write
+    // (or a write for a read) changes the hits
+    @Test
+    void partitionedRunsMatchTheSequentialRun() throws IOException {
+        Random random = new Random(5);
+        long[] blocks = new long[50000];
+        boolean[] writes = new boolean[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = random.nextInt(8192) - 4096 + (random.nextInt(16) == 0 ? Long.MIN_VALUE / 2 : 0);
+            writes[i] = random.nextInt(3) == 0;
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int lines : new int[] {4096, 1536}) {
+                CacheConfig config = CacheConfig.setAssociative(lines, 4, ReplacementPolicy.LRU).withWriteAllocate(false);
+                CacheSimulator sequential = new CacheSimulator(config);
+                long[] setMisses = new long[config.sets()];
+                for (int i = 0; i < blocks.length; i++) {
+                    if (!sequential.access(blocks[i], writes[i])) {
+                        setMisses[sequential.setIndex(blocks[i])]++;
+                    }
+                }
+
+                PartitionedSimulator partitioned = new PartitionedSimulator(config, pool, 4);
+                partitioned.run(new AccessSource() {
+                    private int next = 0;
+
+                    @Override
+                    public int read(AccessBatch batch) {
+                        batch.clear();
+                        while (next < blocks.length && !batch.isFull()) {
+                            batch.add(blocks[next], writes[next]);
+                            next++;
+                        }
+                        return batch.size();
+                    }
+                });
+                assertEquals(4, partitioned.partitions());
+                assertEquals(sequential.getAccessCount(), partitioned.accesses());
+                assertEquals(sequential.getHitCount(), partitioned.hits(), lines + " lines");
+                for (int set = 0; set < config.sets(); set++) {
+                    assertEquals(setMisses[set], partitioned.setMisses(set), lines + " lines, set " + set);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ReplacementStateTest {
+    // One 4-way set (or 32 ways, the linked-list order): A B C D fill it, B is invalidated and E
+    // refills its way, so the order of arrival is A C D E
+    @Test
+    void fifoEvictsInFillOrderAfterAnInvalidation() {
+        for (int ways : new int[] {4, 32}) {
+            CacheSimulator simulator = new CacheSimulator(CacheConfig.fullyAssociative(ways, ReplacementPolicy.FIFO));
+            for (long block = 0; block < ways; block++) {
+                simulator.access(block);
+            }
+            assertTrue(simulator.invalidate(1));
+            simulator.access(100); // E
+            simulator.access(0); // A hits: FIFO ignores it
+            simulator.access(101); // F evicts A
+            assertFalse(simulator.contains(0));
+            simulator.access(102); // G evicts C, the oldest left
+            assertFalse(simulator.contains(2));
+            assertTrue(simulator.contains(100), ways + " ways: E was evicted before older lines");
+            for (long block = 3; block < ways; block++) {
+                simulator.access(200 + block); // Evicts D onwards
+                assertFalse(simulator.contains(block));
+            }
+            assertTrue(simulator.contains(100));
+            simulator.access(300); // Now E is the oldest
+            assertFalse(simulator.contains(100));
+        }
+    }
+}
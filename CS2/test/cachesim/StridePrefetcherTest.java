@@ -0,0 +1,64 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class StridePrefetcherTest {
+    private static final int ACCESSES = 20000;
+
+    @Test
+    void stridesWithinAndBeyondARegionAreCovered() {
+        // 1024 lines; a stride of 1024 would put every block in one set, so the largest here is 1000
+        for (long stride : new long[] {1, 4, 16, 63, 64, 65, 128, 1000, -1, -100}) {
+            CacheSimulator simulator = strided(stride, 1L << 40);
+            PrefetchUnit prefetch = simulator.getPrefetchUnit();
+            assertTrue(prefetch.coverage() > 0.99, "stride " + stride + ": coverage " + prefetch.coverage());
+            assertTrue(simulator.getMissCount() < 10, "stride " + stride + ": " + simulator.getMissCount() + " misses");
+        }
+    }
+
+    @Test
+    void interleavedLongStridesTrainSeparately() {
+        // A row walk beside a column walk, and two long strides in opposite directions
+        for (long[] strides : new long[][] {{1, 1000}, {200, -300}}) {
+            // Set-associative, so the two streams' prefetches do not displace each other
+            CacheSimulator simulator = new CacheSimulator(CacheConfig.setAssociative(1024, 4, ReplacementPolicy.LRU));
+            simulator.setPrefetcher(new StridePrefetcher(4), 0);
+            long a = 1L << 30;
+            long b = 1L << 40;
+            for (int i = 0; i < ACCESSES / 2; i++) {
+                simulator.access(a + strides[0] * i);
+                simulator.access(b + strides[1] * i);
+            }
+            double coverage = simulator.getPrefetchUnit().coverage();
+            assertTrue(coverage > 0.99, strides[0] + " and " + strides[1] + ": coverage " + coverage);
+        }
+    }
+
+    @Test
+    void checkpointKeepsTheHistory() {
+        StridePrefetcher original = new StridePrefetcher(2);
+        long[] out = new long[2];
+        original.onAccess(0, false, false, out);
+        original.onAccess(1000, false, false, out);
+        CacheSimulator simulator = new CacheSimulator(CacheConfig.directMapped(64));
+        simulator.setPrefetcher(original, 0);
+        CacheSimulator restored = Checkpoint.capture(simulator, 0, "test").restore();
+        StridePrefetcher copy = (StridePrefetcher) restored.getPrefetchUnit().prefetcher();
+        // Blocks 0 and 1000 are in the restored history, so block 2000 completes a stride at once
+        assertEquals(2, copy.onAccess(2000, false, false, out));
+        assertEquals(3000, out[0]);
+        assertEquals(4000, out[1]);
+    }
+
+    private static CacheSimulator strided(long stride, long start) {
+        CacheSimulator simulator = new CacheSimulator(CacheConfig.directMapped(1024));
+        simulator.setPrefetcher(new StridePrefetcher(4), 0);
+        for (int i = 0; i < ACCESSES; i++) {
+            simulator.access(start + stride * i);
+        }
+        return simulator;
+    }
+}
@@ -0,0 +1,33 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TextTraceReaderTest {
+    @TempDir
+    Path dir;
+
+    // Types other than 0, 1 and 2 are skipped, including those only a signed compare lets through
+    @Test
+    void dineroTypesOutsideZeroToTwoAreSkipped() throws IOException {
+        Path file = dir.resolve("trace.din");
+        Files.writeString(file, "0 10\nffffffffffffffff 1000\n1 20\n8000000000000001 2000\n3 3000\n2 30\n");
+        try (TraceReader reader = new TextTraceReader(file)) {
+            AccessBatch batch = new AccessBatch();
+            assertEquals(3, reader.read(batch));
+            assertArrayEquals(new long[] {0x10, 0x20, 0x30}, Arrays.copyOf(batch.addresses(), batch.size()));
+            assertFalse(batch.isWrite(0));
+            assertTrue(batch.isWrite(1));
+            assertFalse(batch.isWrite(2));
+        }
+    }
+}
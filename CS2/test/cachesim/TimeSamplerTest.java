@@ -0,0 +1,89 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TimeSamplerTest {
+    private static final CacheConfig CONFIG = CacheConfig.setAssociative(256, 4, ReplacementPolicy.LRU);
+    private static final long ACCESSES = 203_333; // Ends inside a unit, which is dropped
+
+    @TempDir
+    Path dir;
+
+    // Skipping the gaps in the source gives the same sample as reading everything and dropping them
+    @Test
+    void skippingSourcesSampleLikeReadingEverything() throws IOException {
+        Path compact = dir.resolve("zipf.ctz");
+        TraceRecorder.record(workload(), compact);
+        Path binary = dir.resolve("zipf.bin");
+        try (BinaryTraceWriter writer = new BinaryTraceWriter(binary)) {
+            Workload workload = workload();
+            AccessBatch batch = new AccessBatch();
+            while (workload.read(batch) > 0) {
+                writer.write(batch);
+            }
+        }
+
+        for (long[] shape : new long[][] {{1000, 10000, 2000}, {1000, 10000, 0}, {500, 20000, 19500}, {100, 100, 0},
+                {3000, 50000, 9000}}) {
+            TimeSampler expected = sampler(shape);
+            Workload plain = workload();
+            expected.run(plain::read); // Not a Workload any more, so nothing is skipped
+            assertEquals(ACCESSES, expected.accesses());
+
+            TimeSampler fromWorkload = sampler(shape);
+            fromWorkload.run(workload());
+            assertSame(expected, fromWorkload);
+            try (TraceReader reader = TraceReader.open(compact)) {
+                TimeSampler sampler = sampler(shape);
+                sampler.run(reader);
+                assertSame(expected, sampler);
+            }
+            try (TraceReader reader = TraceReader.open(binary)) {
+                TimeSampler sampler = sampler(shape);
+                sampler.run(reader);
+                assertSame(expected, sampler);
+            }
+        }
+    }
+
+    // Only the warmups and units are generated; the gaps are never produced
+    @Test
+    void skippedAccessesAreNotRead() throws IOException {
+        long[] generated = new long[1];
+        Workload counting = new Workload("counting", ACCESSES) {
+            @Override
+            protected long addressAt(long i) {
+                generated[0]++;
+                return i * 7 % 5000;
+            }
+        };
+        TimeSampler sampler = sampler(new long[] {1000, 10000, 2000});
+        sampler.run(counting);
+        assertEquals(ACCESSES, sampler.accesses());
+        assertEquals(sampler.simulated(), generated[0]);
+        assertTrue(generated[0] < ACCESSES / 3, "generated " + generated[0]);
+    }
+
+    private static Workload workload() {
+        return Workload.zipf(4096, 0.9, ACCESSES, 3).withWrites(0.2, 3);
+    }
+
+    private static TimeSampler sampler(long[] shape) {
+        return new TimeSampler(new CacheSimulator(CONFIG), shape[0], shape[1], shape[2]);
+    }
+
+    private static void assertSame(TimeSampler expected, TimeSampler actual) {
+        assertEquals(expected.accesses(), actual.accesses());
+        assertEquals(expected.simulated(), actual.simulated());
+        assertEquals(expected.simulator().getMissCount(), actual.simulator().getMissCount());
+        assertEquals(expected.estimate().clusters(), actual.estimate().clusters());
+        assertEquals(expected.estimate().misses(), actual.estimate().misses());
+        assertEquals(expected.estimate().population(), actual.estimate().population());
+    }
+}
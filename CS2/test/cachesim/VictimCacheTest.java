@@ -0,0 +1,37 @@
+package cachesim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class VictimCacheTest {
+    // Two blocks that conflict in set 3 of a 4-line direct-mapped cache, alternating: after the
+    // first two misses the victim cache serves every access, whatever the sign of the blocks
+    @Test
+    void conflictingBlocksSwapThroughTheVictimCache() {
+        for (long[] pair : new long[][] {{3, 7}, {-1, -5}, {-1, 3}}) {
+            CacheSimulator simulator = new CacheSimulator(CacheConfig.directMapped(4).withVictimEntries(2));
+            for (int i = 0; i < 20; i++) {
+                simulator.access(pair[i % 2]);
+            }
+            assertEquals(2, simulator.getMissCount(), pair[0] + " and " + pair[1]);
+            assertEquals(18, simulator.getVictimHitCount(), pair[0] + " and " + pair[1]);
+        }
+    }
+
+    @Test
+    void aDisplacedNegativeBlockIsReported() {
+        CacheSimulator simulator = new CacheSimulator(CacheConfig.directMapped(4).withVictimEntries(1));
+        simulator.access(-1, true);
+        assertFalse(simulator.hasEvicted());
+        simulator.access(-5); // -1 moves to the victim cache
+        assertFalse(simulator.hasEvicted());
+        simulator.access(-9); // -5 pushes the dirty -1 out
+        assertTrue(simulator.hasEvicted());
+        assertEquals(-1, simulator.lastEvicted());
+        assertTrue(simulator.lastEvictedDirty());
+        assertEquals(1, simulator.getWritebackCount());
+    }
+}